@@ -0,0 +1,102 @@
+package osmConverter.beans;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ *
+ * {@link NodeStore} keeping the coordinates in an array indexed by the id of
+ * the node (8 bytes per possible id). Fast and compact for big extracts where
+ * most ids of the id-range are used. Untouched parts of the file are never
+ * mapped; on file-systems supporting sparse files they don't use disk-space
+ * either. Negative ids (e.g. of nodes not uploaded yet, as JOSM writes them)
+ * are kept in a second store the same way.
+ *
+ */
+public class DenseNodeStore extends MappedNodeStore {
+
+    private final static int RECORD_SIZE = 8;
+
+    /**
+     * Added to the stored latitude, so 0 marks an empty record.
+     */
+    private final static int LAT_OFFSET = 1000000000;
+
+    private final File file;
+    private long size = 0;
+
+    /**
+     * The nodes with negative ids, node n is kept as -1 - n. Created with
+     * the first one.
+     */
+    private DenseNodeStore negativeNodes;
+
+    public DenseNodeStore(File file) throws IOException {
+	super(file);
+	this.file = file;
+    }
+
+    public void put(long id, double lon, double lat) {
+	if (id < 0) {
+	    if (negativeNodes == null) {
+		try {
+		    negativeNodes = new DenseNodeStore(new File(file.getPath()
+			    + ".negative"));
+		} catch (IOException e) {
+		    throw new RuntimeException("Couldn't create node-store "
+			    + file.getPath() + ".negative", e);
+		}
+	    }
+	    negativeNodes.put(-1 - id, lon, lat);
+	    return;
+	}
+
+	long position = id * RECORD_SIZE;
+	if (readInt(position + 4) == 0) {
+	    size++;
+	}
+	writeInt(position, toFixed(lon));
+	writeInt(position + 4, toFixed(lat) + LAT_OFFSET);
+    }
+
+    public boolean contains(long id) {
+	if (id < 0) {
+	    return negativeNodes != null && negativeNodes.contains(-1 - id);
+	}
+	return readInt(id * RECORD_SIZE + 4) != 0;
+    }
+
+    public double getLon(long id) {
+	if (id < 0) {
+	    return negativeNodes == null ? Double.NaN : negativeNodes
+		    .getLon(-1 - id);
+	}
+	if (!contains(id)) {
+	    return Double.NaN;
+	}
+	return fromFixed(readInt(id * RECORD_SIZE));
+    }
+
+    public double getLat(long id) {
+	if (id < 0) {
+	    return negativeNodes == null ? Double.NaN : negativeNodes
+		    .getLat(-1 - id);
+	}
+	if (!contains(id)) {
+	    return Double.NaN;
+	}
+	return fromFixed(readInt(id * RECORD_SIZE + 4) - LAT_OFFSET);
+    }
+
+    public long size() {
+	return negativeNodes == null ? size : size + negativeNodes.size();
+    }
+
+    @Override
+    public void close() {
+	super.close();
+	if (negativeNodes != null) {
+	    negativeNodes.close();
+	}
+    }
+}
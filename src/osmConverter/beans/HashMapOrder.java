@@ -0,0 +1,145 @@
+package osmConverter.beans;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ *
+ * The order a {@link java.util.HashMap} returns its entries in, if the keys
+ * are the decimal strings of long ids. The maps of the converter were keyed
+ * by such strings before the ids were longs; the numbering of the links and
+ * the order of the TOM-file depend on their order, so it is kept without
+ * creating the strings.
+ *
+ * HashMap puts the keys into buckets by their spread hash-code and returns
+ * the buckets in turn, the keys of one bucket in the order they were added.
+ * Only a bucket of more than {@link #TREEIFY_THRESHOLD} keys is kept as a
+ * tree with another order (or makes a small table grow early); if a bucket
+ * gets that large, the order is taken from a HashMap.
+ *
+ */
+public class HashMapOrder {
+
+    /**
+     * Capacity of a new HashMap, it's doubled whenever it's filled to 3/4.
+     */
+    private final static int INITIAL_CAPACITY = 16;
+
+    private final static int TREEIFY_THRESHOLD = 8;
+
+    /**
+     * @param keys
+     *            The keys in the order they were added, without duplicates.
+     * @return The keys in the order of the HashMap.
+     */
+    public static long[] sort(long[] keys) {
+	int[] order = order(keys);
+	long[] sorted = new long[keys.length];
+	for (int i = 0; i < order.length; i++) {
+	    sorted[i] = keys[order[i]];
+	}
+	return sorted;
+    }
+
+    /**
+     * @return A map with the entries of the map in the order of the HashMap
+     *         they were added to in the order of the map.
+     */
+    public static <V> LongMap<V> sort(LongMap<V> map) {
+	LongMap<V> sorted = new LongMap<V>(map.size());
+	for (long key : sort(map.keys())) {
+	    sorted.put(key, map.get(key));
+	}
+	return sorted;
+    }
+
+    /**
+     * @return The indices of the keys in the order of the HashMap.
+     */
+    private static int[] order(long[] keys) {
+	int[] hashes = new int[keys.length];
+	for (int i = 0; i < keys.length; i++) {
+	    int h = hash(keys[i]);
+	    hashes[i] = h ^ (h >>> 16);
+	}
+
+	// every capacity the map had while the keys were added
+	int capacity = INITIAL_CAPACITY;
+	while (true) {
+	    int threshold = capacity / 4 * 3;
+	    int present = Math.min(keys.length, threshold + 1);
+	    if (hasLargeBucket(hashes, present, capacity)) {
+		return orderOfHashMap(keys);
+	    }
+	    if (keys.length <= threshold) {
+		break;
+	    }
+	    capacity *= 2;
+	}
+
+	// counting sort by bucket, keeping the order within the buckets
+	int[] offsets = new int[capacity + 1];
+	for (int h : hashes) {
+	    offsets[(h & (capacity - 1)) + 1]++;
+	}
+	for (int i = 0; i < capacity; i++) {
+	    offsets[i + 1] += offsets[i];
+	}
+	int[] order = new int[keys.length];
+	for (int i = 0; i < keys.length; i++) {
+	    order[offsets[hashes[i] & (capacity - 1)]++] = i;
+	}
+	return order;
+    }
+
+    /**
+     * @return true if a bucket of the first keys gets more than
+     *         {@link #TREEIFY_THRESHOLD} keys.
+     */
+    private static boolean hasLargeBucket(int[] hashes, int count,
+	    int capacity) {
+	int[] sizes = new int[capacity];
+	for (int i = 0; i < count; i++) {
+	    if (++sizes[hashes[i] & (capacity - 1)] > TREEIFY_THRESHOLD) {
+		return true;
+	    }
+	}
+	return false;
+    }
+
+    private static int[] orderOfHashMap(long[] keys) {
+	Map<String, Integer> map = new HashMap<String, Integer>();
+	for (int i = 0; i < keys.length; i++) {
+	    map.put(String.valueOf(keys[i]), i);
+	}
+	int[] order = new int[keys.length];
+	int i = 0;
+	for (int index : map.values()) {
+	    order[i++] = index;
+	}
+	return order;
+    }
+
+    /**
+     * @return The hash-code of the decimal string of the value.
+     */
+    private static int hash(long value) {
+	if (value == Long.MIN_VALUE) {
+	    return String.valueOf(value).hashCode();
+	}
+
+	int h = 0;
+	if (value < 0) {
+	    h = '-';
+	    value = -value;
+	}
+	long divisor = 1;
+	while (value / divisor >= 10) {
+	    divisor *= 10;
+	}
+	for (; divisor > 0; divisor /= 10) {
+	    h = 31 * h + '0' + (int) (value / divisor % 10);
+	}
+	return h;
+    }
+}
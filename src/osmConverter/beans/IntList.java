@@ -0,0 +1,94 @@
+package osmConverter.beans;
+
+import java.util.Arrays;
+
+/**
+ *
+ * Growable list of primitive int values (e.g. link-ids), avoiding the boxing
+ * of an {@link java.util.ArrayList}.
+ *
+ */
+public class IntList {
+
+    private int[] values;
+    private int size = 0;
+
+    public IntList() {
+	this(4);
+    }
+
+    public IntList(int capacity) {
+	values = new int[Math.max(1, capacity)];
+    }
+
+    public void add(int value) {
+	if (size == values.length) {
+	    values = Arrays.copyOf(values, size * 2);
+	}
+	values[size++] = value;
+    }
+
+    /**
+     * Inserts the value at the given position, shifting the following values.
+     */
+    public void add(int index, int value) {
+	if (index < 0 || index > size) {
+	    throw new IndexOutOfBoundsException("Index: " + index + ", Size: "
+		    + size);
+	}
+	if (size == values.length) {
+	    values = Arrays.copyOf(values, size * 2);
+	}
+	System.arraycopy(values, index, values, index + 1, size - index);
+	values[index] = value;
+	size++;
+    }
+
+    public int get(int index) {
+	if (index >= size) {
+	    throw new IndexOutOfBoundsException("Index: " + index + ", Size: "
+		    + size);
+	}
+	return values[index];
+    }
+
+    public int size() {
+	return size;
+    }
+
+    public boolean isEmpty() {
+	return size == 0;
+    }
+
+    public boolean contains(int value) {
+	return indexOf(value) >= 0;
+    }
+
+    public int indexOf(int value) {
+	for (int i = 0; i < size; i++) {
+	    if (values[i] == value) {
+		return i;
+	    }
+	}
+	return -1;
+    }
+
+    /**
+     * Removes the first occurrence of the value.
+     *
+     * @return true if the value was found.
+     */
+    public boolean removeValue(int value) {
+	int index = indexOf(value);
+	if (index < 0) {
+	    return false;
+	}
+	System.arraycopy(values, index + 1, values, index, size - index - 1);
+	size--;
+	return true;
+    }
+
+    public int[] toArray() {
+	return Arrays.copyOf(values, size);
+    }
+}
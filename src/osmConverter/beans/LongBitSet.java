@@ -0,0 +1,119 @@
+package osmConverter.beans;
+
+/**
+ *
+ * Set of long values (e.g. osm-ids) stored as bits. The bits are kept in
+ * pages which are only allocated when a value inside of them is set, so
+ * sparse id-ranges don't cost memory. Negative values (e.g. the ids of
+ * objects not uploaded yet, as JOSM writes them) are kept in pages of their
+ * own.
+ *
+ */
+public class LongBitSet {
+
+    private final static int PAGE_BITS = 16;
+    private final static int WORDS_PER_PAGE = (1 << PAGE_BITS) / 64;
+
+    private long[][] pages = new long[16][];
+
+    /**
+     * The pages of the negative values, value v is kept as -1 - v.
+     */
+    private long[][] negativePages = new long[1][];
+    private long size = 0;
+
+    /**
+     * @return true if the value wasn't in the set yet.
+     */
+    public boolean add(long value) {
+	if (value < 0) {
+	    value = -1 - value;
+	    negativePages = grow(negativePages, value);
+	    return add(negativePages, value);
+	}
+	pages = grow(pages, value);
+	return add(pages, value);
+    }
+
+    public boolean contains(long value) {
+	if (value < 0) {
+	    return contains(negativePages, -1 - value);
+	}
+	return contains(pages, value);
+    }
+
+    /**
+     * Removes all values.
+     */
+    public void clear() {
+	pages = new long[16][];
+	negativePages = new long[1][];
+	size = 0;
+    }
+
+    /**
+     * @return Number of values in the set.
+     */
+    public long size() {
+	return size;
+    }
+
+    /**
+     * @return Approximate number of bytes used by the set.
+     */
+    public long memoryUsage() {
+	return memoryUsage(pages) + memoryUsage(negativePages);
+    }
+
+    /**
+     * @return The pages, enlarged if the value is beyond them.
+     */
+    private static long[][] grow(long[][] pages, long value) {
+	int page = (int) (value >>> PAGE_BITS);
+	if (page < pages.length) {
+	    return pages;
+	}
+	long[][] temp = new long[Math.max(page + 1, pages.length * 2)][];
+	System.arraycopy(pages, 0, temp, 0, pages.length);
+	return temp;
+    }
+
+    private boolean add(long[][] pages, long value) {
+	int page = (int) (value >>> PAGE_BITS);
+	if (pages[page] == null) {
+	    pages[page] = new long[WORDS_PER_PAGE];
+	}
+
+	int bit = (int) (value & ((1 << PAGE_BITS) - 1));
+	long mask = 1L << (bit & 63);
+	long word = pages[page][bit >>> 6];
+
+	if ((word & mask) != 0) {
+	    return false;
+	}
+
+	pages[page][bit >>> 6] = word | mask;
+	size++;
+	return true;
+    }
+
+    private static boolean contains(long[][] pages, long value) {
+	int page = (int) (value >>> PAGE_BITS);
+	if (page >= pages.length || pages[page] == null) {
+	    return false;
+	}
+
+	int bit = (int) (value & ((1 << PAGE_BITS) - 1));
+	return (pages[page][bit >>> 6] & (1L << (bit & 63))) != 0;
+    }
+
+    private static long memoryUsage(long[][] pages) {
+	long bytes = pages.length * 8L;
+	for (long[] page : pages) {
+	    if (page != null) {
+		bytes += WORDS_PER_PAGE * 8L;
+	    }
+	}
+	return bytes;
+    }
+}
@@ -0,0 +1,114 @@
+package osmConverter.beans;
+
+import java.util.Arrays;
+
+/**
+ *
+ * Numbers distinct long keys (e.g. node-ids) consecutively from 0 in the
+ * order they are added, so they can be used as indices of arrays. The keys
+ * are found in a hash-table with open addressing like in {@link LongMap},
+ * without boxing.
+ *
+ */
+public class LongIndex {
+
+    private final static int FREE = -1;
+
+    /**
+     * Index of the key or {@link #FREE}.
+     */
+    private int[] slots;
+    private long[] keys;
+    private int size = 0;
+
+    public LongIndex() {
+	this(16);
+    }
+
+    /**
+     * @param expectedSize
+     *            Number of keys the index will hold, avoids rehashing.
+     */
+    public LongIndex(int expectedSize) {
+	int capacity = 16;
+	while (capacity * 3 / 4 < expectedSize) {
+	    capacity <<= 1;
+	}
+	slots = new int[capacity];
+	Arrays.fill(slots, FREE);
+	keys = new long[Math.max(8, expectedSize)];
+    }
+
+    /**
+     * @return The index of the key, a new one if it wasn't added before.
+     */
+    public int add(long key) {
+	int mask = slots.length - 1;
+	int slot = hash(key) & mask;
+
+	while (slots[slot] != FREE) {
+	    if (keys[slots[slot]] == key) {
+		return slots[slot];
+	    }
+	    slot = (slot + 1) & mask;
+	}
+
+	if (size == keys.length) {
+	    keys = Arrays.copyOf(keys, size + (size >> 1) + 1);
+	}
+	keys[size] = key;
+	slots[slot] = size;
+	size++;
+
+	if (size * 4 > slots.length * 3) {
+	    rehash();
+	}
+	return size - 1;
+    }
+
+    /**
+     * @return The index of the key or -1 if it wasn't added.
+     */
+    public int get(long key) {
+	int mask = slots.length - 1;
+	int slot = hash(key) & mask;
+
+	while (slots[slot] != FREE) {
+	    if (keys[slots[slot]] == key) {
+		return slots[slot];
+	    }
+	    slot = (slot + 1) & mask;
+	}
+	return -1;
+    }
+
+    /**
+     * @return The key with this index.
+     */
+    public long getKey(int index) {
+	return keys[index];
+    }
+
+    public int size() {
+	return size;
+    }
+
+    private static int hash(long key) {
+	long h = key * 0x9E3779B97F4A7C15L;
+	return (int) (h ^ (h >>> 32));
+    }
+
+    private void rehash() {
+	slots = new int[slots.length * 2];
+	Arrays.fill(slots, FREE);
+
+	int mask = slots.length - 1;
+	for (int i = 0; i < size; i++) {
+	    int slot = hash(keys[i]) & mask;
+	    while (slots[slot] != FREE) {
+		slot = (slot + 1) & mask;
+	    }
+	    slots[slot] = i;
+	}
+    }
+}
@@ -0,0 +1,288 @@
+package osmConverter.beans;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ *
+ * Map with primitive long keys (e.g. osm-ids). The entries are stored in
+ * arrays in the order they were added, a hash-table with open addressing
+ * (linear probing) points to them. This avoids the boxing of the keys and the
+ * entry-objects of a {@link java.util.HashMap}, and iterating the map always
+ * returns the entries in the order they were added.
+ *
+ */
+public class LongMap<V> {
+
+    private final static int FREE = 0;
+    private final static int DELETED = -1;
+
+    private final static Object REMOVED = new Object();
+
+    /**
+     * Index of the entry + 1, {@link #FREE} or {@link #DELETED}.
+     */
+    private int[] slots;
+    private long[] keys;
+    private Object[] values;
+
+    /**
+     * Number of used entries, including removed ones.
+     */
+    private int entries = 0;
+    private int size = 0;
+    private int deleted = 0;
+
+    public LongMap() {
+	this(16);
+    }
+
+    /**
+     * @param expectedSize
+     *            Number of entries the map will hold, avoids rehashing.
+     */
+    public LongMap(int expectedSize) {
+	int capacity = 16;
+	while (capacity * 3 / 4 < expectedSize) {
+	    capacity <<= 1;
+	}
+	slots = new int[capacity];
+	keys = new long[Math.max(8, expectedSize)];
+	values = new Object[keys.length];
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+	int index = indexOf(key);
+	return index < 0 ? null : (V) values[index];
+    }
+
+    public boolean containsKey(long key) {
+	return indexOf(key) >= 0;
+    }
+
+    /**
+     * @return The value previously stored for the key or null.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+	int mask = slots.length - 1;
+	int slot = hash(key) & mask;
+	int firstDeleted = -1;
+
+	while (slots[slot] != FREE) {
+	    if (slots[slot] == DELETED) {
+		if (firstDeleted < 0) {
+		    firstDeleted = slot;
+		}
+	    } else if (keys[slots[slot] - 1] == key) {
+		int index = slots[slot] - 1;
+		V old = (V) values[index];
+		values[index] = value;
+		return old;
+	    }
+	    slot = (slot + 1) & mask;
+	}
+
+	if (entries == keys.length) {
+	    growEntries();
+	}
+	keys[entries] = key;
+	values[entries] = value;
+	entries++;
+	size++;
+
+	if (firstDeleted >= 0) {
+	    slots[firstDeleted] = entries;
+	    deleted--;
+	} else {
+	    slots[slot] = entries;
+	}
+
+	if ((size + deleted) * 4 > slots.length * 3) {
+	    rehash();
+	}
+	return null;
+    }
+
+    public void putAll(LongMap<V> other) {
+	for (int i = 0; i < other.entries; i++) {
+	    if (other.values[i] != REMOVED) {
+		put(other.keys[i], other.valueAt(i));
+	    }
+	}
+    }
+
+    /**
+     * @return The removed value or null.
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+	int slot = slotOf(key);
+	if (slot < 0) {
+	    return null;
+	}
+
+	int index = slots[slot] - 1;
+	V old = (V) values[index];
+	values[index] = REMOVED;
+	slots[slot] = DELETED;
+	size--;
+	deleted++;
+	return old;
+    }
+
+    public int size() {
+	return size;
+    }
+
+    public boolean isEmpty() {
+	return size == 0;
+    }
+
+    public void clear() {
+	Arrays.fill(slots, FREE);
+	Arrays.fill(values, 0, entries, null);
+	entries = 0;
+	size = 0;
+	deleted = 0;
+    }
+
+    /**
+     * @return All keys in the order they were added.
+     */
+    public long[] keys() {
+	long[] result = new long[size];
+	int j = 0;
+	for (int i = 0; i < entries; i++) {
+	    if (values[i] != REMOVED) {
+		result[j++] = keys[i];
+	    }
+	}
+	return result;
+    }
+
+    /**
+     * @return View of the values in the order they were added.
+     */
+    public Collection<V> values() {
+	return new AbstractCollection<V>() {
+
+	    @Override
+	    public Iterator<V> iterator() {
+		return new ValueIterator();
+	    }
+
+	    @Override
+	    public int size() {
+		return size;
+	    }
+	};
+    }
+
+    @SuppressWarnings("unchecked")
+    private V valueAt(int index) {
+	return (V) values[index];
+    }
+
+    private int indexOf(long key) {
+	int slot = slotOf(key);
+	return slot < 0 ? -1 : slots[slot] - 1;
+    }
+
+    private int slotOf(long key) {
+	int mask = slots.length - 1;
+	int slot = hash(key) & mask;
+
+	while (slots[slot] != FREE) {
+	    if (slots[slot] != DELETED && keys[slots[slot] - 1] == key) {
+		return slot;
+	    }
+	    slot = (slot + 1) & mask;
+	}
+	return -1;
+    }
+
+    private static int hash(long key) {
+	long h = key * 0x9E3779B97F4A7C15L;
+	return (int) (h ^ (h >>> 32));
+    }
+
+    private void growEntries() {
+	int capacity = keys.length + (keys.length >> 1) + 1;
+	long[] newKeys = new long[capacity];
+	Object[] newValues = new Object[capacity];
+	System.arraycopy(keys, 0, newKeys, 0, entries);
+	System.arraycopy(values, 0, newValues, 0, entries);
+	keys = newKeys;
+	values = newValues;
+    }
+
+    /**
+     * Drops removed entries and rebuilds the hash-table, doubling it if it's
+     * filled by living entries.
+     */
+    private void rehash() {
+	int j = 0;
+	for (int i = 0; i < entries; i++) {
+	    if (values[i] != REMOVED) {
+		keys[j] = keys[i];
+		values[j] = values[i];
+		j++;
+	    }
+	}
+	Arrays.fill(values, j, entries, null);
+	entries = j;
+	deleted = 0;
+
+	int capacity = slots.length;
+	while (size * 4 > capacity * 3 / 2) {
+	    capacity <<= 1;
+	}
+	slots = new int[capacity];
+
+	int mask = capacity - 1;
+	for (int i = 0; i < entries; i++) {
+	    int slot = hash(keys[i]) & mask;
+	    while (slots[slot] != FREE) {
+		slot = (slot + 1) & mask;
+	    }
+	    slots[slot] = i + 1;
+	}
+    }
+
+    private class ValueIterator implements Iterator<V> {
+
+	private int next = 0;
+
+	ValueIterator() {
+	    skipRemoved();
+	}
+
+	public boolean hasNext() {
+	    return next < entries;
+	}
+
+	public V next() {
+	    if (next >= entries) {
+		throw new NoSuchElementException();
+	    }
+	    V value = valueAt(next++);
+	    skipRemoved();
+	    return value;
+	}
+
+	public void remove() {
+	    throw new UnsupportedOperationException();
+	}
+
+	private void skipRemoved() {
+	    while (next < entries && values[next] == REMOVED) {
+		next++;
+	    }
+	}
+    }
+}
@@ -0,0 +1,111 @@
+package osmConverter.beans;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ *
+ * Base of the {@link NodeStore}s keeping the coordinates outside of the heap
+ * in a memory-mapped file. Coordinates are stored as fixed-point ints with 7
+ * decimal places, the precision of OpenStreetMap, so the values read from
+ * .osm- and .pbf-files are returned unchanged.
+ *
+ * The file is mapped in segments of 128 MB which are created when they are
+ * written first. The file is deleted when the store is closed.
+ *
+ */
+public abstract class MappedNodeStore implements NodeStore {
+
+    private final static double SCALE = 1e7;
+
+    private final static int SEGMENT_BITS = 27;
+    private final static long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+
+    private final File file;
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+
+    private MappedByteBuffer[] segments = new MappedByteBuffer[16];
+
+    protected MappedNodeStore(File file) throws IOException {
+	this.file = file;
+	this.randomAccessFile = new RandomAccessFile(file, "rw");
+	this.channel = randomAccessFile.getChannel();
+    }
+
+    public static int toFixed(double coordinate) {
+	return (int) Math.round(coordinate * SCALE);
+    }
+
+    public static double fromFixed(int coordinate) {
+	return coordinate / SCALE;
+    }
+
+    protected int readInt(long position) {
+	MappedByteBuffer segment = segment(position, false);
+	return segment == null ? 0 : segment.getInt(offset(position));
+    }
+
+    protected long readLong(long position) {
+	MappedByteBuffer segment = segment(position, false);
+	return segment == null ? 0 : segment.getLong(offset(position));
+    }
+
+    protected void writeInt(long position, int value) {
+	segment(position, true).putInt(offset(position), value);
+    }
+
+    protected void writeLong(long position, long value) {
+	segment(position, true).putLong(offset(position), value);
+    }
+
+    public void close() {
+	segments = null;
+	try {
+	    channel.close();
+	    randomAccessFile.close();
+	} catch (IOException e) {
+	    throw new RuntimeException(e);
+	}
+	if (!file.delete()) {
+	    file.deleteOnExit();
+	}
+    }
+
+    private static int offset(long position) {
+	return (int) (position & (SEGMENT_SIZE - 1));
+    }
+
+    /**
+     * @param create
+     *            If true a missing segment is mapped (growing the file),
+     *            otherwise null is returned for it.
+     */
+    private MappedByteBuffer segment(long position, boolean create) {
+	int index = (int) (position >>> SEGMENT_BITS);
+
+	if (index >= segments.length) {
+	    if (!create) {
+		return null;
+	    }
+	    MappedByteBuffer[] temp = new MappedByteBuffer[Math.max(index + 1,
+		    segments.length * 2)];
+	    System.arraycopy(segments, 0, temp, 0, segments.length);
+	    segments = temp;
+	}
+
+	if (segments[index] == null && create) {
+	    try {
+		segments[index] = channel.map(FileChannel.MapMode.READ_WRITE,
+			index * SEGMENT_SIZE, SEGMENT_SIZE);
+	    } catch (IOException e) {
+		throw new RuntimeException("Couldn't map node-store "
+			+ file.getPath(), e);
+	    }
+	}
+	return segments[index];
+    }
+}
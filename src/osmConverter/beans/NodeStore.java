@@ -0,0 +1,34 @@
+package osmConverter.beans;
+
+/**
+ *
+ * Storage for the coordinates of nodes, looked up by the id of the node.
+ *
+ */
+public interface NodeStore {
+
+    public void put(long id, double lon, double lat);
+
+    public boolean contains(long id);
+
+    /**
+     * @return The longitude of the node or NaN if the node is unknown.
+     */
+    public double getLon(long id);
+
+    /**
+     * @return The latitude of the node or NaN if the node is unknown.
+     */
+    public double getLat(long id);
+
+    /**
+     * @return Number of nodes in the store.
+     */
+    public long size();
+
+    /**
+     * Frees all resources of the store, it can't be used afterwards.
+     */
+    public void close();
+
+}
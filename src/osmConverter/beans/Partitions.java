@@ -0,0 +1,88 @@
+package osmConverter.beans;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ *
+ * Runs a task over the indices 0 to size - 1 of arrays, split into
+ * partitions which are processed by several threads. The partitions are
+ * disjoint ranges, so tasks writing only to their own range of an array
+ * don't need any synchronization.
+ *
+ */
+public final class Partitions {
+
+    /**
+     * Number of partitions per thread, smaller partitions balance the load.
+     */
+    private final static int PARTITIONS_PER_THREAD = 4;
+
+    public interface Task {
+
+	/**
+	 * Processes the indices from (inclusive) to (exclusive).
+	 */
+	void run(int from, int to);
+    }
+
+    private Partitions() {
+    }
+
+    /**
+     * Runs the task over all indices and waits until it's finished. With
+     * one thread or less than minSize indices the task runs in the calling
+     * thread.
+     *
+     * @param minSize
+     *            Smallest number of indices worth a partition.
+     */
+    public static void run(int size, int threads, int minSize, final Task task)
+	    throws InterruptedException {
+	if (threads <= 1 || size <= minSize) {
+	    task.run(0, size);
+	    return;
+	}
+
+	int partition = Math.max(minSize, (size + threads
+		* PARTITIONS_PER_THREAD - 1)
+		/ (threads * PARTITIONS_PER_THREAD));
+	ExecutorService executor = Executors.newFixedThreadPool(threads);
+	List<Future<Object>> tasks = new ArrayList<Future<Object>>();
+
+	try {
+	    for (int start = 0; start < size; start += partition) {
+		final int from = start;
+		final int to = Math.min(start + partition, size);
+
+		tasks.add(executor.submit(new Callable<Object>() {
+		    @Override
+		    public Object call() {
+			task.run(from, to);
+			return null;
+		    }
+		}));
+	    }
+
+	    for (Future<Object> future : tasks) {
+		try {
+		    future.get();
+		} catch (ExecutionException e) {
+		    if (e.getCause() instanceof Error) {
+			throw (Error) e.getCause();
+		    } else if (e.getCause() instanceof RuntimeException) {
+			throw (RuntimeException) e.getCause();
+		    }
+		    throw new RuntimeException(e.getCause());
+		}
+	    }
+	} finally {
+	    executor.shutdownNow();
+	}
+    }
+}
@@ -0,0 +1,103 @@
+package osmConverter.beans;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ *
+ * {@link NodeStore} keeping id and coordinates of every node in an array
+ * sorted by id (16 bytes per node), nodes are found by binary search. Uses
+ * less space than the {@link DenseNodeStore} for small extracts with widely
+ * spread ids. The nodes have to be added in ascending order of their ids, as
+ * they are in .osm- and .pbf-files. Nodes already in the store may be updated
+ * in any order. The few nodes added out of order (e.g. created by
+ * change-files) are kept in a map on the heap.
+ *
+ */
+public class SparseNodeStore extends MappedNodeStore {
+
+    private final static int RECORD_SIZE = 16;
+
+    private long size = 0;
+    private long lastId = Long.MIN_VALUE;
+
+    /**
+     * Coordinates of the nodes added out of order, longitude in the upper
+     * and latitude in the lower half.
+     */
+    private final LongMap<Long> unsorted = new LongMap<Long>();
+
+    public SparseNodeStore(File file) throws IOException {
+	super(file);
+    }
+
+    public void put(long id, double lon, double lat) {
+	long index;
+
+	if (size > 0 && id == lastId) {
+	    index = size - 1;
+	} else if (size > 0 && id < lastId) {
+	    index = indexOf(id);
+	    if (index < 0) {
+		unsorted.put(id, ((long) toFixed(lon) << 32)
+			| (toFixed(lat) & 0xffffffffL));
+		return;
+	    }
+	} else {
+	    index = size++;
+	    lastId = id;
+	}
+
+	long position = index * RECORD_SIZE;
+	writeLong(position, id);
+	writeInt(position + 8, toFixed(lon));
+	writeInt(position + 12, toFixed(lat));
+    }
+
+    public boolean contains(long id) {
+	return indexOf(id) >= 0 || unsorted.containsKey(id);
+    }
+
+    public double getLon(long id) {
+	long index = indexOf(id);
+	if (index < 0) {
+	    Long coordinates = unsorted.get(id);
+	    return coordinates == null ? Double.NaN
+		    : fromFixed((int) (coordinates.longValue() >> 32));
+	}
+	return fromFixed(readInt(index * RECORD_SIZE + 8));
+    }
+
+    public double getLat(long id) {
+	long index = indexOf(id);
+	if (index < 0) {
+	    Long coordinates = unsorted.get(id);
+	    return coordinates == null ? Double.NaN
+		    : fromFixed((int) coordinates.longValue());
+	}
+	return fromFixed(readInt(index * RECORD_SIZE + 12));
+    }
+
+    public long size() {
+	return size + unsorted.size();
+    }
+
+    private long indexOf(long id) {
+	long low = 0;
+	long high = size - 1;
+
+	while (low <= high) {
+	    long middle = (low + high) >>> 1;
+	    long current = readLong(middle * RECORD_SIZE);
+
+	    if (current < id) {
+		low = middle + 1;
+	    } else if (current > id) {
+		high = middle - 1;
+	    } else {
+		return middle;
+	    }
+	}
+	return -1;
+    }
+}
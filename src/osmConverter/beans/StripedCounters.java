@@ -0,0 +1,188 @@
+package osmConverter.beans;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ *
+ * Counters identified by a pair of symbols (see {@link SymbolTable}), e.g. a
+ * highway-type and a category, which may be incremented by several threads
+ * at once without a lock.
+ *
+ * Every counter is split into stripes, each thread increments the stripe
+ * selected by its id and the value of a counter is the sum of its stripes.
+ * The stripes are padded to 64 bytes, so threads incrementing the same
+ * counter don't share a cache-line. Only the creation of a new counter is
+ * synchronized, the table of counters is replaced by a larger copy when it
+ * gets full, so it can be read without a lock.
+ *
+ */
+public class StripedCounters {
+
+    /**
+     * Longs per stripe, 64 bytes.
+     */
+    private final static int PAD = 8;
+
+    private final static int MAX_STRIPES = 64;
+
+    /**
+     * Marks a free slot, no valid pair of symbols is packed to this value.
+     */
+    private final static long EMPTY = Long.MIN_VALUE;
+
+    private final static int STRIPES = stripes();
+
+    private static final class Table {
+	final long[] pairs;
+	final AtomicLongArray[] counters;
+	final int size;
+
+	Table(int capacity, int size) {
+	    pairs = new long[capacity];
+	    counters = new AtomicLongArray[capacity];
+	    this.size = size;
+	    Arrays.fill(pairs, EMPTY);
+	}
+    }
+
+    private volatile Table table = new Table(64, 0);
+
+    /**
+     * Adds 1 to the counter of the pair, the counter is created if it doesn't
+     * exist yet.
+     */
+    public void increment(int key, int category) {
+	long pair = pack(key, category);
+	AtomicLongArray counter = find(table, pair);
+	if (counter == null) {
+	    counter = create(pair);
+	}
+	counter.incrementAndGet(stripe() * PAD);
+    }
+
+    /**
+     * @return The value of the counter of the pair, 0 if it doesn't exist.
+     */
+    public long get(int key, int category) {
+	AtomicLongArray counter = find(table, pack(key, category));
+	return counter == null ? 0 : sum(counter);
+    }
+
+    /**
+     * @return Number of the counters.
+     */
+    public int size() {
+	return table.size;
+    }
+
+    /**
+     * Reads all counters at once. Increments running at the same time may
+     * or may not be contained.
+     *
+     * @return The pairs of the counters and their values, each as three
+     *         longs (key, category, value).
+     */
+    public long[] snapshot() {
+	Table current = table;
+	long[] result = new long[current.size * 3];
+	int index = 0;
+
+	for (int i = 0; i < current.pairs.length; i++) {
+	    if (current.pairs[i] == EMPTY) {
+		continue;
+	    }
+	    result[index++] = (int) (current.pairs[i] >> 32);
+	    result[index++] = (int) current.pairs[i];
+	    result[index++] = sum(current.counters[i]);
+	}
+	return result;
+    }
+
+    private synchronized AtomicLongArray create(long pair) {
+	Table current = table;
+	AtomicLongArray counter = find(current, pair);
+	if (counter != null) {
+	    return counter;
+	}
+
+	counter = new AtomicLongArray(STRIPES * PAD);
+	// keep the load below 1/2
+	if ((current.size + 1) * 2 > current.pairs.length) {
+	    Table grown = new Table(current.pairs.length * 2, current.size + 1);
+	    for (int i = 0; i < current.pairs.length; i++) {
+		if (current.pairs[i] != EMPTY) {
+		    insert(grown, current.pairs[i], current.counters[i]);
+		}
+	    }
+	    insert(grown, pair, counter);
+	    table = grown;
+	} else {
+	    // a copy, the table may be read at the same time
+	    Table copy = new Table(current.pairs.length, current.size + 1);
+	    System.arraycopy(current.pairs, 0, copy.pairs, 0,
+		    current.pairs.length);
+	    System.arraycopy(current.counters, 0, copy.counters, 0,
+		    current.counters.length);
+	    insert(copy, pair, counter);
+	    table = copy;
+	}
+	return counter;
+    }
+
+    private static AtomicLongArray find(Table table, long pair) {
+	int mask = table.pairs.length - 1;
+	for (int i = hash(pair) & mask;; i = (i + 1) & mask) {
+	    if (table.pairs[i] == pair) {
+		return table.counters[i];
+	    }
+	    if (table.pairs[i] == EMPTY) {
+		return null;
+	    }
+	}
+    }
+
+    private static void insert(Table table, long pair, AtomicLongArray counter) {
+	int mask = table.pairs.length - 1;
+	int i = hash(pair) & mask;
+	while (table.pairs[i] != EMPTY) {
+	    i = (i + 1) & mask;
+	}
+	table.pairs[i] = pair;
+	table.counters[i] = counter;
+    }
+
+    private static long sum(AtomicLongArray counter) {
+	long sum = 0;
+	for (int i = 0; i < counter.length(); i += PAD) {
+	    sum += counter.get(i);
+	}
+	return sum;
+    }
+
+    private static long pack(int key, int category) {
+	return ((long) key << 32) | (category & 0xffffffffL);
+    }
+
+    private static int hash(long pair) {
+	long h = pair * 0x9e3779b97f4a7c15L;
+	return (int) (h ^ (h >>> 32));
+    }
+
+    private static int stripe() {
+	long h = Thread.currentThread().getId() * 0x9e3779b97f4a7c15L;
+	return (int) (h >>> 32) & (STRIPES - 1);
+    }
+
+    /**
+     * @return A power of two, at least twice the number of processors.
+     */
+    private static int stripes() {
+	int stripes = 1;
+	while (stripes < 2 * Runtime.getRuntime().availableProcessors()
+		&& stripes < MAX_STRIPES) {
+	    stripes *= 2;
+	}
+	return stripes;
+    }
+}
@@ -0,0 +1,91 @@
+package osmConverter.beans;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ *
+ * Global dictionary of the strings used in tags. Every distinct string is
+ * stored once and identified by an int-symbol, so equal keys and values of
+ * different entities share one instance and can be compared by their
+ * symbols. Symbols are never removed.
+ *
+ * The table may be filled by several threads at once (e.g. the decoders of
+ * the {@link osmConverter.io.PbfReader}).
+ *
+ */
+public final class SymbolTable {
+
+    /**
+     * Symbol of null, returned for unknown strings by {@link #lookup(String)}.
+     */
+    public final static int NONE = -1;
+
+    private final static ConcurrentHashMap<String, Integer> symbols = new ConcurrentHashMap<String, Integer>();
+
+    private static volatile String[] strings = new String[1024];
+    private static int size = 0;
+
+    private SymbolTable() {
+    }
+
+    /**
+     * @return The symbol of the string, a new one if it wasn't known yet.
+     */
+    public static int intern(String string) {
+	if (string == null) {
+	    return NONE;
+	}
+
+	Integer symbol = symbols.get(string);
+	if (symbol != null) {
+	    return symbol;
+	}
+	return add(string);
+    }
+
+    /**
+     * Like {@link #intern(String)}, but unknown strings are not added.
+     *
+     * @return The symbol of the string or {@link #NONE}.
+     */
+    public static int lookup(String string) {
+	if (string == null) {
+	    return NONE;
+	}
+
+	Integer symbol = symbols.get(string);
+	return symbol == null ? NONE : symbol;
+    }
+
+    /**
+     * @return The string of the symbol, null for {@link #NONE}.
+     */
+    public static String get(int symbol) {
+	return symbol == NONE ? null : strings[symbol];
+    }
+
+    /**
+     * @return Number of distinct strings in the table.
+     */
+    public static synchronized int size() {
+	return size;
+    }
+
+    private static synchronized int add(String string) {
+	Integer symbol = symbols.get(string);
+	if (symbol != null) {
+	    return symbol;
+	}
+
+	if (size == strings.length) {
+	    String[] temp = new String[size * 2];
+	    System.arraycopy(strings, 0, temp, 0, size);
+	    strings = temp;
+	}
+
+	// the string has to be in the array before its symbol can be found
+	strings[size] = string;
+	symbols.put(string, size);
+	return size++;
+    }
+}
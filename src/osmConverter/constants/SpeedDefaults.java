@@ -2,18 +2,22 @@ package osmConverter.constants;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import osmConverter.beans.LongMap;
+import osmConverter.beans.NodeStore;
+import osmConverter.beans.SymbolTable;
+import osmConverter.data.AreaIndex;
 import osmConverter.data.Link;
 import osmConverter.data.MyArea;
 import osmConverter.data.OsmNode;
 import osmConverter.data.OsmPlace;
 import osmConverter.data.OsmWay;
+import osmConverter.data.PlaceIndex;
+import osmConverter.data.UrbanRaster;
 import osmConverter.io.IsLogging;
 import osmConverter.logic.ConversionEventLogger;
-import osmConverter.logic.CoordinateHelper;
 
 /**
  * Speed defaults. Those are set using this list: http://wiki.openstreetmap.org
@@ -67,7 +71,22 @@ public class SpeedDefaults implements IsLogging {
 
     private List<OsmPlace> places = new ArrayList<OsmPlace>();
 
-    public SpeedDefaults(Map<String, OsmNode> nodes, String[] logs,
+    /**
+     * The town-areas, null if the urban detection isn't used.
+     */
+    private AreaIndex towns = null;
+
+    /**
+     * The places with their radius, null if the urban detection isn't used.
+     */
+    private PlaceIndex placeIndex = null;
+
+    /**
+     * Classifies most nodes without the exact tests, null if it isn't used.
+     */
+    private UrbanRaster urbanRaster = null;
+
+    public SpeedDefaults(LongMap<OsmNode> nodes, String[] logs,
 	    ConversionEventLogger cl) {
 	super();
 
@@ -83,25 +102,79 @@ public class SpeedDefaults implements IsLogging {
 	}
     }
 
+    /**
+     * Enables the detection of ways inside of towns for the default speeds
+     * of highways which give no hint on their own (see
+     * {@link #wayIsUrban(OsmWay, NodeStore)}). Has to be called after all
+     * areas were created.
+     * 
+     * @param myAreas
+     *            The areas, the towns among them are indexed.
+     */
+    public void setUrbanAreas(LongMap<MyArea> myAreas) {
+	towns = new AreaIndex(myAreas, "town");
+	placeIndex = new PlaceIndex(places);
+	logInfo("Urban detection uses " + towns.size() + " town-areas and "
+		+ placeIndex.size() + " places.");
+    }
+
+    /**
+     * Rasterizes the town-areas and places given to
+     * {@link #setUrbanAreas(LongMap)}.
+     * 
+     * @param resolution
+     *            Size of the cells in meters.
+     * @return null if they can't be rasterized, see
+     *         {@link UrbanRaster#create(AreaIndex, PlaceIndex, double)}.
+     */
+    public UrbanRaster createUrbanRaster(double resolution) {
+	long start = System.currentTimeMillis();
+	UrbanRaster raster = UrbanRaster.create(towns, placeIndex, resolution);
+	if (raster == null) {
+	    logWarning("The town-areas and places can't be rasterized, all nodes are tested exactly.");
+	} else {
+	    logInfo("Rasterized the town-areas and places in "
+		    + (System.currentTimeMillis() - start) + " ms.");
+	}
+	return raster;
+    }
+
+    /**
+     * @param urbanRaster
+     *            Used for the urban detection before the exact tests, null
+     *            to test all nodes exactly.
+     */
+    public void setUrbanRaster(UrbanRaster urbanRaster) {
+	this.urbanRaster = urbanRaster;
+	if (urbanRaster != null) {
+	    long cells = (long) urbanRaster.getColumns()
+		    * urbanRaster.getRows();
+	    logInfo("Urban raster has " + cells + " cells, "
+		    + urbanRaster.count(UrbanRaster.URBAN) + " urban and "
+		    + urbanRaster.count(UrbanRaster.UNKNOWN)
+		    + " to be tested exactly.");
+	}
+    }
+
     public void checkForSpeedConflicts(OsmWay osmWay, Link link) {
 	int speed = link.getSpeed();
+	int highway = osmWay.getTagSymbol(TagSymbols.HIGHWAY);
 
-	if (speed > 10
-		&& osmWay.getTags().get("highway").equals("living_street")) {
+	if (speed > 10 && highway == TagSymbols.LIVING_STREET) {
 	    logOsmWarning("Conflict in maxspeed (living_street)! Way-id: "
 		    + osmWay.getId() + ", speed: " + speed);
 
 	    conversionLogger.getScorer().reportSpeedTagConflict();
 	}
 
-	if (speed > 50 && osmWay.getTags().get("highway").equals("residential")) {
+	if (speed > 50 && highway == TagSymbols.RESIDENTIAL) {
 	    logOsmWarning("Conflict in maxspeed (residential)! Way-id: "
 		    + osmWay.getId() + ", speed: " + speed);
 
 	    conversionLogger.getScorer().reportSpeedTagConflict();
 	}
 
-	if (speed < 80 && osmWay.getTags().get("highway").equals("motorway")) {
+	if (speed < 80 && highway == TagSymbols.MOTORWAY) {
 	    logOsmWarning("Conflict in maxspeed (motorway)! Way-id: "
 		    + osmWay.getId() + ", speed: " + speed);
 
@@ -110,20 +183,19 @@ public class SpeedDefaults implements IsLogging {
     }
 
     public int getDefaultSpeed(int streetType, OsmWay osmWay,
-	    Map<String, MyArea> myAreas, Map<String, OsmNode> nodes) {
+	    LongMap<MyArea> myAreas, NodeStore nodes) {
 	return getDefaultSpeed(streetType, osmWay, myAreas, nodes, false, false);
     }
 
     public int getDefaultSpeed(int streetType, OsmWay osmWay,
-	    Map<String, MyArea> myAreas, Map<String, OsmNode> nodes,
-	    boolean zoneUrban) {
+	    LongMap<MyArea> myAreas, NodeStore nodes, boolean zoneUrban) {
 	return getDefaultSpeed(streetType, osmWay, myAreas, nodes, true,
 		zoneUrban);
     }
 
     private int getDefaultSpeed(int streetType, OsmWay osmWay,
-	    Map<String, MyArea> myAreas, Map<String, OsmNode> nodes,
-	    boolean zoneSet, boolean zoneUrban) {
+	    LongMap<MyArea> myAreas, NodeStore nodes, boolean zoneSet,
+	    boolean zoneUrban) {
 
 	boolean isUrban = false;
 	boolean dontKnow = false;
@@ -132,18 +204,21 @@ public class SpeedDefaults implements IsLogging {
 	    isUrban = zoneUrban;
 	} else if (streetType > 2) {
 	    isUrban = true;
+	} else if (towns != null) {
+	    isUrban = wayIsUrban(osmWay, nodes);
 	} else {
 	    dontKnow = true;
 	}
 
-	if (osmWay.getTags().containsKey("highway")) {
-	    String highway = osmWay.getTags().get("highway");
+	int highway = osmWay.getTagSymbol(TagSymbols.HIGHWAY);
 
-	    if (highway.equals("motorway")) {
+	if (highway != SymbolTable.NONE) {
+	    if (highway == TagSymbols.MOTORWAY) {
 		return MOTORWAY;
-	    } else if (highway.equals("motorway_link")) {
+	    } else if (highway == TagSymbols.MOTORWAY_LINK) {
 		return MOTORWAY_LINK;
-	    } else if (highway.equals("trunk") || highway.equals("trunk_link")) {
+	    } else if (highway == TagSymbols.TRUNK
+		    || highway == TagSymbols.TRUNK_LINK) {
 		if (dontKnow) {
 		    return TRUNK;
 		} else if (isUrban) {
@@ -151,8 +226,8 @@ public class SpeedDefaults implements IsLogging {
 		} else {
 		    return TRUNK_OUTSIDE;
 		}
-	    } else if (highway.equals("primary")
-		    || highway.equals("primary_link")) {
+	    } else if (highway == TagSymbols.PRIMARY
+		    || highway == TagSymbols.PRIMARY_LINK) {
 		if (dontKnow) {
 		    return PRIMARY;
 		} else if (isUrban) {
@@ -160,8 +235,8 @@ public class SpeedDefaults implements IsLogging {
 		} else {
 		    return PRIMARY_OUTSIDE;
 		}
-	    } else if (highway.equals("secondary")
-		    || highway.equals("secondary_link")) {
+	    } else if (highway == TagSymbols.SECONDARY
+		    || highway == TagSymbols.SECONDARY_LINK) {
 		if (dontKnow) {
 		    return SECONDARY;
 		} else if (isUrban) {
@@ -169,7 +244,7 @@ public class SpeedDefaults implements IsLogging {
 		} else {
 		    return SECONDARY_OUTSIDE;
 		}
-	    } else if (highway.equals("tertiary")) {
+	    } else if (highway == TagSymbols.TERTIARY) {
 		if (dontKnow) {
 		    return TERTIARY;
 		} else if (isUrban) {
@@ -177,7 +252,7 @@ public class SpeedDefaults implements IsLogging {
 		} else {
 		    return TERTIARY_OUTSIDE;
 		}
-	    } else if (highway.equals("unclassified")) {
+	    } else if (highway == TagSymbols.UNCLASSIFIED) {
 		if (dontKnow) {
 		    return UNCLASSIFIED;
 		} else if (isUrban) {
@@ -185,7 +260,7 @@ public class SpeedDefaults implements IsLogging {
 		} else {
 		    return UNCLASSIFIED_OUTSIDE;
 		}
-	    } else if (highway.equals("residential")) {
+	    } else if (highway == TagSymbols.RESIDENTIAL) {
 		if (dontKnow) {
 		    return RESIDENTIAL;
 		} else if (isUrban) {
@@ -193,7 +268,7 @@ public class SpeedDefaults implements IsLogging {
 		} else {
 		    return RESIDENTIAL_OUTSIDE;
 		}
-	    } else if (highway.equals("road")) {
+	    } else if (highway == TagSymbols.ROAD) {
 		if (dontKnow) {
 		    return ROAD;
 		} else if (isUrban) {
@@ -201,13 +276,13 @@ public class SpeedDefaults implements IsLogging {
 		} else {
 		    return ROAD_OUTSIDE;
 		}
-	    } else if (highway.equals("living_street")) {
+	    } else if (highway == TagSymbols.LIVING_STREET) {
 		return WALK_SPEED;
-	    } else if (highway.equals("service")) {
+	    } else if (highway == TagSymbols.SERVICE) {
 		return MODERAT_SPEED;
-	    } else if (highway.equals("DE:motorway")) {
+	    } else if (highway == TagSymbols.DE_MOTORWAY) {
 		return MOTORWAY;
-	    } else if (highway.equals("ford")) {
+	    } else if (highway == TagSymbols.FORD) {
 		return MODERAT_SPEED;
 	    } else {
 		return DEFAULT_SPEED;
@@ -217,35 +292,45 @@ public class SpeedDefaults implements IsLogging {
 	}
     }
 
-    private boolean isInsideArea(OsmWay osmWay, Map<String, MyArea> myAreas) {
-	for (MyArea area : myAreas.values()) {
-	    if (area.getType().equals("town")) {
-		for (OsmNode node : osmWay.getNodes()) {
-		    if (area.contains(node.getLon(), node.getLat())) {
-			return true;
-		    }
-		}
+    /**
+     * @return true if a node of the way is inside of a town-area.
+     */
+    private boolean isInsideArea(OsmWay osmWay, NodeStore nodes) {
+	for (long node : osmWay.getNodes()) {
+	    if (towns.contains(nodes.getLon(node), nodes.getLat(node))) {
+		return true;
 	    }
 	}
 	return false;
     }
 
     /**
-     * Checks if there is a place (city, suburb etc.) closer than the specified
-     * radius for that kind of a place
-     * 
-     * @param osmWay
-     * @return
+     * @return true if a node of the way is in an urban cell of the raster, or
+     *         in a town-area or the radius of a place if its cell isn't
+     *         certain.
      */
-    private boolean isPlacePOINearby(OsmWay osmWay) {
-	for (OsmPlace place : places) {
-	    double distance = 0;
-	    for (OsmNode wayNode : osmWay.getNodes()) {
-		distance = CoordinateHelper.calcDistanceBetweenNodes(wayNode,
-			place.getNode());
+    private boolean isInsideRaster(OsmWay osmWay, NodeStore nodes) {
+	for (long node : osmWay.getNodes()) {
+	    double lon = nodes.getLon(node);
+	    double lat = nodes.getLat(node);
+	    int type = urbanRaster.get(lon, lat);
+	    if (type == UrbanRaster.URBAN) {
+		return true;
+	    } else if (type == UrbanRaster.UNKNOWN
+		    && (towns.contains(lon, lat) || placeIndex.isNearby(lat, lon))) {
+		return true;
 	    }
+	}
+	return false;
+    }
 
-	    if (distance <= place.getRadius()) {
+    /**
+     * @return true if a node of the way is within the radius of a place.
+     */
+    private boolean isPlacePOINearby(OsmWay osmWay, NodeStore nodes) {
+	for (long wayNode : osmWay.getNodes()) {
+	    if (placeIndex.isNearby(nodes.getLat(wayNode), nodes
+		    .getLon(wayNode))) {
 		return true;
 	    }
 	}
@@ -271,15 +356,16 @@ public class SpeedDefaults implements IsLogging {
 	logger.log(Level.WARNING, message);
     }
 
-    private boolean wayIsUrban(OsmWay osmWay, Map<String, MyArea> myAreas,
-	    Map<String, OsmNode> nodes) {
+    private boolean wayIsUrban(OsmWay osmWay, NodeStore nodes) {
 	// http://wiki.openstreetmap.org/wiki/OSM_tags_for_routing#City
 	// doing the 3 necesarry test
 	if (osmWay.getTags().containsKey("is_in")) {
 	    return true;
-	} else if (isInsideArea(osmWay, myAreas)) {
+	} else if (urbanRaster != null) {
+	    return isInsideRaster(osmWay, nodes);
+	} else if (isInsideArea(osmWay, nodes)) {
 	    return true;
-	} else if (isPlacePOINearby(osmWay)) {
+	} else if (isPlacePOINearby(osmWay, nodes)) {
 	    return true;
 	}
 	return false;
@@ -0,0 +1,40 @@
+package osmConverter.constants;
+
+import osmConverter.beans.SymbolTable;
+
+/**
+ * Symbols (see {@link SymbolTable}) of the keys and values compared in the
+ * hot paths of the conversion.
+ */
+public class TagSymbols {
+
+    public final static int HIGHWAY = SymbolTable.intern("highway");
+
+    public final static int EMPTY = SymbolTable.intern("");
+    public final static int PROPOSED = SymbolTable.intern("proposed");
+    public final static int DISMANTLED = SymbolTable.intern("dismantled");
+    public final static int CONSTRUCTION = SymbolTable.intern("construction");
+    public final static int RACEWAY = SymbolTable.intern("raceway");
+    public final static int PLANNED = SymbolTable.intern("planned");
+
+    public final static int MOTORWAY = SymbolTable.intern("motorway");
+    public final static int MOTORWAY_LINK = SymbolTable
+	    .intern("motorway_link");
+    public final static int TRUNK = SymbolTable.intern("trunk");
+    public final static int TRUNK_LINK = SymbolTable.intern("trunk_link");
+    public final static int PRIMARY = SymbolTable.intern("primary");
+    public final static int PRIMARY_LINK = SymbolTable.intern("primary_link");
+    public final static int SECONDARY = SymbolTable.intern("secondary");
+    public final static int SECONDARY_LINK = SymbolTable
+	    .intern("secondary_link");
+    public final static int TERTIARY = SymbolTable.intern("tertiary");
+    public final static int UNCLASSIFIED = SymbolTable.intern("unclassified");
+    public final static int RESIDENTIAL = SymbolTable.intern("residential");
+    public final static int ROAD = SymbolTable.intern("road");
+    public final static int LIVING_STREET = SymbolTable
+	    .intern("living_street");
+    public final static int SERVICE = SymbolTable.intern("service");
+    public final static int DE_MOTORWAY = SymbolTable.intern("DE:motorway");
+    public final static int FORD = SymbolTable.intern("ford");
+
+}
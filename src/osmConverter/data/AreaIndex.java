@@ -0,0 +1,185 @@
+package osmConverter.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import osmConverter.beans.IntList;
+import osmConverter.beans.LongMap;
+
+/**
+ * Spatial index of areas (e.g. the towns for the speed-defaults). The
+ * bounding box of all areas is divided into a uniform grid, every cell lists
+ * the areas whose bounding boxes overlap it. A point is only tested against
+ * the areas of its cell, with the {@link EdgeTable} of each area.
+ */
+public class AreaIndex {
+
+    /**
+     * Number of cells per area, the grid is square.
+     */
+    private final static int CELLS_PER_AREA = 16;
+
+    private final static int MAX_CELLS_PER_ROW = 1024;
+
+    private final List<EdgeTable> areas = new ArrayList<EdgeTable>();
+
+    private double minX = Double.POSITIVE_INFINITY;
+    private double minY = Double.POSITIVE_INFINITY;
+    private double maxX = Double.NEGATIVE_INFINITY;
+    private double maxY = Double.NEGATIVE_INFINITY;
+
+    private int cellsPerRow = 1;
+    private double cellWidth;
+    private double cellHeight;
+    private int[] cellOffsets;
+    private int[] cellAreas;
+
+    /**
+     * Areas whose coordinates aren't all known, they are tested for every
+     * point.
+     */
+    private final IntList unbounded = new IntList();
+
+    /**
+     * @param type
+     *            Only the areas of this type are indexed, e.g. "town".
+     */
+    public AreaIndex(LongMap<MyArea> myAreas, String type) {
+	for (MyArea area : myAreas.values()) {
+	    if (area.getType().equals(type)) {
+		add(new EdgeTable(area.getPolygon()));
+	    }
+	}
+	buildGrid();
+    }
+
+    /**
+     * @return Number of the indexed areas.
+     */
+    public int size() {
+	return areas.size();
+    }
+
+    /**
+     * @return false if the coordinates of an area aren't all known, then the
+     *         bounds only cover the other areas.
+     */
+    public boolean isBounded() {
+	return unbounded.size() == 0;
+    }
+
+    /**
+     * @return The bounds of all areas, infinite if there are none.
+     */
+    public double getMinX() {
+	return minX;
+    }
+
+    public double getMinY() {
+	return minY;
+    }
+
+    public double getMaxX() {
+	return maxX;
+    }
+
+    public double getMaxY() {
+	return maxY;
+    }
+
+    List<EdgeTable> getAreas() {
+	return areas;
+    }
+
+    /**
+     * @return true if the point is inside of any of the areas.
+     */
+    public boolean contains(double x, double y) {
+	for (int i = 0; i < unbounded.size(); i++) {
+	    if (areas.get(unbounded.get(i)).contains(x, y)) {
+		return true;
+	    }
+	}
+	if (cellOffsets == null || x < minX || x > maxX || y < minY
+		|| y > maxY) {
+	    return false;
+	}
+
+	int cell = row(y) * cellsPerRow + column(x);
+	for (int i = cellOffsets[cell]; i < cellOffsets[cell + 1]; i++) {
+	    if (areas.get(cellAreas[i]).contains(x, y)) {
+		return true;
+	    }
+	}
+	return false;
+    }
+
+    private void add(EdgeTable area) {
+	if (!area.isBounded()) {
+	    unbounded.add(areas.size());
+	} else {
+	    minX = Math.min(minX, area.getMinX());
+	    minY = Math.min(minY, area.getMinY());
+	    maxX = Math.max(maxX, area.getMaxX());
+	    maxY = Math.max(maxY, area.getMaxY());
+	}
+	areas.add(area);
+    }
+
+    private void buildGrid() {
+	if (areas.size() == unbounded.size()) {
+	    return;
+	}
+
+	while (cellsPerRow < MAX_CELLS_PER_ROW
+		&& cellsPerRow * cellsPerRow < areas.size() * CELLS_PER_AREA) {
+	    cellsPerRow *= 2;
+	}
+	cellWidth = Math.max(maxX - minX, Double.MIN_VALUE) / cellsPerRow;
+	cellHeight = Math.max(maxY - minY, Double.MIN_VALUE) / cellsPerRow;
+	cellOffsets = new int[cellsPerRow * cellsPerRow + 1];
+
+	// count the areas of every cell, then fill them in
+	for (int pass = 0; pass < 2; pass++) {
+	    int[] next = null;
+	    if (pass == 1) {
+		for (int i = 1; i < cellOffsets.length; i++) {
+		    cellOffsets[i] += cellOffsets[i - 1];
+		}
+		cellAreas = new int[cellOffsets[cellOffsets.length - 1]];
+		next = new int[cellOffsets.length - 1];
+		System.arraycopy(cellOffsets, 0, next, 0, next.length);
+	    }
+
+	    for (int i = 0; i < areas.size(); i++) {
+		EdgeTable area = areas.get(i);
+		if (!area.isBounded()) {
+		    continue;
+		}
+		int firstColumn = column(area.getMinX());
+		int lastColumn = column(area.getMaxX());
+		int lastRow = row(area.getMaxY());
+		for (int row = row(area.getMinY()); row <= lastRow; row++) {
+		    for (int column = firstColumn; column <= lastColumn; column++) {
+			int cell = row * cellsPerRow + column;
+			if (pass == 0) {
+			    cellOffsets[cell + 1]++;
+			} else {
+			    cellAreas[next[cell]++] = i;
+			}
+		    }
+		}
+	    }
+	}
+    }
+
+    private int row(double y) {
+	return Math.max(0, Math.min(cellsPerRow - 1,
+		(int) ((y - minY) / cellHeight)));
+    }
+
+    private int column(double x) {
+	return Math.max(0, Math.min(cellsPerRow - 1,
+		(int) ((x - minX) / cellWidth)));
+    }
+}
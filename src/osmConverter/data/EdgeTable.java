@@ -0,0 +1,195 @@
+package osmConverter.data;
+
+/**
+ * Precomputed edges of a polygon for fast point-in-polygon tests. The edges
+ * are sorted into horizontal strips of the bounding box, so a test only
+ * looks at the edges crossing the strip of the point instead of all edges.
+ *
+ * The crossings are counted like in {@link Polygon#contains(double, double)},
+ * so the results are the same.
+ */
+public class EdgeTable {
+
+    /**
+     * Average number of edges per strip.
+     */
+    private final static int EDGES_PER_STRIP = 4;
+
+    private final static int MAX_STRIPS = 64 * 1024;
+
+    private final double[] xs;
+    private final double[] ys;
+
+    /**
+     * The end of the edge starting at every point, the next point of its
+     * ring or -1 if the point starts no edge.
+     */
+    private final int[] ends;
+    private final int edges;
+
+    private final double minX;
+    private final double minY;
+    private final double maxX;
+    private final double maxY;
+
+    /**
+     * false if a coordinate is unknown (NaN), then there are no bounds.
+     */
+    private final boolean bounded;
+
+    private final double stripHeight;
+    private final int[] stripOffsets;
+
+    /**
+     * Index of the first point of the edges in every strip.
+     */
+    private final int[] stripEdges;
+
+    /**
+     * @param polygon
+     *            Its coordinates are shared, not copied.
+     */
+    public EdgeTable(Polygon polygon) {
+	int points = polygon.size();
+	xs = polygon.getXs();
+	ys = polygon.getYs();
+
+	ends = new int[points];
+	for (int ring = 0; ring < polygon.getRingCount(); ring++) {
+	    int start = polygon.getRingStart(ring);
+	    int end = polygon.getRingEnd(ring);
+	    for (int i = start; i < end; i++) {
+		if (!polygon.hasEdges(ring)) {
+		    ends[i] = -1;
+		} else {
+		    ends[i] = i + 1 < end ? i + 1 : start;
+		}
+	    }
+	}
+
+	edges = polygon.getEdgeCount();
+
+	minX = polygon.getMinX();
+	minY = polygon.getMinY();
+	maxX = polygon.getMaxX();
+	maxY = polygon.getMaxY();
+
+	// unknown coordinates (NaN) cross every ray, so all edges are tested
+	bounded = polygon.isBounded();
+	int strips = bounded ? Math.max(1, Math.min(MAX_STRIPS, points
+		/ EDGES_PER_STRIP)) : 1;
+	stripHeight = maxY > minY ? (maxY - minY) / strips : 1;
+	stripOffsets = new int[strips + 1];
+
+	// count the edges of every strip, then fill them in
+	for (int edge = 0; edge < points; edge++) {
+	    if (ends[edge] == -1) {
+		continue;
+	    }
+	    int last = lastStrip(edge);
+	    for (int strip = firstStrip(edge); strip <= last; strip++) {
+		stripOffsets[strip + 1]++;
+	    }
+	}
+	for (int i = 1; i <= strips; i++) {
+	    stripOffsets[i] += stripOffsets[i - 1];
+	}
+
+	stripEdges = new int[stripOffsets[strips]];
+	int[] next = new int[strips];
+	System.arraycopy(stripOffsets, 0, next, 0, strips);
+	for (int edge = 0; edge < points; edge++) {
+	    if (ends[edge] == -1) {
+		continue;
+	    }
+	    int last = lastStrip(edge);
+	    for (int strip = firstStrip(edge); strip <= last; strip++) {
+		stripEdges[next[strip]++] = edge;
+	    }
+	}
+    }
+
+    /**
+     * @return true if the point is inside of the polygon.
+     */
+    public boolean contains(double x, double y) {
+	// false for NaN and infinite coordinates, like Path2D
+	if (!(x * 0.0 + y * 0.0 == 0.0) || edges < 2) {
+	    return false;
+	}
+	if (bounded && (x < minX || x > maxX || y < minY || y >= maxY)) {
+	    // the crossings of a closed polygon outside of its bounds sum up to 0
+	    return false;
+	}
+
+	int strip = strip(y);
+	int crossings = 0;
+	for (int i = stripOffsets[strip]; i < stripOffsets[strip + 1]; i++) {
+	    int edge = stripEdges[i];
+	    int end = ends[edge];
+	    crossings += Polygon.crossings(x, y, xs[edge], ys[edge], xs[end],
+		    ys[end]);
+	}
+	return crossings != 0;
+    }
+
+    /**
+     * @return false if a coordinate of the polygon is unknown, then the
+     *         bounds are NaN.
+     */
+    public boolean isBounded() {
+	return bounded;
+    }
+
+    /**
+     * @return Number of points, every point starts an edge.
+     */
+    int size() {
+	return xs.length;
+    }
+
+    /**
+     * @return The point the edge starting at the point leads to, -1 if the
+     *         point starts no edge.
+     */
+    int getEnd(int point) {
+	return ends[point];
+    }
+
+    double getX(int point) {
+	return xs[point];
+    }
+
+    double getY(int point) {
+	return ys[point];
+    }
+
+    public double getMinX() {
+	return minX;
+    }
+
+    public double getMinY() {
+	return minY;
+    }
+
+    public double getMaxX() {
+	return maxX;
+    }
+
+    public double getMaxY() {
+	return maxY;
+    }
+
+    private int strip(double y) {
+	int strip = (int) ((y - minY) / stripHeight);
+	return Math.max(0, Math.min(stripOffsets.length - 2, strip));
+    }
+
+    private int firstStrip(int edge) {
+	return strip(Math.min(ys[edge], ys[ends[edge]]));
+    }
+
+    private int lastStrip(int edge) {
+	return strip(Math.max(ys[edge], ys[ends[edge]]));
+    }
+}
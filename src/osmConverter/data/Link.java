@@ -1,7 +1,6 @@
 package osmConverter.data;
 
-import java.util.ArrayList;
-import java.util.List;
+import osmConverter.beans.IntList;
 
 /**
  * Data-class describing a link of the map
@@ -19,16 +18,16 @@ public class Link implements Comparable<Link> {
      * The node where the edge ends
      */
 
-    private String endNodeId;
+    private long endNodeId;
 
-    private List<String> followingLinks = new ArrayList<String>();
+    private IntList followingLinks = new IntList();
 
     /**
      * Its unique ID
      */
-    private String id;
+    private int id;
 
-    private List<String> leadingLinks = new ArrayList<String>();
+    private IntList leadingLinks = new IntList();
     /**
      * The length of the edge
      */
@@ -63,7 +62,7 @@ public class Link implements Comparable<Link> {
     /**
      * The node where the edge starts
      */
-    private String startNodeId;
+    private long startNodeId;
 
     private String streetCategory = "";
 
@@ -84,7 +83,7 @@ public class Link implements Comparable<Link> {
 
     @Override
     public int compareTo(Link otherLink) {
-	return this.id.compareTo(otherLink.id);
+	return id < otherLink.id ? -1 : (id == otherLink.id ? 0 : 1);
     }
 
     public double getEndLat() {
@@ -98,11 +97,11 @@ public class Link implements Comparable<Link> {
     /**
      * @return the end node
      */
-    public String getEndNodeId() {
+    public long getEndNodeId() {
 	return endNodeId;
     }
 
-    public String getFollowEdge(int l) {
+    public int getFollowEdge(int l) {
 	return followingLinks.get(l);
     }
 
@@ -110,18 +109,18 @@ public class Link implements Comparable<Link> {
 	return followingLinks.size();
     }
 
-    public List<String> getFollowingLinks() {
+    public IntList getFollowingLinks() {
 	return followingLinks;
     }
 
     /**
      * @return the edgeID
      */
-    public String getId() {
+    public int getId() {
 	return id;
     }
 
-    public Object getLeadingEdge(int i) {
+    public int getLeadingEdge(int i) {
 	return leadingLinks.get(i);
     }
 
@@ -129,7 +128,7 @@ public class Link implements Comparable<Link> {
 	return leadingLinks.size();
     }
 
-    public List<String> getLeadingLinks() {
+    public IntList getLeadingLinks() {
 	return leadingLinks;
     }
 
@@ -179,7 +178,7 @@ public class Link implements Comparable<Link> {
     /**
      * @return the start node
      */
-    public String getStartNodeId() {
+    public long getStartNodeId() {
 	return startNodeId;
     }
 
@@ -225,11 +224,11 @@ public class Link implements Comparable<Link> {
      * @param endNode
      *            the end node to set
      */
-    public void setEndNodeId(String endNode) {
+    public void setEndNodeId(long endNode) {
 	this.endNodeId = endNode;
     }
 
-    public void setFollowingLinks(List<String> followingLinks) {
+    public void setFollowingLinks(IntList followingLinks) {
 	this.followingLinks = followingLinks;
     }
 
@@ -237,11 +236,11 @@ public class Link implements Comparable<Link> {
      * @param id2
      *            the edge ID to set
      */
-    public void setId(String id) {
+    public void setId(int id) {
 	this.id = id;
     }
 
-    public void setLeadingLinks(List<String> leadingLinks) {
+    public void setLeadingLinks(IntList leadingLinks) {
 	this.leadingLinks = leadingLinks;
     }
 
@@ -300,7 +299,7 @@ public class Link implements Comparable<Link> {
      * @param id
      *            the start node to set
      */
-    public void setStartNodeId(String id) {
+    public void setStartNodeId(long id) {
 	this.startNodeId = id;
     }
 
@@ -0,0 +1,291 @@
+package osmConverter.data;
+
+import java.util.Arrays;
+
+import osmConverter.beans.IntList;
+import osmConverter.beans.LongIndex;
+import osmConverter.beans.LongMap;
+import osmConverter.beans.Partitions;
+
+/**
+ * Compact adjacency of the links of a map in compressed sparse rows. The
+ * links are numbered by ordinals (their order in the map), the following
+ * links of a link are stored one after another in one int-array and an
+ * offset-array points to the first one of every link, the same for the
+ * leading links. Neighbours can be iterated without any lookup by id or
+ * allocation:
+ *
+ * <pre>
+ * for (int i = 0; i &lt; graph.getFollowEdgesCount(ordinal); i++) {
+ *     int next = graph.getFollowEdge(ordinal, i);
+ * }
+ * </pre>
+ */
+public class LinkGraph {
+
+    /**
+     * Smallest number of links processed by one thread.
+     */
+    public final static int LINKS_PER_PARTITION = 16 * 1024;
+
+    /**
+     * ordinal -> link-id.
+     */
+    private final int[] linkIds;
+
+    /**
+     * link-id -> ordinal, -1 for unused ids.
+     */
+    private final int[] ordinals;
+
+    private final int[] followOffsets;
+    private final int[] followEdges;
+    private final int[] leadingOffsets;
+    private final int[] leadingEdges;
+
+    private LinkGraph(int[] linkIds, int[] followOffsets, int[] followEdges,
+	    int[] leadingOffsets, int[] leadingEdges) {
+	this.linkIds = linkIds;
+	this.followOffsets = followOffsets;
+	this.followEdges = followEdges;
+	this.leadingOffsets = leadingOffsets;
+	this.leadingEdges = leadingEdges;
+
+	int maxId = -1;
+	for (int id : linkIds) {
+	    maxId = Math.max(maxId, id);
+	}
+	ordinals = new int[maxId + 1];
+	Arrays.fill(ordinals, -1);
+	for (int i = 0; i < linkIds.length; i++) {
+	    ordinals[linkIds[i]] = i;
+	}
+    }
+
+    /**
+     * Derives the adjacency from the nodes of the links: a link follows
+     * another one if it starts at its end-node, unless it leads back to its
+     * start-node (a u-turn or the same link).
+     *
+     * The links are sorted by their start- and end-nodes with a counting
+     * sort, which keeps the order of the map for the links at every node.
+     * Then the neighbours of every link are counted and copied in parallel
+     * partitions, every partition writes only the rows of its links.
+     *
+     * @param threads
+     *            Number of threads, see {@link Partitions}.
+     */
+    public static LinkGraph derive(LongMap<Link> links, int threads)
+	    throws InterruptedException {
+	final int size = links.size();
+	int[] linkIds = new int[size];
+	final int[] startNodes = new int[size];
+	final int[] endNodes = new int[size];
+	LongIndex nodes = new LongIndex(size);
+
+	int ordinal = 0;
+	for (Link link : links.values()) {
+	    linkIds[ordinal] = link.getId();
+	    startNodes[ordinal] = nodes.add(link.getStartNodeId());
+	    endNodes[ordinal] = nodes.add(link.getEndNodeId());
+	    ordinal++;
+	}
+
+	// links starting and ending at every node
+	final int[] startingOffsets = new int[nodes.size() + 1];
+	final int[] starting = sortByNode(startNodes, startingOffsets);
+	final int[] endingOffsets = new int[nodes.size() + 1];
+	final int[] ending = sortByNode(endNodes, endingOffsets);
+
+	final int[] followOffsets = new int[size + 1];
+	final int[] leadingOffsets = new int[size + 1];
+	Partitions.run(size, threads, LINKS_PER_PARTITION,
+		new Partitions.Task() {
+		    @Override
+		    public void run(int from, int to) {
+			for (int i = from; i < to; i++) {
+			    followOffsets[i + 1] = count(starting,
+				    startingOffsets, endNodes[i], endNodes,
+				    startNodes[i]);
+			    leadingOffsets[i + 1] = count(ending,
+				    endingOffsets, startNodes[i], startNodes,
+				    endNodes[i]);
+			}
+		    }
+		});
+	for (int i = 0; i < size; i++) {
+	    followOffsets[i + 1] += followOffsets[i];
+	    leadingOffsets[i + 1] += leadingOffsets[i];
+	}
+
+	final int[] followEdges = new int[followOffsets[size]];
+	final int[] leadingEdges = new int[leadingOffsets[size]];
+	Partitions.run(size, threads, LINKS_PER_PARTITION,
+		new Partitions.Task() {
+		    @Override
+		    public void run(int from, int to) {
+			for (int i = from; i < to; i++) {
+			    copy(starting, startingOffsets, endNodes[i],
+				    endNodes, startNodes[i], followEdges,
+				    followOffsets[i]);
+			    copy(ending, endingOffsets, startNodes[i],
+				    startNodes, endNodes[i], leadingEdges,
+				    leadingOffsets[i]);
+			}
+		    }
+		});
+
+	return new LinkGraph(linkIds, followOffsets, followEdges,
+		leadingOffsets, leadingEdges);
+    }
+
+    /**
+     * Takes the following and leading links stored in the links, e.g. after
+     * the prohibited maneuvers were removed.
+     */
+    public static LinkGraph of(LongMap<Link> links) {
+	int size = links.size();
+	int[] linkIds = new int[size];
+	int[] followOffsets = new int[size + 1];
+	int[] leadingOffsets = new int[size + 1];
+
+	int ordinal = 0;
+	for (Link link : links.values()) {
+	    linkIds[ordinal] = link.getId();
+	    followOffsets[ordinal + 1] = followOffsets[ordinal]
+		    + link.getFollowEdgesCount();
+	    leadingOffsets[ordinal + 1] = leadingOffsets[ordinal]
+		    + link.getLeadingEdgesCount();
+	    ordinal++;
+	}
+
+	LinkGraph graph = new LinkGraph(linkIds, followOffsets,
+		new int[followOffsets[size]], leadingOffsets,
+		new int[leadingOffsets[size]]);
+
+	ordinal = 0;
+	for (Link link : links.values()) {
+	    for (int i = 0; i < link.getFollowEdgesCount(); i++) {
+		graph.followEdges[followOffsets[ordinal] + i] = graph
+			.getOrdinal(link.getFollowEdge(i));
+	    }
+	    for (int i = 0; i < link.getLeadingEdgesCount(); i++) {
+		graph.leadingEdges[leadingOffsets[ordinal] + i] = graph
+			.getOrdinal(link.getLeadingEdge(i));
+	    }
+	    ordinal++;
+	}
+	return graph;
+    }
+
+    /**
+     * @return Number of links.
+     */
+    public int size() {
+	return linkIds.length;
+    }
+
+    public int getLinkId(int ordinal) {
+	return linkIds[ordinal];
+    }
+
+    /**
+     * @return The ordinal of the link or -1 if it isn't part of the graph.
+     */
+    public int getOrdinal(int linkId) {
+	return linkId >= 0 && linkId < ordinals.length ? ordinals[linkId] : -1;
+    }
+
+    public int getFollowEdgesCount(int ordinal) {
+	return followOffsets[ordinal + 1] - followOffsets[ordinal];
+    }
+
+    /**
+     * @return The ordinal of the following link with this index.
+     */
+    public int getFollowEdge(int ordinal, int index) {
+	return followEdges[followOffsets[ordinal] + index];
+    }
+
+    public int getLeadingEdgesCount(int ordinal) {
+	return leadingOffsets[ordinal + 1] - leadingOffsets[ordinal];
+    }
+
+    /**
+     * @return The ordinal of the leading link with this index.
+     */
+    public int getLeadingEdge(int ordinal, int index) {
+	return leadingEdges[leadingOffsets[ordinal] + index];
+    }
+
+    /**
+     * @return The ids of the following links, as stored in a {@link Link}.
+     */
+    public IntList getFollowingLinks(int ordinal) {
+	return toIds(followEdges, followOffsets[ordinal],
+		followOffsets[ordinal + 1]);
+    }
+
+    /**
+     * @return The ids of the leading links, as stored in a {@link Link}.
+     */
+    public IntList getLeadingLinks(int ordinal) {
+	return toIds(leadingEdges, leadingOffsets[ordinal],
+		leadingOffsets[ordinal + 1]);
+    }
+
+    private IntList toIds(int[] edges, int from, int to) {
+	IntList ids = new IntList(to - from);
+	for (int i = from; i < to; i++) {
+	    ids.add(linkIds[edges[i]]);
+	}
+	return ids;
+    }
+
+    /**
+     * Counting sort of the ordinals by their node.
+     *
+     * @param offsets
+     *            Filled with the position of the first ordinal of every node
+     *            in the result, the last one is the number of ordinals.
+     */
+    private static int[] sortByNode(int[] nodes, int[] offsets) {
+	for (int node : nodes) {
+	    offsets[node + 1]++;
+	}
+	for (int i = 1; i < offsets.length; i++) {
+	    offsets[i] += offsets[i - 1];
+	}
+
+	int[] next = Arrays.copyOf(offsets, offsets.length - 1);
+	int[] sorted = new int[nodes.length];
+	for (int i = 0; i < nodes.length; i++) {
+	    sorted[next[nodes[i]]++] = i;
+	}
+	return sorted;
+    }
+
+    /**
+     * @return Number of the links at the node whose other node isn't the
+     *         excluded one.
+     */
+    private static int count(int[] sorted, int[] offsets, int node,
+	    int[] otherNodes, int excluded) {
+	int count = 0;
+	for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+	    if (otherNodes[sorted[i]] != excluded) {
+		count++;
+	    }
+	}
+	return count;
+    }
+
+    private static void copy(int[] sorted, int[] offsets, int node,
+	    int[] otherNodes, int excluded, int[] target, int position) {
+	for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+	    if (otherNodes[sorted[i]] != excluded) {
+		target[position++] = sorted[i];
+	    }
+	}
+    }
+}
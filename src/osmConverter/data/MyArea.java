@@ -1,57 +1,36 @@
 package osmConverter.data;
 
-import java.awt.geom.Path2D;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
-public class MyArea extends Path2D.Double {
+import osmConverter.beans.LongMap;
+import osmConverter.beans.NodeStore;
 
-    /**
-     * 
-     */
-    private static final long serialVersionUID = 1L;
+public class MyArea {
 
-    private String Id = "";
+    private long Id;
     private String type = "";
-    private boolean firsttime = true;
 
     private MyArea inner;
 
-    List<OsmObject> assignedWays = new LinkedList<OsmObject>();
     List<OsmNode> assignedNodes = new LinkedList<OsmNode>();
 
     private Tags tags = new Tags();
-    private List<java.lang.Double> lons;
-    private List<java.lang.Double> lats;
-    private List<String> nodess = new LinkedList<String>();
 
-    public void addCoord(double lon, double lat) {
-	// if its the first coordinate use moveTo otherwise use
-	// lineTo
-	if (firsttime) {
-	    this.moveTo(lon, lat);
-	    firsttime = false;
-	} else {
-	    this.lineTo(lon, lat);
-	}
+    private final Polygon polygon = new Polygon();
 
-	// add also to custom lists, as Path2D does not grant access to the
-	// coordinates later on
-	if (this.lons != null) {
-	    lons.add(lon);
-	} else {
-	    lons = new ArrayList<java.lang.Double>();
-	    lons.add(lon);
-	}
+    /**
+     * The nodes of the outer rings of a relation, in the order of their
+     * coordinates.
+     */
+    private long[] nodeIds = new long[0];
+    private int nodeCount = 0;
 
-	if (this.lats != null) {
-	    lats.add(lat);
-	} else {
-	    lats = new ArrayList<java.lang.Double>();
-	    lats.add(lat);
-	}
+    public void addCoord(double lon, double lat) {
+	polygon.add(lon, lat);
     }
 
     public void addTag(String key, String value) {
@@ -63,10 +42,15 @@ public class MyArea extends Path2D.Double {
     }
 
     public void close() {
-	this.closePath();
+	polygon.closeRing();
+    }
 
-	lons.add(lons.get(0));
-	lats.add(lats.get(0));
+    /**
+     * @return true if the point is inside of the area (the inner area isn't
+     *         subtracted).
+     */
+    public boolean contains(double lon, double lat) {
+	return polygon.contains(lon, lat);
     }
 
     /**
@@ -74,71 +58,49 @@ public class MyArea extends Path2D.Double {
      * @return
      */
     public void createAreaFromRelation(OsmRelation osmObject,
-	    Map<String, OsmWay> osmWays, Map<String, OsmNode> osmNodes) {
-
-	List<OsmObject> originalMembers = ((OsmRelation) osmObject)
-		.getMembers();
-
-	sortMembers(originalMembers, osmWays, osmNodes);
-
-	// merge all members to one polygon
-	for (OsmObject member : assignedWays) {
-
-	    if (member.getRole().equals("inner")) {
-		if (inner == null) {
-		    inner = new MyArea();
+	    LongMap<OsmWay> osmWays, NodeStore nodes) {
+
+	List<OsmWay> outerWays = new ArrayList<OsmWay>();
+	List<OsmWay> innerWays = new ArrayList<OsmWay>();
+	sortMembers(osmObject.getMembers(), osmWays, nodes, outerWays,
+		innerWays);
+
+	// every ring is a polygon of its own, the inner ones in the inner area
+	for (List<OsmWay> ring : new RingAssembler(outerWays).assemble()) {
+	    polygon.startRing();
+	    for (OsmWay way : ring) {
+		for (long node : way.getNodes()) {
+		    this.addCoord(nodes.getLon(node), nodes.getLat(node));
+		    this.addNode(node);
 		}
-		// if the current member is a way
-		if (member instanceof OsmWay) {
-		    OsmWay way = (OsmWay) member;
-
-		    // add all nodes the way contains to the polygon
-		    for (OsmNode node : way.getNodes()) {
-			double lon = node.getLon();
-			double lat = node.getLat();
-
-			inner.addCoord(lon, lat);
-		    }
-		} else if (member instanceof OsmNode) {
-		    OsmNode node = (OsmNode) member;
-
-		    double lon = node.getLon();
-		    double lat = node.getLat();
-
-		    inner.addCoord(lon, lat);
-		}
-	    } else {
-		// if the current member is a way
-		if (member instanceof OsmWay) {
-		    OsmWay way = (OsmWay) member;
-
-		    // add all nodes the way contains to the polygon
-		    for (OsmNode node : way.getNodes()) {
-			double lon = node.getLon();
-			double lat = node.getLat();
-
-			this.addCoord(lon, lat);
-			this.nodess.add(node.getId());
-		    }
-		} else if (member instanceof OsmNode) {
-		    OsmNode node = (OsmNode) member;
-
-		    double lon = node.getLon();
-		    double lat = node.getLat();
+	    }
+	}
+	polygon.trim();
 
-		    this.addCoord(lon, lat);
+	for (List<OsmWay> ring : new RingAssembler(innerWays).assemble()) {
+	    if (inner == null) {
+		inner = new MyArea();
+	    }
+	    inner.polygon.startRing();
+	    for (OsmWay way : ring) {
+		for (long node : way.getNodes()) {
+		    inner.addCoord(nodes.getLon(node), nodes.getLat(node));
 		}
 	    }
 	}
+	if (inner != null) {
+	    inner.polygon.trim();
+	}
     }
 
-    public void createAreaFromWay(OsmWay osmWay) {
-	for (OsmNode node : osmWay.getNodes()) {
-	    this.addCoord(node.getLon(), node.getLat());
+    public void createAreaFromWay(OsmWay osmWay, NodeStore nodes) {
+	for (long node : osmWay.getNodes()) {
+	    this.addCoord(nodes.getLon(node), nodes.getLat(node));
 	}
+	polygon.trim();
     }
 
-    public String getId() {
+    public long getId() {
 	return Id;
     }
 
@@ -146,16 +108,15 @@ public class MyArea extends Path2D.Double {
 	return inner;
     }
 
-    public List<java.lang.Double> getLatCoordinates() {
-	return lats;
+    public long getNodeByIndex(int i) {
+	return nodeIds[i];
     }
 
-    public List<java.lang.Double> getLonCoordinates() {
-	return lons;
-    }
-
-    public String getNodeByIndex(int i) {
-	return nodess.get(i);
+    /**
+     * @return The coordinates of the area, empty if there are none.
+     */
+    public Polygon getPolygon() {
+	return polygon;
     }
 
     public List<OsmNode> getRelationsNodes() {
@@ -170,21 +131,7 @@ public class MyArea extends Path2D.Double {
 	return type;
     }
 
-    private OsmWay reverseWay(OsmWay way) {
-
-	OsmWay newWay = way.clone();
-	List<OsmNode> rightNodes = new LinkedList<OsmNode>();
-
-	for (OsmNode node : way.getNodes()) {
-	    rightNodes.add(0, node);
-	}
-
-	newWay.setNodes(rightNodes);
-
-	return newWay;
-    }
-
-    public void setId(String id) {
+    public void setId(long id) {
 	Id = id;
     }
 
@@ -192,75 +139,42 @@ public class MyArea extends Path2D.Double {
 	this.type = type;
     }
 
-    private void sortMembers(List<OsmObject> unassigned,
-	    Map<String, OsmWay> osmWays, Map<String, OsmNode> nodes) {
-
-	List<OsmWay> unassignedWays = new LinkedList<OsmWay>();
+    /**
+     * Sorts the members into the outer and inner ways, with their nodes.
+     * Nodes are kept in {@link #getRelationsNodes()}.
+     */
+    private void sortMembers(List<OsmObject> members,
+	    LongMap<OsmWay> osmWays, NodeStore nodes, List<OsmWay> outerWays,
+	    List<OsmWay> innerWays) {
+	if (members == null) {
+	    return;
+	}
 
-	for (OsmObject object : unassigned) {
+	for (OsmObject object : members) {
 	    if (object instanceof OsmWay) {
 		OsmWay newWay = (OsmWay) object;
-		if (osmWays.get(object.getId()) != null) {
-		    newWay.addNodes(osmWays.get(object.getId()).getNodes());
-		    unassignedWays.add(newWay);
+		OsmWay way = osmWays.get(object.getId());
+		if (way != null && way.getNodeCount() > 0) {
+		    newWay.addNodes(way.getNodes());
+		    if ("inner".equals(newWay.getRole())) {
+			innerWays.add(newWay);
+		    } else {
+			outerWays.add(newWay);
+		    }
 		}
 	    } else if (object instanceof OsmNode) {
-		assignedNodes.add(nodes.get(((OsmNode) object).getId()));
+		OsmNode node = (OsmNode) object;
+		node.setLon(nodes.getLon(node.getId()));
+		node.setLat(nodes.getLat(node.getId()));
+		assignedNodes.add(node);
 	    }
 	}
+    }
 
-	OsmWay assi = null;
-
-	int counter = 0;
-
-	while (assignedWays.size() < unassigned.size()
-		&& counter < unassigned.size()) {
-
-	    List<OsmObject> tempAssignedWays = new LinkedList<OsmObject>();
-	    List<OsmObject> tempOriginalAssignedWays = new LinkedList<OsmObject>();
-
-	    try {
-		tempAssignedWays.add(unassignedWays.get(counter));
-		assi = (OsmWay) tempAssignedWays.get(0);
-	    } catch (Exception e) {
-	    }
-
-	    for (int i = 0; i < unassignedWays.size(); i++) {
-		if (!tempOriginalAssignedWays.contains(unassignedWays.get(i))) {
-		    if (unassignedWays
-			    .get(i)
-			    .getNodes()
-			    .get(0)
-			    .getId()
-			    .equals(assi.getNodes()
-				    .get(assi.getNodes().size() - 1).getId())) {
-			tempAssignedWays.add(unassignedWays.get(i));
-			tempOriginalAssignedWays.add(unassignedWays.get(i));
-			assi = unassignedWays.get(i);
-			i = -1;
-
-		    } else if (unassignedWays
-			    .get(i)
-			    .getNodes()
-			    .get(unassignedWays.get(i).getNodes().size() - 1)
-			    .getId()
-			    .equals(assi.getNodes()
-				    .get(assi.getNodes().size() - 1).getId())) {
-			OsmWay reversedWay = reverseWay(unassignedWays.get(i));
-			tempAssignedWays.add(reversedWay);
-
-			tempOriginalAssignedWays.add(unassignedWays.get(i));
-
-			assi = unassignedWays.get(i);
-			i = -1;
-		    }
-		}
-	    }
-	    counter++;
-
-	    if (tempAssignedWays.size() > assignedWays.size()) {
-		assignedWays = tempAssignedWays;
-	    }
+    private void addNode(long node) {
+	if (nodeCount == nodeIds.length) {
+	    nodeIds = Arrays.copyOf(nodeIds, nodeCount + (nodeCount >> 1) + 8);
 	}
+	nodeIds[nodeCount++] = node;
     }
 }
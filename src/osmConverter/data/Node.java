@@ -9,7 +9,7 @@ package osmConverter.data;
  */
 public class Node {
 
-    private String id;
+    private long id;
     private double lat;
     private double lon;
 
@@ -29,11 +29,11 @@ public class Node {
 	this.lon = d;
     }
 
-    public String getId() {
+    public long getId() {
 	return id;
     }
 
-    public void setId(String id) {
+    public void setId(long id) {
 	this.id = id;
     }
 }
@@ -56,13 +56,13 @@ public class OsmNode extends OsmObject {
 	this.lat = lat;
     }
 
-    public OsmNode(String id, double lon, double lat) {
+    public OsmNode(long id, double lon, double lat) {
 	super(id);
 	this.lon = lon;
 	this.lat = lat;
     }
 
-    public OsmNode(String id) {
+    public OsmNode(long id) {
 	super(id);
     }
 }
@@ -5,6 +5,8 @@ package osmConverter.data;
 
 import java.util.Map;
 
+import osmConverter.beans.SymbolTable;
+
 /**
  * 
  * Class providing basis functionality needed by every kind of osm-entity.
@@ -14,7 +16,7 @@ import java.util.Map;
  */
 public abstract class OsmObject {
 
-    private String id;
+    private long id;
     private Tags tags;
     private String role = "";
 
@@ -34,7 +36,35 @@ public abstract class OsmObject {
 	this.tags.setTags(tags);
     }
 
-    public OsmObject(String id) {
+    /**
+     * @param key
+     *            Symbol of the key (see {@link SymbolTable}).
+     * @return Symbol of the value or {@link SymbolTable#NONE}.
+     */
+    public int getTagSymbol(int key) {
+	return this.tags.get(key);
+    }
+
+    public int getTagCount() {
+	return this.tags.size();
+    }
+
+    /**
+     * @return Symbol of the key of the tag with this index (0 to
+     *         {@link #getTagCount()} - 1).
+     */
+    public int getTagKey(int index) {
+	return this.tags.keyAt(index);
+    }
+
+    /**
+     * @return Symbol of the value of the tag with this index.
+     */
+    public int getTagValue(int index) {
+	return this.tags.valueAt(index);
+    }
+
+    public OsmObject(long id) {
 	this.id = id;
 	tags = new Tags();
     }
@@ -42,7 +72,7 @@ public abstract class OsmObject {
     /**
      * @return the id
      */
-    public String getId() {
+    public long getId() {
 	return id;
     }
 
@@ -50,7 +80,7 @@ public abstract class OsmObject {
      * @param id
      *            the id to set
      */
-    public void setId(String id) {
+    public void setId(long id) {
 	this.id = id;
     }
 
@@ -58,4 +88,12 @@ public abstract class OsmObject {
 	tags.put(key, value);
     }
 
+    /**
+     * Adds a tag given by the symbols of key and value (see
+     * {@link SymbolTable}).
+     */
+    public void addTag(int key, int value) {
+	tags.put(key, value);
+    }
+
 }
@@ -23,7 +23,7 @@ public class OsmRelation extends OsmObject {
     private List<Node> nodes;
     private List<Link> links;
 
-    public OsmRelation(String id) {
+    public OsmRelation(long id) {
 	super(id);
     }
 
@@ -3,9 +3,7 @@
  */
 package osmConverter.data;
 
-import java.util.List;
-
-import osmConverter.beans.NodeList;
+import java.util.Arrays;
 
 /**
  * 
@@ -16,32 +14,60 @@ import osmConverter.beans.NodeList;
  */
 public class OsmWay extends OsmObject implements Cloneable {
 
-    private List<OsmNode> nodes;
+    private final static long[] NO_NODES = new long[0];
+
+    /**
+     * The ids of the nodes, the coordinates are resolved from the
+     * node-store. Only the first {@code nodeCount} entries are used while
+     * the way is read.
+     */
+    private long[] nodes = NO_NODES;
+    private int nodeCount = 0;
 
-    public List<OsmNode> getNodes() {
+    /**
+     * @return The ids of the nodes of the way (never null).
+     */
+    public long[] getNodes() {
+	if (nodes.length != nodeCount) {
+	    nodes = Arrays.copyOf(nodes, nodeCount);
+	}
 	return nodes;
     }
 
-    public OsmWay(String id) {
+    public int getNodeCount() {
+	return nodeCount;
+    }
+
+    public long getFirstNode() {
+	return nodes[0];
+    }
+
+    public long getLastNode() {
+	return nodes[nodeCount - 1];
+    }
+
+    public OsmWay(long id) {
 	super(id);
     }
 
-    public void addNode(OsmNode node) {
-	if (nodes == null) {
-	    nodes = new NodeList<OsmNode>();
+    public void addNode(long node) {
+	if (nodeCount == nodes.length) {
+	    nodes = Arrays.copyOf(nodes, Math.max(8, nodeCount * 2));
 	}
-	this.nodes.add(node);
+	nodes[nodeCount++] = node;
     }
 
-    public void addNodes(List<OsmNode> nodes) {
-	if (this.nodes == null) {
-	    this.nodes = new NodeList<OsmNode>();
+    public void addNodes(long[] newNodes) {
+	if (nodeCount + newNodes.length > nodes.length) {
+	    nodes = Arrays.copyOf(nodes, nodeCount + newNodes.length);
 	}
-	this.nodes.addAll(nodes);
+	System.arraycopy(newNodes, 0, nodes, nodeCount, newNodes.length);
+	nodeCount += newNodes.length;
     }
 
-    public void setNodes(List<OsmNode> rightNodes) {
+    public void setNodes(long[] rightNodes) {
 	this.nodes = rightNodes;
+	this.nodeCount = rightNodes.length;
     }
 
     /**
@@ -0,0 +1,145 @@
+package osmConverter.data;
+
+import java.util.List;
+
+import osmConverter.beans.IntList;
+import osmConverter.beans.LongMap;
+import osmConverter.logic.CoordinateHelper;
+
+/**
+ * Spatial index of places for radius queries. The places are put into a
+ * sparse grid over their positions as unit vectors, so the cells have the
+ * same size everywhere on the earth (no problems at the poles or the 180th
+ * meridian). A cell is as large as the largest radius, so all places near a
+ * point are found in the 27 cells around it.
+ */
+public class PlaceIndex {
+
+    /**
+     * Earth radius in meters as used by {@link CoordinateHelper}.
+     */
+    private final static double EARTH_RADIUS = 6380. * 1000;
+
+    /**
+     * Smallest cell size on the unit sphere (about 64m), keeps the cell
+     * coordinates within 21 bits.
+     */
+    private final static double MIN_CELL_SIZE = 1e-5;
+
+    private final static int CELL_BITS = 21;
+    private final static int CELL_MASK = (1 << CELL_BITS) - 1;
+
+    private final double[] lats;
+    private final double[] lons;
+    private final double[] radii;
+
+    private final double cellSize;
+
+    /**
+     * The indices of the places in every used cell.
+     */
+    private final LongMap<IntList> cells = new LongMap<IntList>();
+
+    public PlaceIndex(List<OsmPlace> places) {
+	lats = new double[places.size()];
+	lons = new double[places.size()];
+	radii = new double[places.size()];
+
+	double maxRadius = 0;
+	for (int i = 0; i < places.size(); i++) {
+	    OsmPlace place = places.get(i);
+	    lats[i] = place.getNode().getLat();
+	    lons[i] = place.getNode().getLon();
+	    radii[i] = place.getRadius();
+	    maxRadius = Math.max(maxRadius, radii[i]);
+	}
+
+	// the chord of the largest radius, a bit larger against rounding
+	double angle = Math.min(Math.PI, maxRadius / EARTH_RADIUS);
+	cellSize = Math.max(MIN_CELL_SIZE, 2 * Math.sin(angle / 2) * 1.01);
+
+	for (int i = 0; i < lats.length; i++) {
+	    double lat = Math.toRadians(lats[i]);
+	    double lon = Math.toRadians(lons[i]);
+	    double x = Math.cos(lat) * Math.cos(lon);
+	    double y = Math.cos(lat) * Math.sin(lon);
+	    double z = Math.sin(lat);
+	    if (Double.isNaN(x + y + z)) {
+		// never nearby, the distance would be NaN
+		continue;
+	    }
+
+	    long cell = cell(cell(x), cell(y), cell(z));
+	    IntList members = cells.get(cell);
+	    if (members == null) {
+		members = new IntList();
+		cells.put(cell, members);
+	    }
+	    members.add(i);
+	}
+    }
+
+    /**
+     * @return true if the coordinate is within the radius of a place.
+     */
+    public boolean isNearby(double lat, double lon) {
+	double radLat = Math.toRadians(lat);
+	double radLon = Math.toRadians(lon);
+	double x = Math.cos(radLat) * Math.cos(radLon);
+	double y = Math.cos(radLat) * Math.sin(radLon);
+	double z = Math.sin(radLat);
+	if (cells.isEmpty() || Double.isNaN(x + y + z)) {
+	    return false;
+	}
+
+	int cellX = cell(x);
+	int cellY = cell(y);
+	int cellZ = cell(z);
+	for (int i = cellX - 1; i <= cellX + 1; i++) {
+	    for (int j = cellY - 1; j <= cellY + 1; j++) {
+		for (int k = cellZ - 1; k <= cellZ + 1; k++) {
+		    IntList members = cells.get(cell(i, j, k));
+		    if (members == null) {
+			continue;
+		    }
+		    for (int m = 0; m < members.size(); m++) {
+			int place = members.get(m);
+			if (CoordinateHelper.calcDistanceBetweenCoords(lat, lon,
+				lats[place], lons[place]) <= radii[place]) {
+			    return true;
+			}
+		    }
+		}
+	    }
+	}
+	return false;
+    }
+
+    /**
+     * @return Number of the indexed places.
+     */
+    public int size() {
+	return lats.length;
+    }
+
+    double getLat(int place) {
+	return lats[place];
+    }
+
+    double getLon(int place) {
+	return lons[place];
+    }
+
+    double getRadius(int place) {
+	return radii[place];
+    }
+
+    private int cell(double coordinate) {
+	return (int) Math.floor(coordinate / cellSize);
+    }
+
+    private static long cell(int x, int y, int z) {
+	return ((long) (x & CELL_MASK) << (2 * CELL_BITS))
+		| ((long) (y & CELL_MASK) << CELL_BITS) | (z & CELL_MASK);
+    }
+}
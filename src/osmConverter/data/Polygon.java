@@ -0,0 +1,224 @@
+package osmConverter.data;
+
+import java.util.Arrays;
+
+import osmConverter.beans.IntList;
+
+/**
+ * Polygon of one or more rings, the coordinates are kept in arrays of
+ * primitives. Every ring is closed implicitly.
+ * {@link #contains(double, double)} counts the crossings with the non-zero
+ * winding rule exactly like {@link java.awt.geom.Path2D}, so the results are
+ * the same.
+ */
+public class Polygon {
+
+    private double[] xs = new double[8];
+    private double[] ys = new double[8];
+    private int size = 0;
+
+    /**
+     * Index of the first point of every ring.
+     */
+    private final IntList ringStarts = new IntList();
+    private boolean newRing = true;
+
+    private double minX = Double.POSITIVE_INFINITY;
+    private double minY = Double.POSITIVE_INFINITY;
+    private double maxX = Double.NEGATIVE_INFINITY;
+    private double maxY = Double.NEGATIVE_INFINITY;
+
+    /**
+     * The next point starts a new ring.
+     */
+    public void startRing() {
+	newRing = true;
+    }
+
+    public void add(double x, double y) {
+	if (newRing) {
+	    ringStarts.add(size);
+	    newRing = false;
+	}
+	if (size == xs.length) {
+	    xs = Arrays.copyOf(xs, size + (size >> 1) + 1);
+	    ys = Arrays.copyOf(ys, xs.length);
+	}
+	xs[size] = x;
+	ys[size] = y;
+	size++;
+
+	// NaN spreads to the bounds, the polygon is unbounded then
+	minX = Math.min(minX, x);
+	minY = Math.min(minY, y);
+	maxX = Math.max(maxX, x);
+	maxY = Math.max(maxY, y);
+    }
+
+    /**
+     * Adds the first point of the current ring again.
+     */
+    public void closeRing() {
+	int start = ringStarts.get(ringStarts.size() - 1);
+	add(xs[start], ys[start]);
+    }
+
+    /**
+     * @return true if the point is inside of the polygon.
+     */
+    public boolean contains(double x, double y) {
+	// false for NaN and infinite coordinates, like Path2D
+	if (!(x * 0.0 + y * 0.0 == 0.0) || getEdgeCount() < 2) {
+	    return false;
+	}
+	if (isBounded() && (x < minX || x > maxX || y < minY || y >= maxY)) {
+	    // the crossings of closed rings outside of their bounds sum up to 0
+	    return false;
+	}
+
+	int crossings = 0;
+	for (int ring = 0; ring < ringStarts.size(); ring++) {
+	    if (!hasEdges(ring)) {
+		continue;
+	    }
+	    int start = ringStarts.get(ring);
+	    int end = getRingEnd(ring);
+	    for (int i = start; i < end; i++) {
+		int next = i + 1 < end ? i + 1 : start;
+		crossings += crossings(x, y, xs[i], ys[i], xs[next], ys[next]);
+	    }
+	}
+	return crossings != 0;
+    }
+
+    /**
+     * @return Number of edges, one per point of the rings with edges.
+     */
+    public int getEdgeCount() {
+	int edges = size;
+	for (int ring = 0; ring < ringStarts.size(); ring++) {
+	    if (!hasEdges(ring)) {
+		edges--;
+	    }
+	}
+	return edges;
+    }
+
+    /**
+     * @return Number of points.
+     */
+    public int size() {
+	return size;
+    }
+
+    public double getX(int point) {
+	return xs[point];
+    }
+
+    public double getY(int point) {
+	return ys[point];
+    }
+
+    public int getRingCount() {
+	return ringStarts.size();
+    }
+
+    /**
+     * @return Index of the first point of the ring.
+     */
+    public int getRingStart(int ring) {
+	return ringStarts.get(ring);
+    }
+
+    /**
+     * @return Index after the last point of the ring.
+     */
+    public int getRingEnd(int ring) {
+	return ring + 1 < ringStarts.size() ? ringStarts.get(ring + 1) : size;
+    }
+
+    /**
+     * @return false if the ring is a single point followed by another ring.
+     *         Path2D replaces such a moveTo by the next one, only a single
+     *         point at the end is closed (which counts for NaN coordinates).
+     */
+    public boolean hasEdges(int ring) {
+	return getRingEnd(ring) - getRingStart(ring) > 1
+		|| ring + 1 == ringStarts.size();
+    }
+
+    /**
+     * @return false if a coordinate is unknown (NaN), then there are no
+     *         bounds.
+     */
+    public boolean isBounded() {
+	return !Double.isNaN(minX + minY + maxX + maxY);
+    }
+
+    public double getMinX() {
+	return minX;
+    }
+
+    public double getMinY() {
+	return minY;
+    }
+
+    public double getMaxX() {
+	return maxX;
+    }
+
+    public double getMaxY() {
+	return maxY;
+    }
+
+    /**
+     * Releases the unused space of the arrays, once all points are added.
+     */
+    public void trim() {
+	if (xs.length != size) {
+	    xs = Arrays.copyOf(xs, size);
+	    ys = Arrays.copyOf(ys, size);
+	}
+    }
+
+    /**
+     * @return The x-coordinates, the array is shared.
+     */
+    double[] getXs() {
+	trim();
+	return xs;
+    }
+
+    /**
+     * @return The y-coordinates, the array is shared.
+     */
+    double[] getYs() {
+	trim();
+	return ys;
+    }
+
+    /**
+     * @return The crossings of a ray from the point to the right with the
+     *         edge, +1 or -1 depending on its direction.
+     */
+    static int crossings(double px, double py, double x0, double y0,
+	    double x1, double y1) {
+	if (py < y0 && py < y1) {
+	    return 0;
+	}
+	if (py >= y0 && py >= y1) {
+	    return 0;
+	}
+	if (px >= x0 && px >= x1) {
+	    return 0;
+	}
+	if (px < x0 && px < x1) {
+	    return (y0 < y1) ? 1 : -1;
+	}
+	double xintercept = x0 + (py - y0) * (x1 - x0) / (y1 - y0);
+	if (px >= xintercept) {
+	    return 0;
+	}
+	return (y0 < y1) ? 1 : -1;
+    }
+}
@@ -7,15 +7,20 @@ package osmConverter.data;
  */
 public class Restriction {
 
-    private String from = "";
-    private String to = "";
-    private String via = "";
+    /**
+     * Value of the ids as long as they are not set.
+     */
+    public final static long NO_ID = Long.MIN_VALUE;
 
-    public String getVia() {
+    private long from = NO_ID;
+    private long to = NO_ID;
+    private long via = NO_ID;
+
+    public long getVia() {
 	return via;
     }
 
-    public void setVia(String via) {
+    public void setVia(long via) {
 	this.via = via;
     }
 
@@ -25,7 +30,7 @@ public class Restriction {
     private String fromDay = "";
     private String toDay = "";
     private String type = "";
-    private String id = "";
+    private long id = NO_ID;
     private boolean fromIsConverted = false;
     private boolean toIsConverted = false;
 
@@ -68,7 +73,7 @@ public class Restriction {
 		}
 	    }
 
-	    if (!this.getFrom().equals("") && !this.getTo().equals("")) {
+	    if (this.getFrom() != NO_ID && this.getTo() != NO_ID) {
 		return true;
 	    } else {
 		return false;
@@ -87,11 +92,11 @@ public class Restriction {
 	return toIsConverted;
     }
 
-    public String getId() {
+    public long getId() {
 	return id;
     }
 
-    public void setId(String id) {
+    public void setId(long id) {
 	this.id = id;
     }
 
@@ -143,19 +148,19 @@ public class Restriction {
 	this.toTime = toTime;
     }
 
-    public String getFrom() {
+    public long getFrom() {
 	return from;
     }
 
-    public void setFrom(String from) {
+    public void setFrom(long from) {
 	this.from = from;
     }
 
-    public String getTo() {
+    public long getTo() {
 	return to;
     }
 
-    public void setTo(String to) {
+    public void setTo(long to) {
 	this.to = to;
     }
 
@@ -0,0 +1,148 @@
+package osmConverter.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import osmConverter.beans.LongIndex;
+
+/**
+ * Joins the member-ways of a multipolygon into rings. The ways are found by
+ * their end-nodes in a table, so every way is only looked at when a ring
+ * reaches one of its ends, instead of scanning all ways for every join. Ways
+ * are reversed where needed, so all ways of a ring run in one direction.
+ */
+class RingAssembler {
+
+    private final List<OsmWay> ways;
+
+    /**
+     * The end-nodes of the ways.
+     */
+    private final LongIndex ends = new LongIndex();
+
+    /**
+     * The ways of every end-node in their order, from offsets[end] to
+     * offsets[end + 1].
+     */
+    private final int[] offsets;
+    private final int[] endWays;
+
+    /**
+     * The next way of every end-node to look at, the ways before are used.
+     */
+    private final int[] cursors;
+    private final boolean[] used;
+
+    RingAssembler(List<OsmWay> ways) {
+	this.ways = ways;
+
+	int[] firstEnds = new int[ways.size()];
+	int[] lastEnds = new int[ways.size()];
+	for (int i = 0; i < ways.size(); i++) {
+	    firstEnds[i] = ends.add(ways.get(i).getFirstNode());
+	    lastEnds[i] = ends.add(ways.get(i).getLastNode());
+	}
+
+	// count the ways of every end-node, then fill them in
+	offsets = new int[ends.size() + 1];
+	for (int i = 0; i < ways.size(); i++) {
+	    offsets[firstEnds[i] + 1]++;
+	    if (lastEnds[i] != firstEnds[i]) {
+		offsets[lastEnds[i] + 1]++;
+	    }
+	}
+	for (int i = 1; i < offsets.length; i++) {
+	    offsets[i] += offsets[i - 1];
+	}
+	endWays = new int[offsets[ends.size()]];
+	cursors = Arrays.copyOf(offsets, ends.size());
+	for (int i = 0; i < ways.size(); i++) {
+	    endWays[cursors[firstEnds[i]]++] = i;
+	    if (lastEnds[i] != firstEnds[i]) {
+		endWays[cursors[lastEnds[i]]++] = i;
+	    }
+	}
+	System.arraycopy(offsets, 0, cursors, 0, cursors.length);
+
+	used = new boolean[ways.size()];
+    }
+
+    /**
+     * @return The rings in the order of their first member, every ring as
+     *         its ways in the order they are passed. A ring which can't be
+     *         closed runs from the first to the last way it could be joined
+     *         with.
+     */
+    List<List<OsmWay>> assemble() {
+	List<List<OsmWay>> rings = new ArrayList<List<OsmWay>>();
+	for (int i = 0; i < ways.size(); i++) {
+	    if (!used[i]) {
+		used[i] = true;
+		rings.add(assembleRing(ways.get(i)));
+	    }
+	}
+	return rings;
+    }
+
+    private List<OsmWay> assembleRing(OsmWay start) {
+	LinkedList<OsmWay> ring = new LinkedList<OsmWay>();
+	ring.add(start);
+	long first = start.getFirstNode();
+	long last = start.getLastNode();
+
+	// continue at the end of the ring
+	int next;
+	while (first != last && (next = nextWay(last)) != -1) {
+	    OsmWay way = ways.get(next);
+	    if (way.getFirstNode() != last) {
+		way = reverseWay(way);
+	    }
+	    ring.addLast(way);
+	    last = way.getLastNode();
+	}
+
+	// continue before the start, if the ring isn't closed
+	while (first != last && (next = nextWay(first)) != -1) {
+	    OsmWay way = ways.get(next);
+	    if (way.getLastNode() != first) {
+		way = reverseWay(way);
+	    }
+	    ring.addFirst(way);
+	    first = way.getFirstNode();
+	}
+	return ring;
+    }
+
+    /**
+     * @return The first unused way ending at the node, which is used then,
+     *         or -1 if there is none.
+     */
+    private int nextWay(long node) {
+	int end = ends.get(node);
+	while (cursors[end] < offsets[end + 1]) {
+	    int way = endWays[cursors[end]++];
+	    if (!used[way]) {
+		used[way] = true;
+		return way;
+	    }
+	}
+	return -1;
+    }
+
+    private static OsmWay reverseWay(OsmWay way) {
+
+	OsmWay newWay = way.clone();
+	long[] nodes = way.getNodes();
+	long[] rightNodes = new long[nodes.length];
+
+	for (int i = 0; i < nodes.length; i++) {
+	    rightNodes[nodes.length - 1 - i] = nodes[i];
+	}
+
+	newWay.setNodes(rightNodes);
+
+	return newWay;
+    }
+}
@@ -1,7 +1,6 @@
 package osmConverter.data;
 
-import java.util.ArrayList;
-import java.util.List;
+import osmConverter.beans.IntList;
 
 /**
  * Similar to Link-class, but representing an aggregation of links between
@@ -38,28 +37,28 @@ public class Street {
     private double startLon;
     private double endLon;
 
-    private String startNodeId;
-    private String endNodeId;
+    private long startNodeId;
+    private long endNodeId;
 
-    public String getStartNodeId() {
+    public long getStartNodeId() {
 	return startNodeId;
     }
 
-    public void setStartNodeId(String startNodeId) {
+    public void setStartNodeId(long startNodeId) {
 	this.startNodeId = startNodeId;
     }
 
-    public String getEndNodeId() {
+    public long getEndNodeId() {
 	return endNodeId;
     }
 
-    public void setEndNodeId(String endNodeId) {
+    public void setEndNodeId(long endNodeId) {
 	this.endNodeId = endNodeId;
     }
 
-    private List<String> followingStreets = new ArrayList<String>();
-    private List<String> leadingStreets = new ArrayList<String>();
-    private List<String> edgeIDs = new ArrayList<String>();
+    private IntList followingStreets = new IntList();
+    private IntList leadingStreets = new IntList();
+    private IntList edgeIDs = new IntList();
 
     /**
      * @return the streetType
@@ -199,7 +198,7 @@ public class Street {
     /**
      * @return the edgeIDs
      */
-    public List<String> getEdgeIDs() {
+    public IntList getEdgeIDs() {
 	return edgeIDs;
     }
 
@@ -207,14 +206,14 @@ public class Street {
      * @param edgeIDs
      *            the edgeIDs to set
      */
-    public void setEdgeIDs(List<String> edgeIDs) {
+    public void setEdgeIDs(IntList edgeIDs) {
 	this.edgeIDs = edgeIDs;
     }
 
     /**
      * @return the followingStreets
      */
-    public List<String> getFollowingStreets() {
+    public IntList getFollowingStreets() {
 	return followingStreets;
     }
 
@@ -222,14 +221,14 @@ public class Street {
      * @param followingStreets
      *            the followingStreets to set
      */
-    public void setFollowingStreets(List<String> followingStreets) {
+    public void setFollowingStreets(IntList followingStreets) {
 	this.followingStreets = followingStreets;
     }
 
     /**
      * @return the leadingStreets
      */
-    public List<String> getLeadingStreets() {
+    public IntList getLeadingStreets() {
 	return leadingStreets;
     }
 
@@ -237,7 +236,7 @@ public class Street {
      * @param leadingStreets
      *            the leadingStreets to set
      */
-    public void setLeadingStreets(List<String> leadingStreets) {
+    public void setLeadingStreets(IntList leadingStreets) {
 	this.leadingStreets = leadingStreets;
     }
 
@@ -2,6 +2,8 @@ package osmConverter.data;
 
 import java.util.Map;
 
+import osmConverter.beans.LongMap;
+
 /**
  * Class containing complete street-map.
  * 
@@ -10,15 +12,23 @@ import java.util.Map;
  */
 public class StreetMap {
 
-    private Map<String, Link> links;
+    private LinkGraph graph;
+    private LongMap<Link> links;
     private Map<Integer, Street> streets;
-    private Map<String, Node> nodes;
+    private LongMap<Node> nodes;
 
-    public Map<String, Link> getLinks() {
+    /**
+     * @return The adjacency of the links, see {@link LinkGraph}.
+     */
+    public LinkGraph getGraph() {
+	return graph;
+    }
+
+    public LongMap<Link> getLinks() {
 	return links;
     }
 
-    public Map<String, Node> getNodes() {
+    public LongMap<Node> getNodes() {
 	return nodes;
     }
 
@@ -30,11 +40,15 @@ public class StreetMap {
 	this.nodes.put(node.getId(), node);
     }
 
-    public void setLinks(Map<String, Link> links) {
+    public void setGraph(LinkGraph graph) {
+	this.graph = graph;
+    }
+
+    public void setLinks(LongMap<Link> links) {
 	this.links = links;
     }
 
-    public void setNodes(Map<String, Node> nodes) {
+    public void setNodes(LongMap<Node> nodes) {
 	this.nodes = nodes;
     }
 
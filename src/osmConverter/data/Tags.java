@@ -3,37 +3,211 @@
  */
 package osmConverter.data;
 
-import java.util.HashMap;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import osmConverter.beans.SymbolTable;
 
 /**
  * 
- * List of all tags owned by an osm-entity.
+ * List of all tags owned by an osm-entity. Keys and values are kept as
+ * symbols of the {@link SymbolTable}, so a tag only takes two ints. The map
+ * returned by {@link #getTags()} is a view translating them to strings.
  * 
  * @author Tom Mller
  * @version 25.07.2010
  */
 public class Tags {
 
-    private Map<String, String> tags = new HashMap<String, String>();
+    private final static int[] NO_TAGS = new int[0];
+
+    /**
+     * Symbols of the keys and values, alternating.
+     */
+    private int[] symbols = NO_TAGS;
+    private int size = 0;
+
+    private final TagMap view = new TagMap();
 
     /**
      * @return the tags
      */
     public Map<String, String> getTags() {
-	return tags;
+	return view;
     }
 
     public void put(String key, String value) {
-	tags.put(key, value);
+	put(SymbolTable.intern(key), SymbolTable.intern(value));
     }
-    
+
+    public void put(int key, int value) {
+	int index = indexOf(key);
+	if (index >= 0) {
+	    symbols[index + 1] = value;
+	    return;
+	}
+
+	if (size * 2 == symbols.length) {
+	    int[] temp = new int[Math.max(8, symbols.length * 2)];
+	    System.arraycopy(symbols, 0, temp, 0, size * 2);
+	    symbols = temp;
+	}
+	symbols[size * 2] = key;
+	symbols[size * 2 + 1] = value;
+	size++;
+    }
+
     public void putAll(Map<String, String> newTags) {
-	tags.putAll(newTags);
+	if (newTags instanceof TagMap) {
+	    Tags other = ((TagMap) newTags).getOwner();
+	    for (int i = 0; i < other.size * 2; i += 2) {
+		put(other.symbols[i], other.symbols[i + 1]);
+	    }
+	    return;
+	}
+
+	for (Map.Entry<String, String> entry : newTags.entrySet()) {
+	    put(entry.getKey(), entry.getValue());
+	}
     }
 
+    /**
+     * Replaces all tags by a copy of the given ones.
+     */
     public void setTags(Map<String, String> tags) {
-	this.tags = tags;
+	if (tags == view) {
+	    return;
+	}
+	symbols = NO_TAGS;
+	size = 0;
+	putAll(tags);
+    }
+
+    /**
+     * @return The symbol of the value of the key or {@link SymbolTable#NONE}.
+     */
+    public int get(int key) {
+	int index = indexOf(key);
+	return index < 0 ? SymbolTable.NONE : symbols[index + 1];
+    }
+
+    public boolean containsKey(int key) {
+	return indexOf(key) >= 0;
+    }
+
+    public int size() {
+	return size;
+    }
+
+    /**
+     * @return The symbol of the key of the tag with this index (in the order
+     *         the tags were added).
+     */
+    public int keyAt(int index) {
+	return symbols[index * 2];
+    }
+
+    /**
+     * @return The symbol of the value of the tag with this index.
+     */
+    public int valueAt(int index) {
+	return symbols[index * 2 + 1];
+    }
+
+    /**
+     * Entities only have a few tags, so they are searched linearly.
+     */
+    private int indexOf(int key) {
+	if (key == SymbolTable.NONE) {
+	    return -1;
+	}
+	for (int i = 0; i < size * 2; i += 2) {
+	    if (symbols[i] == key) {
+		return i;
+	    }
+	}
+	return -1;
+    }
+
+    /**
+     * Map-view of the tags for all code working with strings.
+     */
+    private class TagMap extends AbstractMap<String, String> {
+
+	private Tags getOwner() {
+	    return Tags.this;
+	}
+
+	@Override
+	public String get(Object key) {
+	    if (!(key instanceof String)) {
+		return null;
+	    }
+	    return SymbolTable.get(Tags.this.get(SymbolTable
+		    .lookup((String) key)));
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+	    return key instanceof String
+		    && Tags.this.containsKey(SymbolTable.lookup((String) key));
+	}
+
+	@Override
+	public String put(String key, String value) {
+	    String old = get(key);
+	    Tags.this.put(key, value);
+	    return old;
+	}
+
+	@Override
+	public int size() {
+	    return size;
+	}
+
+	@Override
+	public Set<Map.Entry<String, String>> entrySet() {
+	    return new AbstractSet<Map.Entry<String, String>>() {
+
+		@Override
+		public Iterator<Map.Entry<String, String>> iterator() {
+		    return new EntryIterator();
+		}
+
+		@Override
+		public int size() {
+		    return size;
+		}
+	    };
+	}
+    }
+
+    private class EntryIterator implements Iterator<Map.Entry<String, String>> {
+
+	private int index = 0;
+
+	public boolean hasNext() {
+	    return index < size;
+	}
+
+	public Map.Entry<String, String> next() {
+	    if (index >= size) {
+		throw new NoSuchElementException();
+	    }
+	    String key = SymbolTable.get(symbols[index * 2]);
+	    String value = SymbolTable.get(symbols[index * 2 + 1]);
+	    index++;
+	    return new AbstractMap.SimpleImmutableEntry<String, String>(key,
+		    value);
+	}
+
+	public void remove() {
+	    throw new UnsupportedOperationException();
+	}
     }
 
 }
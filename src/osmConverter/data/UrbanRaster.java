@@ -0,0 +1,355 @@
+package osmConverter.data;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.BitSet;
+
+import osmConverter.logic.CoordinateHelper;
+
+/**
+ * Classification of the map into urban and rural cells, so most nodes are
+ * classified by a single lookup instead of testing them against the
+ * town-areas ({@link AreaIndex}) and places ({@link PlaceIndex}). The cells
+ * are about as large as the resolution, every cell takes 2 bits.
+ *
+ * Cells crossed by the border of a town-area or the radius of a place are
+ * {@link #UNKNOWN}, only the nodes in them have to be tested exactly. The
+ * cells between the borders of the areas are classified with one exact test
+ * per run of cells in a row, as the result can't change within a run.
+ */
+public class UrbanRaster {
+
+    public final static int RURAL = 0;
+    public final static int URBAN = 1;
+    public final static int UNKNOWN = 2;
+
+    /**
+     * Meters per degree of latitude, with the earth radius of
+     * {@link CoordinateHelper}.
+     */
+    private final static double METERS_PER_DEGREE = 6380. * 1000 * Math.PI
+	    / 180;
+
+    /**
+     * Largest number of cells (64 MB), a larger raster gets coarser.
+     */
+    private final static long MAX_CELLS = 1L << 28;
+
+    /**
+     * Places whose radius reaches further towards the poles aren't
+     * rasterized, the degrees of longitude get too short.
+     */
+    private final static double MAX_LATITUDE = 85;
+
+    /**
+     * Meters the distances to the places may be off by rounding.
+     */
+    private final static double DISTANCE_TOLERANCE = 1;
+
+    private final double minLon;
+    private final double minLat;
+    private final double cellWidth;
+    private final double cellHeight;
+    private final int columns;
+    private final int rows;
+
+    /**
+     * The classes of the cells row by row, 32 cells per entry.
+     */
+    private final long[] cells;
+
+    private UrbanRaster(double minLon, double minLat, double cellWidth,
+	    double cellHeight, int columns, int rows, long[] cells) {
+	this.minLon = minLon;
+	this.minLat = minLat;
+	this.cellWidth = cellWidth;
+	this.cellHeight = cellHeight;
+	this.columns = columns;
+	this.rows = rows;
+	this.cells = cells;
+    }
+
+    /**
+     * Rasterizes the town-areas and places.
+     *
+     * @param resolution
+     *            Size of the cells in meters.
+     * @return null if they can't be rasterized, because coordinates of an
+     *         area are unknown or the radius of a place reaches the poles or
+     *         the 180th meridian.
+     */
+    public static UrbanRaster create(AreaIndex towns, PlaceIndex places,
+	    double resolution) {
+	if (!towns.isBounded()) {
+	    return null;
+	}
+
+	double minX = towns.getMinX();
+	double minY = towns.getMinY();
+	double maxX = towns.getMaxX();
+	double maxY = towns.getMaxY();
+	for (int i = 0; i < places.size(); i++) {
+	    double lat = places.getLat(i);
+	    double lon = places.getLon(i);
+	    if (Double.isNaN(lat + lon)) {
+		continue;
+	    }
+	    double latExtent = latExtent(places.getRadius(i));
+	    double lonExtent = lonExtent(lat, latExtent);
+	    if (!(Math.abs(lat) + latExtent < MAX_LATITUDE)
+		    || lon - lonExtent < -180 || lon + lonExtent > 180) {
+		return null;
+	    }
+	    minX = Math.min(minX, lon - lonExtent);
+	    minY = Math.min(minY, lat - latExtent);
+	    maxX = Math.max(maxX, lon + lonExtent);
+	    maxY = Math.max(maxY, lat + latExtent);
+	}
+	if (minX > maxX) {
+	    // nothing is urban
+	    return new UrbanRaster(0, 0, 1, 1, 0, 0, new long[0]);
+	}
+
+	// cells of the resolution at the latitude farthest from the equator
+	double cellHeight = resolution / METERS_PER_DEGREE;
+	double cellWidth = cellHeight
+		/ Math.cos(Math.toRadians(Math.min(MAX_LATITUDE, Math.max(
+			Math.abs(minY), Math.abs(maxY)))));
+	double cells = cells(minX, maxX, cellWidth)
+		* cells(minY, maxY, cellHeight);
+	if (cells > MAX_CELLS) {
+	    double scale = Math.sqrt(cells / MAX_CELLS) * 1.01;
+	    cellWidth *= scale;
+	    cellHeight *= scale;
+	}
+
+	// a free cell around everything
+	UrbanRaster raster = new UrbanRaster(minX - cellWidth, minY
+		- cellHeight, cellWidth, cellHeight, (int) cells(minX, maxX,
+		cellWidth) + 2, (int) cells(minY, maxY, cellHeight) + 2, null);
+	return raster.classify(towns, places);
+    }
+
+    /**
+     * @return The class of the coordinate, {@link #UNKNOWN} if the node has
+     *         to be tested exactly.
+     */
+    public int get(double lon, double lat) {
+	double column = Math.floor((lon - minLon) / cellWidth);
+	double row = Math.floor((lat - minLat) / cellHeight);
+	if (!(column >= 0 && column < columns && row >= 0 && row < rows)) {
+	    return RURAL;
+	}
+	return get(cells, (int) row * columns + (int) column);
+    }
+
+    public int getColumns() {
+	return columns;
+    }
+
+    public int getRows() {
+	return rows;
+    }
+
+    /**
+     * @return Number of the cells of the class.
+     */
+    public long count(int type) {
+	long count = 0;
+	for (int i = 0; i < rows * columns; i++) {
+	    if (get(cells, i) == type) {
+		count++;
+	    }
+	}
+	return count;
+    }
+
+    public void write(DataOutputStream out) throws IOException {
+	out.writeDouble(minLon);
+	out.writeDouble(minLat);
+	out.writeDouble(cellWidth);
+	out.writeDouble(cellHeight);
+	out.writeInt(columns);
+	out.writeInt(rows);
+	for (long entry : cells) {
+	    out.writeLong(entry);
+	}
+    }
+
+    public static UrbanRaster read(DataInputStream in) throws IOException {
+	double minLon = in.readDouble();
+	double minLat = in.readDouble();
+	double cellWidth = in.readDouble();
+	double cellHeight = in.readDouble();
+	int columns = in.readInt();
+	int rows = in.readInt();
+	if (columns < 0 || rows < 0 || (long) columns * rows > MAX_CELLS * 2) {
+	    throw new IOException("Invalid raster size " + columns + "x"
+		    + rows);
+	}
+
+	long[] cells = new long[entries(columns * rows)];
+	for (int i = 0; i < cells.length; i++) {
+	    cells[i] = in.readLong();
+	}
+	return new UrbanRaster(minLon, minLat, cellWidth, cellHeight,
+		columns, rows, cells);
+    }
+
+    private UrbanRaster classify(AreaIndex towns, PlaceIndex places) {
+	int size = columns * rows;
+	BitSet borders = new BitSet(size);
+	BitSet insidePlaces = new BitSet(size);
+	BitSet placeBorders = new BitSet(size);
+
+	for (EdgeTable area : towns.getAreas()) {
+	    for (int i = 0; i < area.size(); i++) {
+		int end = area.getEnd(i);
+		if (end == -1) {
+		    continue;
+		}
+		markEdge(borders, area.getX(i), area.getY(i), area.getX(end),
+			area.getY(end));
+	    }
+	}
+	for (int i = 0; i < places.size(); i++) {
+	    markPlace(insidePlaces, placeBorders, places.getLat(i), places
+		    .getLon(i), places.getRadius(i));
+	}
+
+	long[] cells = new long[entries(size)];
+	for (int row = 0; row < rows; row++) {
+	    boolean insideArea = false;
+	    for (int column = 0; column < columns; column++) {
+		int cell = row * columns + column;
+		int type;
+		if (borders.get(cell)) {
+		    type = insidePlaces.get(cell) ? URBAN : UNKNOWN;
+		} else {
+		    if (column == 0 || borders.get(cell - 1)) {
+			// a new run of cells, no border crosses it
+			insideArea = towns.contains(minLon + (column + 0.5)
+				* cellWidth, minLat + (row + 0.5) * cellHeight);
+		    }
+		    if (insideArea || insidePlaces.get(cell)) {
+			type = URBAN;
+		    } else {
+			type = placeBorders.get(cell) ? UNKNOWN : RURAL;
+		    }
+		}
+		set(cells, cell, type);
+	    }
+	}
+	return new UrbanRaster(minLon, minLat, cellWidth, cellHeight, columns,
+		rows, cells);
+    }
+
+    /**
+     * Marks all cells the edge touches, including the ones it only passes
+     * closely.
+     */
+    private void markEdge(BitSet borders, double x0, double y0, double x1,
+	    double y1) {
+	double toleranceX = cellWidth / 1000;
+	double toleranceY = cellHeight / 1000;
+
+	int lastRow = row(Math.max(y0, y1) + toleranceY);
+	for (int row = row(Math.min(y0, y1) - toleranceY); row <= lastRow; row++) {
+	    double bottom = minLat + row * cellHeight - toleranceY;
+	    double top = bottom + cellHeight + 2 * toleranceY;
+
+	    // the part of the edge within the row
+	    double from = 0;
+	    double to = 1;
+	    if (y0 != y1) {
+		double t0 = (bottom - y0) / (y1 - y0);
+		double t1 = (top - y0) / (y1 - y0);
+		from = Math.max(0, Math.min(t0, t1));
+		to = Math.min(1, Math.max(t0, t1));
+	    }
+	    double xFrom = x0 + from * (x1 - x0);
+	    double xTo = x0 + to * (x1 - x0);
+
+	    int lastColumn = column(Math.max(xFrom, xTo) + toleranceX);
+	    for (int column = column(Math.min(xFrom, xTo) - toleranceX); column <= lastColumn; column++) {
+		borders.set(row * columns + column);
+	    }
+	}
+    }
+
+    /**
+     * Marks the cells completely within the radius of the place and the ones
+     * crossed by it. A point of a cell is at most half the height and half
+     * the width of the cell away from its center.
+     */
+    private void markPlace(BitSet inside, BitSet borders, double lat,
+	    double lon, double radius) {
+	if (Double.isNaN(lat + lon)) {
+	    return;
+	}
+	double latExtent = latExtent(radius) + cellHeight;
+	double lonExtent = lonExtent(lat, latExtent) + cellWidth;
+	double halfCell = (cellWidth + cellHeight) * METERS_PER_DEGREE / 2
+		+ DISTANCE_TOLERANCE;
+
+	int lastRow = row(lat + latExtent);
+	int lastColumn = column(lon + lonExtent);
+	for (int row = row(lat - latExtent); row <= lastRow; row++) {
+	    double centerLat = minLat + (row + 0.5) * cellHeight;
+	    for (int column = column(lon - lonExtent); column <= lastColumn; column++) {
+		double distance = CoordinateHelper.calcDistanceBetweenCoords(
+			centerLat, minLon + (column + 0.5) * cellWidth, lat, lon);
+		if (distance + halfCell < radius) {
+		    inside.set(row * columns + column);
+		} else if (!(distance - halfCell > radius)) {
+		    borders.set(row * columns + column);
+		}
+	    }
+	}
+    }
+
+    /**
+     * @return Degrees of latitude the radius covers.
+     */
+    private static double latExtent(double radius) {
+	return Math.max(0, radius) / METERS_PER_DEGREE;
+    }
+
+    /**
+     * @return Degrees of longitude the radius covers at the latitude, with
+     *         the length of the degrees at the end nearer to the pole.
+     */
+    private static double lonExtent(double lat, double latExtent) {
+	double farthest = Math.min(90, Math.abs(lat) + latExtent);
+	return latExtent / Math.cos(Math.toRadians(farthest)) * 1.01;
+    }
+
+    private static double cells(double min, double max, double size) {
+	return Math.floor((max - min) / size) + 1;
+    }
+
+    private int row(double lat) {
+	return Math.max(0, Math.min(rows - 1,
+		(int) Math.floor((lat - minLat) / cellHeight)));
+    }
+
+    private int column(double lon) {
+	return Math.max(0, Math.min(columns - 1,
+		(int) Math.floor((lon - minLon) / cellWidth)));
+    }
+
+    private static int entries(int cells) {
+	return (cells + 31) >>> 5;
+    }
+
+    private static int get(long[] cells, int cell) {
+	return (int) (cells[cell >>> 5] >>> ((cell & 31) << 1)) & 3;
+    }
+
+    private static void set(long[] cells, int cell, int type) {
+	int shift = (cell & 31) << 1;
+	cells[cell >>> 5] = (cells[cell >>> 5] & ~(3L << shift))
+		| ((long) type << shift);
+    }
+}
@@ -0,0 +1,174 @@
+package osmConverter.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads another stream (e.g. a decompressing one) in a background thread and
+ * hands the data over in chunks through a bounded queue. Reading (and
+ * decompressing) the file and parsing it this way run at the same time, the
+ * queue keeps the background thread from running too far ahead.
+ */
+public class BackgroundInputStream extends InputStream {
+
+    private final static int CHUNK_SIZE = 256 * 1024;
+    private final static int CHUNKS = 16;
+
+    /**
+     * Marks the end of the stream in the queue.
+     */
+    private final static byte[] END = new byte[0];
+
+    private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<byte[]>(
+	    CHUNKS);
+    private final Thread thread;
+
+    /**
+     * What went wrong in the background thread, an {@link IOException} or
+     * {@link Error} is rethrown to the reader as it is.
+     */
+    private volatile Throwable error = null;
+
+    private byte[] chunk = null;
+    private int position = 0;
+    private boolean finished = false;
+
+    /**
+     * Starts reading the stream in the background. The stream is closed by
+     * the background thread when it is finished.
+     */
+    public BackgroundInputStream(final InputStream in, String name) {
+	thread = new Thread(new Runnable() {
+	    public void run() {
+		transfer(in);
+	    }
+	}, name);
+	thread.setDaemon(true);
+	thread.start();
+    }
+
+    @Override
+    public int read() throws IOException {
+	if (!nextChunk()) {
+	    return -1;
+	}
+	return chunk[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+	if (length == 0) {
+	    return 0;
+	}
+	if (!nextChunk()) {
+	    return -1;
+	}
+
+	int count = Math.min(length, chunk.length - position);
+	System.arraycopy(chunk, position, buffer, offset, count);
+	position += count;
+	return count;
+    }
+
+    @Override
+    public int available() {
+	return chunk == null ? 0 : chunk.length - position;
+    }
+
+    /**
+     * Stops the background thread.
+     */
+    @Override
+    public void close() {
+	finished = true;
+	thread.interrupt();
+	queue.clear();
+    }
+
+    /**
+     * @return false at the end of the stream.
+     */
+    private boolean nextChunk() throws IOException {
+	if (chunk != null && position < chunk.length) {
+	    return true;
+	}
+	if (finished) {
+	    return false;
+	}
+
+	try {
+	    chunk = queue.take();
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new InterruptedIOException("Interrupted while reading");
+	}
+	position = 0;
+
+	if (chunk == END) {
+	    finished = true;
+	    if (error instanceof IOException) {
+		throw (IOException) error;
+	    }
+	    if (error instanceof Error) {
+		throw (Error) error;
+	    }
+	    if (error != null) {
+		throw new IOException(error.toString());
+	    }
+	    return false;
+	}
+	return true;
+    }
+
+    /**
+     * Runs in the background thread.
+     */
+    private void transfer(InputStream in) {
+	try {
+	    byte[] buffer = new byte[CHUNK_SIZE];
+	    int length = 0;
+	    int read;
+
+	    while ((read = in.read(buffer, length, CHUNK_SIZE - length)) >= 0) {
+		length += read;
+		if (length == CHUNK_SIZE) {
+		    queue.put(buffer);
+		    buffer = new byte[CHUNK_SIZE];
+		    length = 0;
+		}
+	    }
+
+	    if (length > 0) {
+		byte[] last = new byte[length];
+		System.arraycopy(buffer, 0, last, 0, length);
+		queue.put(last);
+	    }
+	} catch (InterruptedException e) {
+	    // the stream was closed, nobody is waiting for data
+	    close(in);
+	    return;
+	} catch (Throwable e) {
+	    // also Errors (e.g. running out of memory while inflating), the
+	    // reader would wait for the end forever otherwise
+	    error = e;
+	}
+
+	close(in);
+	try {
+	    queue.put(END);
+	} catch (InterruptedException e) {
+	    // the stream was closed
+	}
+    }
+
+    private static void close(InputStream in) {
+	try {
+	    in.close();
+	} catch (IOException e) {
+	    // all data was read already
+	}
+    }
+}
@@ -0,0 +1,56 @@
+package osmConverter.io;
+
+/**
+ * Rectangular {@link ClipRegion} given by its minimal and maximal
+ * coordinates. The border belongs to the box.
+ */
+public class BoundingBox implements ClipRegion {
+
+    private final double minLon;
+    private final double minLat;
+    private final double maxLon;
+    private final double maxLat;
+
+    public BoundingBox(double minLon, double minLat, double maxLon,
+	    double maxLat) {
+	if (minLon > maxLon || minLat > maxLat) {
+	    throw new IllegalArgumentException("Empty bounding-box: " + minLon
+		    + "," + minLat + "," + maxLon + "," + maxLat);
+	}
+
+	this.minLon = minLon;
+	this.minLat = minLat;
+	this.maxLon = maxLon;
+	this.maxLat = maxLat;
+    }
+
+    /**
+     * @param box
+     *            "minLon,minLat,maxLon,maxLat"
+     */
+    public static BoundingBox parse(String box) {
+	String[] values = box.split(",");
+	if (values.length != 4) {
+	    throw new IllegalArgumentException("Invalid bounding-box: " + box);
+	}
+
+	try {
+	    return new BoundingBox(Double.parseDouble(values[0].trim()),
+		    Double.parseDouble(values[1].trim()),
+		    Double.parseDouble(values[2].trim()),
+		    Double.parseDouble(values[3].trim()));
+	} catch (NumberFormatException e) {
+	    throw new IllegalArgumentException("Invalid bounding-box: " + box);
+	}
+    }
+
+    public boolean contains(double lon, double lat) {
+	return lon >= minLon && lon <= maxLon && lat >= minLat
+		&& lat <= maxLat;
+    }
+
+    @Override
+    public String toString() {
+	return minLon + "," + minLat + "," + maxLon + "," + maxLat;
+    }
+}
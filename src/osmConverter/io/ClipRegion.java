@@ -0,0 +1,10 @@
+package osmConverter.io;
+
+/**
+ * The region a {@link ClippingReader} cuts out of an osm-file.
+ */
+public interface ClipRegion {
+
+    public boolean contains(double lon, double lat);
+
+}
@@ -0,0 +1,336 @@
+package osmConverter.io;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import osmConverter.beans.LongBitSet;
+import osmConverter.data.OsmNode;
+import osmConverter.data.OsmObject;
+import osmConverter.data.OsmRelation;
+import osmConverter.data.OsmWay;
+
+/**
+ * Reads only the part of an osm-file inside of a {@link ClipRegion}, so the
+ * maps only hold the wanted area and the conversion doesn't have to deal with
+ * the rest of a big extract.
+ *
+ * Ways are kept if any of their nodes is inside, relations if any of their
+ * members is kept. The result is referentially complete: all nodes of kept
+ * ways are kept (also the ones outside) and the member-ways of kept relations
+ * are kept with all their nodes, so areas crossing the border stay closed.
+ *
+ * Files sorted by type (all nodes, then the ways, then the relations, as
+ * written by osmosis, osmium and the planet-dumps) are selected in one pass,
+ * another pass reads the selected entities. Only if kept relations have
+ * member-ways outside, they are read in a pass of their own. In unsorted
+ * files the ways and relations are selected again in two more passes, once
+ * all nodes inside are known. The selection is remembered, so reading the
+ * same file again (e.g. by the {@link SelectiveReader}) takes only one pass.
+ */
+public class ClippingReader implements IOsmReader, IsLogging {
+
+    Logger logger;
+
+    private final IOsmReader reader;
+    private final ClipRegion region;
+
+    private final LongBitSet insideNodes = new LongBitSet();
+    private final LongBitSet wantedNodes = new LongBitSet();
+    private final LongBitSet wantedWays = new LongBitSet();
+    private final LongBitSet missingWays = new LongBitSet();
+    private final LongBitSet wantedRelations = new LongBitSet();
+
+    /**
+     * The file the selection was made for.
+     */
+    private String selectedFile = null;
+
+    private IngestionFilter filter = null;
+
+    /**
+     * @param reader
+     *            The reader doing the actual work.
+     */
+    public ClippingReader(IOsmReader reader, ClipRegion region) {
+	logger = Logger.getLogger("defaultLog");
+
+	this.reader = reader;
+	this.region = region;
+    }
+
+    public void parseFile(String filename) throws Exception {
+	if (!filename.equals(selectedFile)) {
+	    select(filename);
+	}
+
+	reader.setFilter(new ClippedPass());
+	reader.parseFile(filename);
+	reader.setFilter(null);
+    }
+
+    /**
+     * The filter is applied on top of the clipping.
+     */
+    public void setFilter(IngestionFilter filter) {
+	this.filter = filter;
+    }
+
+    public void setTagFilter(TagFilter tagFilter) {
+	reader.setTagFilter(tagFilter);
+    }
+
+    private void select(String filename) throws Exception {
+	selectedFile = null;
+
+	// pass 1: the nodes inside of the region, ways with nodes inside and
+	// relations with kept members
+
+	SelectionPass selection = new SelectionPass(true, true, true);
+	reader.setFilter(selection);
+	reader.parseFile(filename);
+
+	if (!selection.isSorted()) {
+	    // ways and relations may reference entities after them
+	    logInfo("Clipping: " + filename
+		    + " isn't sorted by type, selecting the ways and relations"
+		    + " in two more passes.");
+	    wantedNodes.clear();
+	    wantedWays.clear();
+	    missingWays.clear();
+	    wantedRelations.clear();
+
+	    reader.setFilter(new SelectionPass(false, true, false));
+	    reader.parseFile(filename);
+	    reader.setFilter(new SelectionPass(false, false, true));
+	    reader.parseFile(filename);
+	}
+
+	// member-ways of the kept relations which are not kept yet
+
+	if (missingWays.size() > 0) {
+	    logInfo("Clipping: " + missingWays.size()
+		    + " member-ways of relations are outside, reading them.");
+	    reader.setFilter(new MissingWayPass());
+	    reader.parseFile(filename);
+	}
+
+	reader.setFilter(null);
+	selectedFile = filename;
+
+	logInfo("Clipping to " + region + ": " + insideNodes.size()
+		+ " nodes inside, keeping " + wantedNodes.size()
+		+ " referenced nodes, " + wantedWays.size() + " ways and "
+		+ wantedRelations.size() + " relations.");
+    }
+
+    private void markNodes(OsmWay way) {
+	for (long node : way.getNodes()) {
+	    wantedNodes.add(node);
+	}
+    }
+
+    private boolean isInside(OsmWay way) {
+	for (long node : way.getNodes()) {
+	    if (insideNodes.contains(node)) {
+		return true;
+	    }
+	}
+	return false;
+    }
+
+    /**
+     * Relations are only checked against relations before them in the file,
+     * nested relations referencing later ones are not followed.
+     */
+    private boolean isInside(OsmRelation relation) {
+	if (relation.getMembers() == null) {
+	    return false;
+	}
+
+	for (OsmObject member : relation.getMembers()) {
+	    if (member instanceof OsmNode) {
+		if (insideNodes.contains(member.getId())) {
+		    return true;
+		}
+	    } else if (member instanceof OsmWay) {
+		if (wantedWays.contains(member.getId())) {
+		    return true;
+		}
+	    } else if (wantedRelations.contains(member.getId())) {
+		return true;
+	    }
+	}
+	return false;
+    }
+
+    @Override
+    public void logInfo(String message) {
+	logger.log(Level.INFO, message);
+    }
+
+    @Override
+    public void logWarning(String message) {
+	logger.log(Level.WARNING, message);
+    }
+
+    @Override
+    public void logError(String message) {
+	logger.log(Level.SEVERE, message);
+    }
+
+    /**
+     * Selects the nodes inside of the region, the ways with nodes inside and
+     * the relations with kept members, of the types it reads. Notices if an
+     * entity comes after one of a later type, then the ways and relations
+     * may have been checked before all nodes and ways they reference.
+     */
+    private class SelectionPass implements IngestionFilter {
+
+	private final static int NODE = 0;
+	private final static int WAY = 1;
+	private final static int RELATION = 2;
+
+	private final boolean nodes;
+	private final boolean ways;
+	private final boolean relations;
+
+	private int lastType = NODE;
+	private boolean sorted = true;
+
+	SelectionPass(boolean nodes, boolean ways, boolean relations) {
+	    this.nodes = nodes;
+	    this.ways = ways;
+	    this.relations = relations;
+	}
+
+	/**
+	 * @return false if an entity came after one of a later type.
+	 */
+	boolean isSorted() {
+	    return sorted;
+	}
+
+	private void passed(int type) {
+	    if (type < lastType) {
+		sorted = false;
+	    }
+	    lastType = type;
+	}
+
+	public boolean readsNodes() {
+	    return nodes;
+	}
+
+	public boolean readsWays() {
+	    return ways;
+	}
+
+	public boolean readsRelations() {
+	    return relations;
+	}
+
+	public boolean acceptNode(OsmNode node) {
+	    passed(NODE);
+	    if (region.contains(node.getLon(), node.getLat())) {
+		insideNodes.add(node.getId());
+	    }
+	    return false;
+	}
+
+	public boolean acceptWay(OsmWay way) {
+	    passed(WAY);
+	    if (isInside(way)) {
+		wantedWays.add(way.getId());
+		markNodes(way);
+	    }
+	    return false;
+	}
+
+	public boolean acceptRelation(OsmRelation relation) {
+	    passed(RELATION);
+	    if (!isInside(relation)) {
+		return false;
+	    }
+
+	    wantedRelations.add(relation.getId());
+	    for (OsmObject member : relation.getMembers()) {
+		if (member instanceof OsmNode) {
+		    wantedNodes.add(member.getId());
+		} else if (member instanceof OsmWay
+			&& !wantedWays.contains(member.getId())) {
+		    missingWays.add(member.getId());
+		}
+	    }
+	    return false;
+	}
+    }
+
+    private class MissingWayPass implements IngestionFilter {
+
+	public boolean readsNodes() {
+	    return false;
+	}
+
+	public boolean readsWays() {
+	    return true;
+	}
+
+	public boolean readsRelations() {
+	    return false;
+	}
+
+	public boolean acceptNode(OsmNode node) {
+	    return false;
+	}
+
+	public boolean acceptWay(OsmWay way) {
+	    if (missingWays.contains(way.getId())) {
+		wantedWays.add(way.getId());
+		markNodes(way);
+	    }
+	    return false;
+	}
+
+	public boolean acceptRelation(OsmRelation relation) {
+	    return false;
+	}
+    }
+
+    /**
+     * Keeps the selected entities. Nodes inside of the region are also kept
+     * if they aren't referenced but have tags (places, POIs).
+     */
+    private class ClippedPass implements IngestionFilter {
+
+	public boolean readsNodes() {
+	    return filter == null || filter.readsNodes();
+	}
+
+	public boolean readsWays() {
+	    return filter == null || filter.readsWays();
+	}
+
+	public boolean readsRelations() {
+	    return filter == null || filter.readsRelations();
+	}
+
+	public boolean acceptNode(OsmNode node) {
+	    if (!wantedNodes.contains(node.getId())
+		    && (node.getTags().isEmpty() || !insideNodes.contains(node
+			    .getId()))) {
+		return false;
+	    }
+	    return filter == null || filter.acceptNode(node);
+	}
+
+	public boolean acceptWay(OsmWay way) {
+	    return wantedWays.contains(way.getId())
+		    && (filter == null || filter.acceptWay(way));
+	}
+
+	public boolean acceptRelation(OsmRelation relation) {
+	    return wantedRelations.contains(relation.getId())
+		    && (filter == null || filter.acceptRelation(relation));
+	}
+    }
+}
@@ -0,0 +1,27 @@
+package osmConverter.io;
+
+/**
+ * Common interface of all readers which get the entities of an osm-file into
+ * the program. Every reader fills the node-, way- and relation-maps it was
+ * created with. A reader can parse several files (or the same file several
+ * times) one after another.
+ */
+public interface IOsmReader {
+
+    public void parseFile(String filename) throws Exception;
+
+    /**
+     * @param filter
+     *            Decides which entities are kept by the following calls of
+     *            {@link #parseFile(String)}. null keeps everything.
+     */
+    public void setFilter(IngestionFilter filter);
+
+    /**
+     * @param tagFilter
+     *            Decides which tags are kept by the following calls of
+     *            {@link #parseFile(String)}. null keeps all tags.
+     */
+    public void setTagFilter(TagFilter tagFilter);
+
+}
@@ -0,0 +1,26 @@
+package osmConverter.io;
+
+import osmConverter.data.OsmNode;
+import osmConverter.data.OsmRelation;
+import osmConverter.data.OsmWay;
+
+/**
+ * Decides which entities a reader keeps. Entities which are not accepted are
+ * dropped right after they have been read, entity-types which are not read
+ * at all are skipped as cheap as the format allows.
+ */
+public interface IngestionFilter {
+
+    public boolean readsNodes();
+
+    public boolean readsWays();
+
+    public boolean readsRelations();
+
+    public boolean acceptNode(OsmNode node);
+
+    public boolean acceptWay(OsmWay way);
+
+    public boolean acceptRelation(OsmRelation relation);
+
+}
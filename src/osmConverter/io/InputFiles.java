@@ -0,0 +1,79 @@
+package osmConverter.io;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+
+/**
+ * Opens input-files, compressed ones (.gz, .bz2) are decompressed while they
+ * are read. The decompression runs in a background thread (see
+ * {@link BackgroundInputStream}), so it overlaps with parsing.
+ */
+public class InputFiles {
+
+    private final static int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Bytes at the start of a bzip2-file searched for a second stream.
+     */
+    private final static int PROBE_SIZE = 2 * 1024 * 1024;
+
+    /**
+     * @param threads
+     *            Number of threads decompressing a bzip2-file made of several
+     *            streams (see {@link ParallelBzip2InputStream}).
+     */
+    public static InputStream open(String filename, int threads)
+	    throws IOException {
+	String name = filename.toLowerCase();
+	InputStream file = new BufferedInputStream(
+		new FileInputStream(filename), BUFFER_SIZE);
+
+	try {
+	    if (name.endsWith(".gz")) {
+		return new BackgroundInputStream(new GZIPInputStream(file,
+			BUFFER_SIZE), "gzip: " + filename);
+	    } else if (name.endsWith(".bz2")) {
+		return new BackgroundInputStream(openBzip2(file, threads),
+			"bzip2: " + filename);
+	    }
+	} catch (IOException e) {
+	    file.close();
+	    throw e;
+	}
+	return file;
+    }
+
+    /**
+     * @return true for the file-endings of compressed files.
+     */
+    public static boolean isCompressed(String filename) {
+	String name = filename.toLowerCase();
+	return name.endsWith(".gz") || name.endsWith(".bz2");
+    }
+
+    private static InputStream openBzip2(InputStream file, int threads)
+	    throws IOException {
+	if (threads > 1) {
+	    byte[] start = new byte[PROBE_SIZE];
+	    int length = 0;
+	    int read;
+
+	    file.mark(PROBE_SIZE);
+	    while (length < PROBE_SIZE
+		    && (read = file.read(start, length, PROBE_SIZE - length)) > 0) {
+		length += read;
+	    }
+	    file.reset();
+
+	    if (ParallelBzip2InputStream.isMultiStream(start, length)) {
+		return new ParallelBzip2InputStream(file, threads);
+	    }
+	}
+	return new BZip2CompressorInputStream(file, true);
+    }
+}
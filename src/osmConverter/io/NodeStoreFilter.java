@@ -0,0 +1,55 @@
+package osmConverter.io;
+
+import osmConverter.beans.NodeStore;
+import osmConverter.data.OsmNode;
+import osmConverter.data.OsmRelation;
+import osmConverter.data.OsmWay;
+
+/**
+ * Puts the coordinates of all accepted nodes into a {@link NodeStore}. Only
+ * nodes with tags (POIs, places, junctions ...) are kept as objects, the
+ * coordinates of all other nodes are only available from the store.
+ */
+public class NodeStoreFilter implements IngestionFilter {
+
+    private final NodeStore store;
+    private final IngestionFilter filter;
+
+    /**
+     * @param filter
+     *            Filter deciding about the entities before, may be null.
+     */
+    public NodeStoreFilter(NodeStore store, IngestionFilter filter) {
+	this.store = store;
+	this.filter = filter;
+    }
+
+    public boolean readsNodes() {
+	return filter == null || filter.readsNodes();
+    }
+
+    public boolean readsWays() {
+	return filter == null || filter.readsWays();
+    }
+
+    public boolean readsRelations() {
+	return filter == null || filter.readsRelations();
+    }
+
+    public boolean acceptNode(OsmNode node) {
+	if (filter != null && !filter.acceptNode(node)) {
+	    return false;
+	}
+
+	store.put(node.getId(), node.getLon(), node.getLat());
+	return !node.getTags().isEmpty();
+    }
+
+    public boolean acceptWay(OsmWay way) {
+	return filter == null || filter.acceptWay(way);
+    }
+
+    public boolean acceptRelation(OsmRelation relation) {
+	return filter == null || filter.acceptRelation(relation);
+    }
+}
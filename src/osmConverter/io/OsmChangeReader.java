@@ -0,0 +1,140 @@
+package osmConverter.io;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+
+import osmConverter.beans.LongMap;
+import osmConverter.data.OsmNode;
+import osmConverter.data.OsmRelation;
+import osmConverter.data.OsmWay;
+
+/**
+ * Applies an OsmChange-file (.osc, e.g. the minutely, hourly or daily diffs
+ * of OpenStreetMap) to maps which were filled by another reader before, so
+ * they can be converted as a whole afterwards. The
+ * entities within create- and modify-blocks replace the old ones with the
+ * same id, the entities within delete-blocks are removed. The maps have to
+ * hold the whole file, a changed way may reference any node of it.
+ *
+ * The file is always read sequentially with the SAX-parser, as the order of
+ * the actions matters.
+ */
+public class OsmChangeReader extends OsmReader {
+
+    private final static String CREATE = "create";
+    private final static String MODIFY = "modify";
+    private final static String DELETE = "delete";
+
+    private final LongMap<OsmNode> nodes;
+    private final LongMap<OsmWay> ways;
+    private final LongMap<OsmRelation> relations;
+
+    private String action = null;
+
+    private long created = 0;
+    private long modified = 0;
+    private long deleted = 0;
+
+    public OsmChangeReader(final LongMap<OsmNode> nodes,
+	    final LongMap<OsmWay> ways, LongMap<OsmRelation> osmRelations)
+	    throws Exception {
+	super(nodes, ways, osmRelations, 1);
+
+	this.nodes = nodes;
+	this.ways = ways;
+	this.relations = osmRelations;
+    }
+
+    @Override
+    public void startDocument() throws SAXException {
+	super.startDocument();
+	created = 0;
+	modified = 0;
+	deleted = 0;
+    }
+
+    @Override
+    public void endDocument() throws SAXException {
+	super.endDocument();
+	logInfo("Applied change-file: " + created + " created, "
+		+ modified + " modified and " + deleted + " deleted entities.");
+    }
+
+    @Override
+    public void startElement(String namespaceURI, String localName,
+	    String type, Attributes atts) {
+
+	if (CREATE.equals(type) || MODIFY.equals(type) || DELETE.equals(type)) {
+	    action = type;
+	    return;
+	}
+
+	if (!"node".equals(type) && !"way".equals(type)
+		&& !"relation".equals(type)) {
+	    super.startElement(namespaceURI, localName, type, atts);
+	    return;
+	}
+
+	if (DELETE.equals(action)) {
+	    // deleted entities may come without coordinates or tags
+	    delete(type, Long.parseLong(atts.getValue("id")));
+	    skipEntity(type);
+	    return;
+	} else if (CREATE.equals(action)) {
+	    created++;
+	} else {
+	    modified++;
+	}
+	super.startElement(namespaceURI, localName, type, atts);
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) {
+	if (CREATE.equals(qName) || MODIFY.equals(qName)
+		|| DELETE.equals(qName)) {
+	    action = null;
+	} else {
+	    super.endElement(uri, localName, qName);
+	}
+    }
+
+    private void delete(String type, long id) {
+	if ("node".equals(type)) {
+	    nodes.remove(id);
+	} else if ("way".equals(type)) {
+	    ways.remove(id);
+	} else {
+	    relations.remove(id);
+	}
+	deleted++;
+    }
+
+    /*
+     * If the filter doesn't accept the new version of an entity (e.g. a node
+     * which lost its tags, see NodeStoreFilter) the old one is removed.
+     */
+
+    @Override
+    void addNode(OsmNode node) {
+	super.addNode(node);
+	if (nodes.get(node.getId()) != node) {
+	    nodes.remove(node.getId());
+	}
+    }
+
+    @Override
+    void addWay(OsmWay way) {
+	super.addWay(way);
+	if (ways.get(way.getId()) != way) {
+	    ways.remove(way.getId());
+	}
+    }
+
+    @Override
+    void addRelation(OsmRelation relation) {
+	super.addRelation(relation);
+	if (relations.get(relation.getId()) != relation) {
+	    relations.remove(relation.getId());
+	}
+    }
+}
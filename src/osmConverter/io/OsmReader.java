@@ -5,7 +5,20 @@ package osmConverter.io;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Map;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -14,19 +27,29 @@ import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 
 import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
+import osmConverter.beans.LongMap;
 import osmConverter.data.OsmNode;
+import osmConverter.data.OsmObject;
 import osmConverter.data.OsmRelation;
 import osmConverter.data.OsmWay;
 
 /**
  * This reads an .osm-File and gets information into the program.
+ *
+ * If the {@link OsmScanner} is used with more than one thread, an
+ * uncompressed file is memory-mapped and split into chunks, which are scanned
+ * concurrently and merged in the order of the file. Every worker finds the
+ * start and end of its chunk itself, near the offsets the file is split at.
+ * The SAX-parser always reads the whole file in the calling thread.
  * @author Tom Mller
  * @version 25.09.2010
  */
-public class OsmReader extends DefaultHandler implements IsLogging {
+public class OsmReader extends DefaultHandler implements IOsmReader,
+	IsLogging {
 
     Logger logger;
 
@@ -34,25 +57,61 @@ public class OsmReader extends DefaultHandler implements IsLogging {
     private final static String NODE = "node";
     private final static String REL = "relation";
 
+    /**
+     * Size of the chunks a file is split into for parallel parsing. Every
+     * chunk starts and ends at the first node, way or relation after these
+     * offsets.
+     */
+    private final static int CHUNK_SIZE = 32 * 1024 * 1024;
+
+    /**
+     * Number of chunks per thread which may be parsed but not yet merged.
+     */
+    private final static int CHUNKS_PER_THREAD = 2;
+
     private String currentTag = "";
 
-    private final Map<String, OsmNode> nodes;
-    private final Map<String, OsmWay> ways;
-    private final Map<String, OsmRelation> relations;
+    private final LongMap<OsmNode> nodes;
+    private final LongMap<OsmWay> ways;
+    private final LongMap<OsmRelation> relations;
 
     private OsmNode lastNode = null;
     private OsmWay lastWay = null;
     private OsmRelation lastRelation = null;
 
-    public OsmReader(final Map<String, OsmNode> nodes,
-	    final Map<String, OsmWay> ways,
-	    Map<String, OsmRelation> osmRelations) throws Exception,
+    private final int threads;
+
+    private boolean scanner = false;
+
+    private IngestionFilter filter = null;
+    private TagFilter tagFilter = null;
+
+    private long keptTags = 0;
+    private long droppedTags = 0;
+
+    public OsmReader(final LongMap<OsmNode> nodes,
+	    final LongMap<OsmWay> ways,
+	    LongMap<OsmRelation> osmRelations) throws Exception,
+	    SAXException {
+	this(nodes, ways, osmRelations, 1);
+    }
+
+    /**
+     * @param threads
+     *            Number of threads scanning uncompressed files in chunks (only
+     *            with the scanner) or decompressing .bz2-files made of
+     *            several streams.
+     */
+    public OsmReader(final LongMap<OsmNode> nodes,
+	    final LongMap<OsmWay> ways,
+	    LongMap<OsmRelation> osmRelations, int threads) throws Exception,
 	    SAXException {
 	logger = Logger.getLogger("defaultLog");
 
 	this.nodes = nodes;
 	this.ways = ways;
 	this.relations = osmRelations;
+	this.threads = Math.max(1, threads);
     }
 
     private int counter = 0;
@@ -66,6 +125,7 @@ public class OsmReader extends DefaultHandler implements IsLogging {
     @Override
     public void endDocument() throws SAXException {
 	logInfo("Ended parsing .osm-File!");
+	logTagStatistics();
 	counter = 0;
 	secCounter = 0;
     }
@@ -76,76 +136,177 @@ public class OsmReader extends DefaultHandler implements IsLogging {
 
 	logOutput();
 
-	if ("node".equals(type)) {
-	    String id = atts.getValue("id");
-	    double lat = Double.parseDouble(atts.getValue("lat"));
-	    double lon = Double.parseDouble(atts.getValue("lon"));
-
-	    lastNode = new OsmNode(id, lon, lat);
-	    currentTag = NODE;
-	} else if ("way".equals(type)) {
-	    this.lastWay = new OsmWay(atts.getValue("id"));
-
-	    currentTag = WAY;
+	if (NODE.equals(type)) {
+	    if (readsNodes()) {
+		startNode(Long.parseLong(atts.getValue("id")),
+			Double.parseDouble(atts.getValue("lon")),
+			Double.parseDouble(atts.getValue("lat")));
+	    } else {
+		skipEntity(NODE);
+	    }
+	} else if (WAY.equals(type)) {
+	    if (readsWays()) {
+		startWay(Long.parseLong(atts.getValue("id")));
+	    } else {
+		skipEntity(WAY);
+	    }
 	} else if ("nd".equals(type)) {
 	    if (this.lastWay != null) {
-		this.lastWay.addNode(new OsmNode(atts.getValue("ref")));
+		addNodeRef(Long.parseLong(atts.getValue("ref")));
 	    }
 	} else if ("tag".equals(type)) {
-	    if (currentTag.equals(WAY)) {
-		if (this.lastWay != null) {
-		    this.lastWay.addTag(atts.getValue("k"), atts.getValue("v"));
-		}
-	    } else if (currentTag.equals(NODE)) {
-		if (this.lastNode != null) {
-		    this.lastNode
-			    .addTag(atts.getValue("k"), atts.getValue("v"));
-		}
-	    } else if (currentTag.equals(REL)) {
-		if (this.lastRelation != null) {
-		    this.lastRelation.addTag(atts.getValue("k"),
-			    atts.getValue("v"));
-		}
+	    String key = atts.getValue("k");
+	    if (wantsTag(key)) {
+		addTag(key, atts.getValue("v"));
+	    }
+	} else if (REL.equals(type)) {
+	    if (readsRelations()) {
+		startRelation(Long.parseLong(atts.getValue("id")));
+	    } else {
+		skipEntity(REL);
 	    }
-	} else if ("relation".equals(type)) {
-	    String id = atts.getValue("id");
-	    lastRelation = new OsmRelation(id);
-
-	    currentTag = REL;
 	} else if ("member".equals(type)) {
-	    if (atts.getValue("type").equals(WAY)) {
-		
-		OsmWay newWay = new OsmWay(atts.getValue("ref"));
-		
-		if (atts.getValue("role") != null) {
-		    newWay.setRole(atts.getValue("role"));
-		}
-		
-		lastRelation.addMember(newWay);
-	    } else if (atts.getValue("type").equals(NODE)) {
-		
-		OsmNode newNode = new OsmNode(atts.getValue("ref"));
-		
-		if (atts.getValue("role") != null) {
-		    newNode.setRole(atts.getValue("role"));
-		}
-		
-		lastRelation.addMember(newNode);
-	    } else if (atts.getValue("type").equals(REL)) {
-		
-		OsmRelation newRel = new OsmRelation(atts.getValue("ref"));
-		
-		if (atts.getValue("role") != null) {
-		    newRel.setRole(atts.getValue("role"));
-		}
-		
-		lastRelation.addMember(newRel);
+	    if (lastRelation != null) {
+		addMember(atts.getValue("type"),
+			Long.parseLong(atts.getValue("ref")),
+			atts.getValue("role"));
 	    }
 	}
 
     }
 
-    private void logOutput() {
+    /*
+     * The callbacks for the elements of an .osm-file. They are called by the
+     * SAX-methods of this class and directly by the OsmScanner.
+     */
+
+    boolean readsNodes() {
+	return filter == null || filter.readsNodes();
+    }
+
+    boolean readsWays() {
+	return filter == null || filter.readsWays();
+    }
+
+    boolean readsRelations() {
+	return filter == null || filter.readsRelations();
+    }
+
+    /**
+     * Starts an entity which is not read, its content is ignored.
+     */
+    void skipEntity(String type) {
+	currentTag = type;
+	if (NODE.equals(type)) {
+	    lastNode = null;
+	} else if (WAY.equals(type)) {
+	    lastWay = null;
+	} else {
+	    lastRelation = null;
+	}
+    }
+
+    void startNode(long id, double lon, double lat) {
+	currentTag = NODE;
+	lastNode = new OsmNode(id, lon, lat);
+    }
+
+    void startWay(long id) {
+	currentTag = WAY;
+	lastWay = new OsmWay(id);
+    }
+
+    void addNodeRef(long ref) {
+	if (lastWay != null) {
+	    lastWay.addNode(ref);
+	}
+    }
+
+    /**
+     * @return true if the tag belongs to an entity which is read and the
+     *         tag-filter keeps its key, only then the value is needed.
+     */
+    boolean wantsTag(String key) {
+	if (currentTag.equals(WAY)) {
+	    return lastWay != null && keepsTag(key);
+	} else if (currentTag.equals(NODE)) {
+	    return lastNode != null && keepsTag(key);
+	} else if (currentTag.equals(REL)) {
+	    return lastRelation != null && keepsTag(key);
+	}
+	return false;
+    }
+
+    /**
+     * Adds a tag to the current entity, only called if
+     * {@link #wantsTag(String)} was true.
+     */
+    void addTag(String key, String value) {
+	if (currentTag.equals(WAY)) {
+	    lastWay.addTag(key, value);
+	} else if (currentTag.equals(NODE)) {
+	    lastNode.addTag(key, value);
+	} else {
+	    lastRelation.addTag(key, value);
+	}
+    }
+
+    void startRelation(long id) {
+	currentTag = REL;
+	lastRelation = new OsmRelation(id);
+    }
+
+    /**
+     * @param type
+     *            "node", "way" or "relation"
+     * @param role
+     *            The role, may be null.
+     */
+    void addMember(String type, long ref, String role) {
+	OsmObject member;
+
+	if (lastRelation == null) {
+	    return;
+	} else if (type.equals(WAY)) {
+	    member = new OsmWay(ref);
+	} else if (type.equals(NODE)) {
+	    member = new OsmNode(ref);
+	} else if (type.equals(REL)) {
+	    member = new OsmRelation(ref);
+	} else {
+	    return;
+	}
+
+	if (role != null) {
+	    member.setRole(role);
+	}
+	lastRelation.addMember(member);
+    }
+
+    /**
+     * Asks the tag-filter and counts the result. The value of dropped tags is
+     * never read.
+     */
+    private boolean keepsTag(String key) {
+	if (tagFilter == null || tagFilter.keeps(key)) {
+	    keptTags++;
+	    return true;
+	}
+	droppedTags++;
+	return false;
+    }
+
+    private void logTagStatistics() {
+	if (tagFilter != null) {
+	    tagFilter.addStatistics(keptTags, droppedTags);
+	    logInfo("Tag-filter kept " + keptTags + " tags and dropped "
+		    + droppedTags + " tags.");
+	}
+	keptTags = 0;
+	droppedTags = 0;
+    }
+
+    void logOutput() {
 	if (counter % (Math.pow(2., secCounter)) == 0) {
 	    secCounter++;
 	    logInfo("Read: " + counter + " tags.");
@@ -157,15 +318,63 @@ public class OsmReader extends DefaultHandler implements IsLogging {
     @Override
     public void endElement(String uri, String localName, String qName) {
 	if (WAY.equals(qName)) {
-	    this.ways.put(lastWay.getId(), lastWay);
-	    this.lastWay = null;
+	    endWay();
 	} else if (NODE.equals(qName)) {
-	    this.nodes.put(lastNode.getId(), lastNode);
-	    lastNode = null;
+	    endNode();
 	} else if (REL.equals(qName)) {
-	    this.relations.put(lastRelation.getId(), lastRelation);
-	    lastNode = null;
+	    endRelation();
+	}
+    }
+
+    void endNode() {
+	if (lastNode != null) {
+	    addNode(lastNode);
 	}
+	lastNode = null;
+    }
+
+    void endWay() {
+	if (lastWay != null) {
+	    addWay(lastWay);
+	}
+	this.lastWay = null;
+    }
+
+    void endRelation() {
+	if (lastRelation != null) {
+	    addRelation(lastRelation);
+	}
+	lastRelation = null;
+    }
+
+    /*
+     * Put the finished entities into the maps if the filter accepts them.
+     */
+
+    void addNode(OsmNode node) {
+	if (filter == null || filter.acceptNode(node)) {
+	    this.nodes.put(node.getId(), node);
+	}
+    }
+
+    void addWay(OsmWay way) {
+	if (filter == null || filter.acceptWay(way)) {
+	    this.ways.put(way.getId(), way);
+	}
+    }
+
+    void addRelation(OsmRelation relation) {
+	if (filter == null || filter.acceptRelation(relation)) {
+	    this.relations.put(relation.getId(), relation);
+	}
+    }
+
+    public void setFilter(IngestionFilter filter) {
+	this.filter = filter;
+    }
+
+    public void setTagFilter(TagFilter tagFilter) {
+	this.tagFilter = tagFilter;
     }
 
     @Override
@@ -183,11 +392,346 @@ public class OsmReader extends DefaultHandler implements IsLogging {
 	logger.log(Level.SEVERE, message);
     }
 
+    /**
+     * @param scanner
+     *            true to read the files with the {@link OsmScanner} instead of
+     *            the SAX-parser.
+     */
+    public void setScanner(boolean scanner) {
+	this.scanner = scanner;
+    }
+
+    /**
+     * Reads an .osm-file, .gz- and .bz2-compressed files are decompressed
+     * while reading (see {@link InputFiles}). Uncompressed files are scanned
+     * in chunks if the scanner is used with more than one thread.
+     */
     public void parseFile(String filename) throws ParserConfigurationException, SAXException, IOException {
+	if (scanner && threads > 1 && !InputFiles.isCompressed(filename)) {
+	    startDocument();
+	    parseParallel(filename);
+	    endDocument();
+	    return;
+	}
+
 	// read the file
-	SAXParserFactory factory = SAXParserFactory.newInstance();
-	SAXParser saxParser = factory.newSAXParser();
-	saxParser.parse(new File(filename), this);
+	InputStream in = InputFiles.open(filename, threads);
+	try {
+	    if (scanner) {
+		startDocument();
+		new OsmScanner(in, this).scan();
+		endDocument();
+	    } else {
+		SAXParserFactory factory = SAXParserFactory.newInstance();
+		SAXParser saxParser = factory.newSAXParser();
+
+		InputSource source = new InputSource(in);
+		source.setSystemId(new File(filename).toURI().toString());
+		saxParser.parse(source, this);
+	    }
+	} finally {
+	    in.close();
+	}
+    }
+
+    /**
+     * Maps the file into memory and lets the workers scan it in chunks. The
+     * chunks are merged in the order of the file, so the maps are filled
+     * exactly like by the sequential reader.
+     *
+     * The workers can't see whether the offsets they start searching at are
+     * within a comment or CDATA-section which started before. Then the chunk
+     * before ends within it, and scanning it fails with an unexpected end of
+     * the file. The rest of the file is scanned sequentially from the end of
+     * the last merged chunk in this case.
+     */
+    private void parseParallel(String filename) throws IOException {
+	RandomAccessFile file = new RandomAccessFile(filename, "r");
+	final FileChannel channel = file.getChannel();
+	ExecutorService executor = Executors.newFixedThreadPool(threads);
+	LinkedList<Future<ChunkReader>> pending = new LinkedList<Future<ChunkReader>>();
+
+	logInfo("Parsing chunks with " + threads + " threads.");
+
+	try {
+	    final long size = channel.size();
+	    long merged = 0;
+
+	    try {
+		for (long from = 0; from < size; from += CHUNK_SIZE) {
+		    final long start = from;
+		    final long end = Math.min(size, from + CHUNK_SIZE);
+		    pending.add(executor.submit(new Callable<ChunkReader>() {
+			@Override
+			public ChunkReader call() throws Exception {
+			    return scanChunk(channel, start, end, size);
+			}
+		    }));
+
+		    // keep the number of parsed but not merged chunks bounded
+		    if (pending.size() >= threads * CHUNKS_PER_THREAD) {
+			merged = merge(waitFor(pending.removeFirst()));
+		    }
+		}
+
+		while (!pending.isEmpty()) {
+		    merged = merge(waitFor(pending.removeFirst()));
+		}
+	    } catch (InterruptedIOException e) {
+		throw e;
+	    } catch (IOException e) {
+		logInfo("Chunk at " + merged + " couldn't be scanned ("
+			+ e.getMessage() + "), scanning the rest of "
+			+ filename + " sequentially.");
+		executor.shutdownNow();
+		channel.position(merged);
+		new OsmScanner(Channels.newInputStream(channel), this).scan();
+	    }
+	} finally {
+	    executor.shutdownNow();
+	    file.close();
+	}
+    }
+
+    /**
+     * Scans one chunk, this is called concurrently, so it must not touch the
+     * maps. The chunk starts at the first node, way or relation at or after
+     * from (the start of the file for the first chunk) and ends at the first
+     * one at or after to, the file is mapped as far as needed to find it.
+     */
+    private ChunkReader scanChunk(FileChannel channel, long from, long to,
+	    long size) throws Exception {
+	long limit = to;
+	while (true) {
+	    limit = Math.min(size, limit + CHUNK_SIZE);
+	    if (limit - from > Integer.MAX_VALUE) {
+		throw new IOException("No node, way or relation between "
+			+ from + " and " + limit);
+	    }
+
+	    ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY,
+		    from, limit - from);
+	    boolean last = limit == size;
+	    int start = from == 0 ? 0 : nextEntity(bytes, 0, last);
+	    int end = to == size ? bytes.limit() : nextEntity(bytes,
+		    (int) (to - from), last);
+	    if (start < 0 || end < 0) {
+		// not found within the mapped part
+		continue;
+	    }
+	    if (end < start) {
+		// the search from the start skipped a section containing to
+		throw new IOException("Chunk ends before its start");
+	    }
+
+	    ChunkReader reader = new ChunkReader();
+	    reader.setFilter(filter);
+	    reader.setTagFilter(tagFilter);
+	    reader.end = from + end;
+
+	    bytes.position(start);
+	    bytes.limit(end);
+	    new OsmScanner(new ByteBufferInputStream(bytes.slice()), reader)
+		    .scan();
+	    return reader;
+	}
+    }
+
+    private ChunkReader waitFor(Future<ChunkReader> future) throws IOException {
+	try {
+	    return future.get();
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new InterruptedIOException("Interrupted while parsing chunks");
+	} catch (ExecutionException e) {
+	    if (e.getCause() instanceof IOException) {
+		throw (IOException) e.getCause();
+	    }
+	    throw new RuntimeException(e.getCause());
+	}
+    }
+
+    /**
+     * Puts the entities of a scanned chunk into the maps. The filter is only
+     * asked in here, so it is never called concurrently.
+     *
+     * @return The position in the file after the chunk.
+     */
+    private long merge(ChunkReader chunk) {
+	for (OsmNode node : chunk.chunkNodes) {
+	    addNode(node);
+	}
+	for (OsmWay way : chunk.chunkWays) {
+	    addWay(way);
+	}
+	for (OsmRelation relation : chunk.chunkRelations) {
+	    addRelation(relation);
+	}
+
+	OsmReader counts = chunk;
+	keptTags += counts.keptTags;
+	droppedTags += counts.droppedTags;
+
+	// the progress is logged as if the elements were read in here
+	for (int i = 0; i < chunk.elements; i++) {
+	    logOutput();
+	}
+	return chunk.end;
+    }
+
+    /**
+     * @return The index of the first node, way or relation starting at or
+     *         after from, -1 if more bytes are needed to find it. If the
+     *         buffer reaches the end of the file (last), its limit is returned
+     *         if there is none. These elements only appear on the top level
+     *         of an .osm-file, as '<' is escaped within attribute-values and
+     *         text. Comments, CDATA-sections and processing-instructions,
+     *         which may contain anything, are skipped if they start at or
+     *         after from.
+     */
+    private static int nextEntity(ByteBuffer bytes, int from, boolean last) {
+	int limit = bytes.limit();
+	// "<![CDATA[" and "<relation" with the following character fit
+	int searched = last ? limit : limit - REL.length() - 8;
+
+	int i = from;
+	while (i < searched) {
+	    if (bytes.get(i) != '<') {
+		i++;
+		continue;
+	    }
+
+	    if (startsWith(bytes, i, "<!--")) {
+		i = indexAfter(bytes, i + 4, "-->");
+	    } else if (startsWith(bytes, i, "<![CDATA[")) {
+		i = indexAfter(bytes, i + 9, "]]>");
+	    } else if (startsWith(bytes, i, "<?")) {
+		i = indexAfter(bytes, i + 2, "?>");
+	    } else if (isEntity(bytes, i + 1, NODE)
+		    || isEntity(bytes, i + 1, WAY)
+		    || isEntity(bytes, i + 1, REL)) {
+		return i;
+	    } else {
+		i++;
+	    }
+	    if (i < 0) {
+		break;
+	    }
+	}
+	return last ? limit : -1;
+    }
+
+    private static boolean startsWith(ByteBuffer bytes, int offset,
+	    String text) {
+	if (offset + text.length() > bytes.limit()) {
+	    return false;
+	}
+	for (int i = 0; i < text.length(); i++) {
+	    if (bytes.get(offset + i) != text.charAt(i)) {
+		return false;
+	    }
+	}
+	return true;
+    }
+
+    /**
+     * @return The index after the first occurrence of the text at or after
+     *         from, -1 if there is none.
+     */
+    private static int indexAfter(ByteBuffer bytes, int from, String text) {
+	for (int i = from; i + text.length() <= bytes.limit(); i++) {
+	    if (startsWith(bytes, i, text)) {
+		return i + text.length();
+	    }
+	}
+	return -1;
+    }
+
+    /**
+     * @return true if the element-name at the offset is the given one.
+     */
+    private static boolean isEntity(ByteBuffer bytes, int offset, String name) {
+	if (offset + name.length() >= bytes.limit()
+		|| !startsWith(bytes, offset, name)) {
+	    return false;
+	}
+	byte next = bytes.get(offset + name.length());
+	return next == ' ' || next == '\t' || next == '\n' || next == '\r'
+		|| next == '>' || next == '/';
+    }
+
+    /**
+     * Reads one chunk of the file in a worker. The entities are collected in
+     * the order of the file instead of being put into the maps, the filter is
+     * only asked which entities are read at all.
+     */
+    private static class ChunkReader extends OsmReader {
+
+	final List<OsmNode> chunkNodes = new ArrayList<OsmNode>();
+	final List<OsmWay> chunkWays = new ArrayList<OsmWay>();
+	final List<OsmRelation> chunkRelations = new ArrayList<OsmRelation>();
+
+	int elements = 0;
+
+	/**
+	 * Position in the file after the chunk.
+	 */
+	long end;
+
+	ChunkReader() throws Exception {
+	    super(null, null, null, 1);
+	}
+
+	@Override
+	void addNode(OsmNode node) {
+	    chunkNodes.add(node);
+	}
+
+	@Override
+	void addWay(OsmWay way) {
+	    chunkWays.add(way);
+	}
+
+	@Override
+	void addRelation(OsmRelation relation) {
+	    chunkRelations.add(relation);
+	}
+
+	@Override
+	void logOutput() {
+	    elements++;
+	}
+    }
+
+    /**
+     * Reads a (memory-mapped) buffer.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+
+	private final ByteBuffer buffer;
+
+	ByteBufferInputStream(ByteBuffer buffer) {
+	    this.buffer = buffer;
+	}
+
+	@Override
+	public int read() {
+	    return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+	}
+
+	@Override
+	public int read(byte[] bytes, int offset, int length) {
+	    if (length == 0) {
+		return 0;
+	    }
+	    if (!buffer.hasRemaining()) {
+		return -1;
+	    }
+
+	    int count = Math.min(length, buffer.remaining());
+	    buffer.get(bytes, offset, count);
+	    return count;
+	}
     }
 
 }
@@ -0,0 +1,554 @@
+package osmConverter.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Scanner for .osm-files working directly on the bytes of the file, as
+ * replacement of the generic SAX-parser. It only knows the elements of the
+ * osm-format (node, way, nd, tag, relation, member), all others are skipped.
+ * Ids and coordinates are parsed straight from the bytes, strings are only
+ * created for tags and roles. The elements are passed to the callbacks of an
+ * {@link OsmReader}, so the result is the same as with SAX.
+ *
+ * The file has to be UTF-8 encoded, as all .osm-files are. Comments,
+ * processing-instructions, the doctype and CDATA-sections are skipped,
+ * character-references and the predefined entities in attribute-values are
+ * resolved.
+ */
+public class OsmScanner {
+
+    private final static int BUFFER_SIZE = 1024 * 1024;
+    private final static int MAX_ATTRIBUTES = 16;
+
+    private final static byte[] NODE = bytes("node");
+    private final static byte[] WAY = bytes("way");
+    private final static byte[] ND = bytes("nd");
+    private final static byte[] TAG = bytes("tag");
+    private final static byte[] RELATION = bytes("relation");
+    private final static byte[] MEMBER = bytes("member");
+
+    private final static byte[] ID = bytes("id");
+    private final static byte[] LAT = bytes("lat");
+    private final static byte[] LON = bytes("lon");
+    private final static byte[] REF = bytes("ref");
+    private final static byte[] K = bytes("k");
+    private final static byte[] V = bytes("v");
+    private final static byte[] TYPE = bytes("type");
+    private final static byte[] ROLE = bytes("role");
+
+    private final static double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4,
+	    1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+	    1e17, 1e18 };
+
+    private final InputStream in;
+    private final OsmReader reader;
+
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int position = 0;
+    private int limit = 0;
+    private boolean endOfFile = false;
+
+    /**
+     * Start and end (exclusive) of the names and values of the attributes of
+     * the current element, relative to the buffer.
+     */
+    private final int[] nameStart = new int[MAX_ATTRIBUTES];
+    private final int[] nameEnd = new int[MAX_ATTRIBUTES];
+    private final int[] valueStart = new int[MAX_ATTRIBUTES];
+    private final int[] valueEnd = new int[MAX_ATTRIBUTES];
+    private int attributes;
+
+    public OsmScanner(InputStream in, OsmReader reader) {
+	this.in = in;
+	this.reader = reader;
+    }
+
+    /**
+     * Scans the whole stream.
+     */
+    public void scan() throws IOException {
+	while (true) {
+	    int start = indexOf((byte) '<', position);
+	    if (start < 0) {
+		return;
+	    }
+	    position = start;
+
+	    if (!startsWith("<!") && !startsWith("<?")) {
+		int end = elementEnd();
+		element(position + 1, end);
+		position = end + 1;
+	    } else if (startsWith("<!--")) {
+		position = skipTo("-->");
+	    } else if (startsWith("<![CDATA[")) {
+		position = skipTo("]]>");
+	    } else if (startsWith("<?")) {
+		position = skipTo("?>");
+	    } else {
+		position = skipTo(">");
+	    }
+	}
+    }
+
+    private boolean startsWith(String prefix) throws IOException {
+	while (position + prefix.length() > limit) {
+	    if (!fill()) {
+		return false;
+	    }
+	}
+	for (int i = 0; i < prefix.length(); i++) {
+	    if (buffer[position + i] != prefix.charAt(i)) {
+		return false;
+	    }
+	}
+	return true;
+    }
+
+    /**
+     * Handles the element between start and end (the position of '>').
+     */
+    private void element(int start, int end) throws IOException {
+	if (buffer[start] == '/') {
+	    int nameEnd = nameEnd(start + 1, end);
+	    endElement(start + 1, nameEnd);
+	    return;
+	}
+
+	int nameEnd = nameEnd(start, end);
+	boolean empty = readAttributes(nameEnd, end);
+
+	reader.logOutput();
+
+	if (equals(start, nameEnd, NODE)) {
+	    if (reader.readsNodes()) {
+		reader.startNode(parseLong(ID), parseDouble(LON),
+			parseDouble(LAT));
+	    } else {
+		reader.skipEntity("node");
+	    }
+	    if (empty) {
+		reader.endNode();
+	    }
+	} else if (equals(start, nameEnd, WAY)) {
+	    if (reader.readsWays()) {
+		reader.startWay(parseLong(ID));
+	    } else {
+		reader.skipEntity("way");
+	    }
+	    if (empty) {
+		reader.endWay();
+	    }
+	} else if (equals(start, nameEnd, ND)) {
+	    reader.addNodeRef(parseLong(REF));
+	} else if (equals(start, nameEnd, TAG)) {
+	    String key = string(K);
+	    if (key != null && reader.wantsTag(key)) {
+		reader.addTag(key, string(V));
+	    }
+	} else if (equals(start, nameEnd, RELATION)) {
+	    if (reader.readsRelations()) {
+		reader.startRelation(parseLong(ID));
+	    } else {
+		reader.skipEntity("relation");
+	    }
+	    if (empty) {
+		reader.endRelation();
+	    }
+	} else if (equals(start, nameEnd, MEMBER)) {
+	    int type = attribute(TYPE);
+	    if (type < 0) {
+		throw new IOException("Member without type");
+	    }
+	    String memberType;
+	    if (equals(valueStart[type], valueEnd[type], NODE)) {
+		memberType = "node";
+	    } else if (equals(valueStart[type], valueEnd[type], WAY)) {
+		memberType = "way";
+	    } else if (equals(valueStart[type], valueEnd[type], RELATION)) {
+		memberType = "relation";
+	    } else {
+		memberType = string(TYPE);
+	    }
+	    reader.addMember(memberType, parseLong(REF), string(ROLE));
+	}
+    }
+
+    private void endElement(int start, int end) {
+	if (equals(start, end, NODE)) {
+	    reader.endNode();
+	} else if (equals(start, end, WAY)) {
+	    reader.endWay();
+	} else if (equals(start, end, RELATION)) {
+	    reader.endRelation();
+	}
+    }
+
+    /**
+     * Finds the attributes between the name of the element and its end.
+     *
+     * @return true if the element is empty ("/>").
+     */
+    private boolean readAttributes(int from, int end) throws IOException {
+	attributes = 0;
+	int i = from;
+
+	while (true) {
+	    while (i < end && isWhitespace(buffer[i])) {
+		i++;
+	    }
+	    if (i >= end) {
+		return false;
+	    }
+	    if (buffer[i] == '/') {
+		return true;
+	    }
+
+	    int start = i;
+	    while (i < end && buffer[i] != '=' && !isWhitespace(buffer[i])) {
+		i++;
+	    }
+	    int nameEnd = i;
+	    while (i < end && isWhitespace(buffer[i])) {
+		i++;
+	    }
+	    if (i >= end || buffer[i] != '=') {
+		throw new IOException("Malformed attribute in element: "
+			+ decode(from, end));
+	    }
+	    i++;
+	    while (i < end && isWhitespace(buffer[i])) {
+		i++;
+	    }
+	    if (i >= end || (buffer[i] != '"' && buffer[i] != '\'')) {
+		throw new IOException("Malformed attribute in element: "
+			+ decode(from, end));
+	    }
+
+	    byte quote = buffer[i++];
+	    int value = i;
+	    while (i < end && buffer[i] != quote) {
+		i++;
+	    }
+
+	    if (attributes < MAX_ATTRIBUTES) {
+		this.nameStart[attributes] = start;
+		this.nameEnd[attributes] = nameEnd;
+		this.valueStart[attributes] = value;
+		this.valueEnd[attributes] = i;
+		attributes++;
+	    }
+	    i++;
+	}
+    }
+
+    /**
+     * @return The index of the attribute or -1.
+     */
+    private int attribute(byte[] name) {
+	for (int i = 0; i < attributes; i++) {
+	    if (equals(nameStart[i], nameEnd[i], name)) {
+		return i;
+	    }
+	}
+	return -1;
+    }
+
+    private long parseLong(byte[] name) throws IOException {
+	int index = attribute(name);
+	if (index < 0) {
+	    throw new IOException("Missing attribute " + new String(name));
+	}
+
+	int i = valueStart[index];
+	int end = valueEnd[index];
+	boolean negative = false;
+
+	if (i < end && buffer[i] == '-') {
+	    negative = true;
+	    i++;
+	}
+	if (i == end || end - i > 18) {
+	    return Long.parseLong(decode(valueStart[index], end));
+	}
+
+	long result = 0;
+	for (; i < end; i++) {
+	    int digit = buffer[i] - '0';
+	    if (digit < 0 || digit > 9) {
+		return Long.parseLong(decode(valueStart[index], end));
+	    }
+	    result = result * 10 + digit;
+	}
+	return negative ? -result : result;
+    }
+
+    /**
+     * Parses decimal numbers as they are used for coordinates. The digits are
+     * collected in a long and divided by a power of ten once, both are exact,
+     * so the result is the same as the one of {@link Double#parseDouble}.
+     * Anything else (exponents, too many digits ...) is left to
+     * parseDouble.
+     */
+    private double parseDouble(byte[] name) throws IOException {
+	int index = attribute(name);
+	if (index < 0) {
+	    throw new IOException("Missing attribute " + new String(name));
+	}
+
+	int i = valueStart[index];
+	int end = valueEnd[index];
+	boolean negative = false;
+
+	if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+	    negative = buffer[i] == '-';
+	    i++;
+	}
+
+	long digits = 0;
+	int count = 0;
+	int decimals = -1;
+
+	for (; i < end; i++) {
+	    byte b = buffer[i];
+	    if (b >= '0' && b <= '9') {
+		digits = digits * 10 + (b - '0');
+		count++;
+		if (decimals >= 0) {
+		    decimals++;
+		}
+	    } else if (b == '.' && decimals < 0) {
+		decimals = 0;
+	    } else {
+		count = Integer.MAX_VALUE;
+		break;
+	    }
+	}
+
+	// up to 15 digits are exact in a double
+	if (count == 0 || count > 15) {
+	    return Double.parseDouble(decode(valueStart[index], end).trim());
+	}
+
+	double result = decimals > 0 ? digits / POWERS_OF_TEN[decimals]
+		: digits;
+	return negative ? -result : result;
+    }
+
+    /**
+     * @return The value of the attribute or null if it is missing.
+     */
+    private String string(byte[] name) {
+	int index = attribute(name);
+	if (index < 0) {
+	    return null;
+	}
+
+	int start = valueStart[index];
+	int end = valueEnd[index];
+
+	for (int i = start; i < end; i++) {
+	    byte b = buffer[i];
+	    if (b == '&' || b == '\t' || b == '\n' || b == '\r') {
+		return normalize(decode(start, end));
+	    }
+	}
+	return decode(start, end);
+    }
+
+    /**
+     * Normalizes an attribute-value like an XML-parser does: whitespace
+     * becomes spaces, references are resolved.
+     */
+    private static String normalize(String value) {
+	StringBuilder result = new StringBuilder(value.length());
+
+	for (int i = 0; i < value.length(); i++) {
+	    char c = value.charAt(i);
+
+	    if (c == '\r') {
+		result.append(' ');
+		if (i + 1 < value.length() && value.charAt(i + 1) == '\n') {
+		    i++;
+		}
+	    } else if (c == '\t' || c == '\n') {
+		result.append(' ');
+	    } else if (c == '&') {
+		int end = value.indexOf(';', i);
+		if (end < 0) {
+		    result.append(c);
+		    continue;
+		}
+		String entity = value.substring(i + 1, end);
+		if (entity.equals("amp")) {
+		    result.append('&');
+		} else if (entity.equals("lt")) {
+		    result.append('<');
+		} else if (entity.equals("gt")) {
+		    result.append('>');
+		} else if (entity.equals("quot")) {
+		    result.append('"');
+		} else if (entity.equals("apos")) {
+		    result.append('\'');
+		} else if (entity.startsWith("#x")) {
+		    result.appendCodePoint(Integer.parseInt(entity.substring(2),
+			    16));
+		} else if (entity.startsWith("#")) {
+		    result.appendCodePoint(Integer.parseInt(entity.substring(1)));
+		} else {
+		    result.append(c);
+		    continue;
+		}
+		i = end;
+	    } else {
+		result.append(c);
+	    }
+	}
+	return result.toString();
+    }
+
+    private String decode(int start, int end) {
+	try {
+	    return new String(buffer, start, end - start, "UTF-8");
+	} catch (UnsupportedEncodingException e) {
+	    throw new RuntimeException(e);
+	}
+    }
+
+    private boolean equals(int start, int end, byte[] name) {
+	if (end - start != name.length) {
+	    return false;
+	}
+	for (int i = 0; i < name.length; i++) {
+	    if (buffer[start + i] != name[i]) {
+		return false;
+	    }
+	}
+	return true;
+    }
+
+    private int nameEnd(int from, int end) {
+	int i = from;
+	while (i < end && !isWhitespace(buffer[i]) && buffer[i] != '/') {
+	    i++;
+	}
+	return i;
+    }
+
+    private static boolean isWhitespace(byte b) {
+	return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    /**
+     * @return The position of the '>' closing the element at the current
+     *         position. Quoted attribute-values may contain '>'.
+     */
+    private int elementEnd() throws IOException {
+	int i = position + 1;
+	byte quote = 0;
+
+	while (true) {
+	    if (i >= limit) {
+		int offset = i - position;
+		if (!fill()) {
+		    throw new IOException("Unexpected end of file");
+		}
+		i = position + offset;
+		continue;
+	    }
+
+	    byte b = buffer[i];
+	    if (quote != 0) {
+		if (b == quote) {
+		    quote = 0;
+		}
+	    } else if (b == '"' || b == '\'') {
+		quote = b;
+	    } else if (b == '>') {
+		return i;
+	    }
+	    i++;
+	}
+    }
+
+    /**
+     * @return The position after the end-mark, the content before is skipped.
+     */
+    private int skipTo(String endMark) throws IOException {
+	byte[] mark = bytes(endMark);
+	int i = position + 1;
+
+	while (true) {
+	    if (i + mark.length > limit) {
+		int offset = i - position;
+		if (!fill()) {
+		    throw new IOException("Unexpected end of file");
+		}
+		i = position + offset;
+		continue;
+	    }
+	    if (equals(i, i + mark.length, mark)) {
+		return i + mark.length;
+	    }
+	    i++;
+	}
+    }
+
+    private int indexOf(byte b, int from) throws IOException {
+	int i = from;
+	while (true) {
+	    if (i >= limit) {
+		// nothing before i is needed any more
+		position = i;
+		if (!fill()) {
+		    return -1;
+		}
+		i = position;
+	    }
+	    if (buffer[i] == b) {
+		return i;
+	    }
+	    i++;
+	}
+    }
+
+    /**
+     * Reads more bytes. The bytes from the current position on are moved to
+     * the start of the buffer, which grows if it is full.
+     *
+     * @return false if the end of the file is reached.
+     */
+    private boolean fill() throws IOException {
+	if (endOfFile) {
+	    return false;
+	}
+
+	int remaining = limit - position;
+	if (remaining == buffer.length) {
+	    byte[] temp = new byte[buffer.length * 2];
+	    System.arraycopy(buffer, position, temp, 0, remaining);
+	    buffer = temp;
+	} else {
+	    System.arraycopy(buffer, position, buffer, 0, remaining);
+	}
+	position = 0;
+	limit = remaining;
+
+	int read = in.read(buffer, limit, buffer.length - limit);
+	if (read < 0) {
+	    endOfFile = true;
+	    return false;
+	}
+	limit += read;
+	return true;
+    }
+
+    private static byte[] bytes(String s) {
+	try {
+	    return s.getBytes("US-ASCII");
+	} catch (UnsupportedEncodingException e) {
+	    throw new RuntimeException(e);
+	}
+    }
+}
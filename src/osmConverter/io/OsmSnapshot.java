@@ -0,0 +1,498 @@
+package osmConverter.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import osmConverter.beans.LongMap;
+import osmConverter.beans.SymbolTable;
+import osmConverter.data.OsmNode;
+import osmConverter.data.OsmObject;
+import osmConverter.data.OsmRelation;
+import osmConverter.data.OsmWay;
+
+/**
+ * Binary snapshot of the osm-maps (nodes, ways and relations) after reading a
+ * file, so later runs on the same file don't have to parse it again. The
+ * snapshot is memory-mapped while it is read.
+ *
+ * The header contains a format-version, a checksum of the source-file and the
+ * settings the file was read with (tag-filter, selective mode,
+ * clip-region). If any of them differs, the snapshot is stale and the file
+ * has to be parsed again. The strings of the tags are stored once in a table,
+ * the entities refer to them by their index like to the symbols of the
+ * {@link SymbolTable}. The maps are filled in the order they were written,
+ * which is the order they were read from the source-file.
+ */
+public class OsmSnapshot implements IsLogging {
+
+    Logger logger;
+
+    /**
+     * "OSMS", also written at the end of a complete snapshot.
+     */
+    private final static int MAGIC = 0x4f534d53;
+
+    /**
+     * Has to be increased with every change of the format.
+     */
+    private final static int VERSION = 1;
+
+    private final static byte NODE = 'n';
+    private final static byte WAY = 'w';
+    private final static byte RELATION = 'r';
+
+    /**
+     * Bytes of the source-file read for the checksum every
+     * {@link #SAMPLE_DISTANCE} bytes.
+     */
+    private final static int SAMPLE_SIZE = 64 * 1024;
+    private final static long SAMPLE_DISTANCE = 64 * 1024 * 1024;
+
+    private final File file;
+    private final File source;
+    private final String settings;
+
+    /**
+     * @param file
+     *            The snapshot.
+     * @param source
+     *            The osm-file the snapshot is made of.
+     * @param settings
+     *            Describes everything else which changes the read maps, the
+     *            snapshot is only used with the same settings.
+     */
+    public OsmSnapshot(File file, File source, String settings) {
+	logger = Logger.getLogger("defaultLog");
+
+	this.file = file;
+	this.source = source;
+	this.settings = settings;
+    }
+
+    /**
+     * Fills the maps from the snapshot if it exists and belongs to the
+     * current source-file and settings.
+     *
+     * @return false if the snapshot can't be used, the maps are empty then.
+     */
+    public boolean read(LongMap<OsmNode> nodes, LongMap<OsmWay> ways,
+	    LongMap<OsmRelation> relations) throws IOException {
+	if (!file.isFile()) {
+	    return false;
+	}
+
+	RandomAccessFile randomAccess = new RandomAccessFile(file, "r");
+	try {
+	    MappedInput in = new MappedInput(randomAccess.getChannel());
+
+	    if (!isCurrent(in)) {
+		return false;
+	    }
+
+	    logInfo("Reading snapshot " + file.getPath());
+	    readEntities(in, nodes, ways, relations);
+	    logInfo("Read snapshot: " + nodes.size() + " nodes, " + ways.size()
+		    + " ways, " + relations.size() + " relations.");
+	    return true;
+	} catch (IOException e) {
+	    logWarning("Snapshot " + file.getPath() + " is damaged ("
+		    + e.getMessage() + "), the file is parsed again.");
+	    nodes.clear();
+	    ways.clear();
+	    relations.clear();
+	    return false;
+	} finally {
+	    randomAccess.close();
+	}
+    }
+
+    /**
+     * Writes the maps to the snapshot. The old snapshot is only replaced once
+     * the new one is complete.
+     */
+    public void write(LongMap<OsmNode> nodes, LongMap<OsmWay> ways,
+	    LongMap<OsmRelation> relations) throws IOException {
+	File temp = new File(file.getPath() + ".tmp");
+	DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+		new FileOutputStream(temp), 256 * 1024));
+
+	logInfo("Writing snapshot " + file.getPath());
+
+	try {
+	    out.writeInt(MAGIC);
+	    out.writeInt(VERSION);
+	    out.writeLong(source.length());
+	    out.writeLong(checksum(source));
+	    writeString(out, settings);
+
+	    // the roles are the only strings which aren't symbols yet
+	    for (OsmRelation relation : relations.values()) {
+		if (relation.getMembers() != null) {
+		    for (OsmObject member : relation.getMembers()) {
+			SymbolTable.intern(member.getRole());
+		    }
+		}
+	    }
+	    int symbols = SymbolTable.size();
+	    out.writeInt(symbols);
+	    for (int i = 0; i < symbols; i++) {
+		writeString(out, SymbolTable.get(i));
+	    }
+
+	    out.writeInt(nodes.size());
+	    for (OsmNode node : nodes.values()) {
+		out.writeLong(node.getId());
+		out.writeDouble(node.getLon());
+		out.writeDouble(node.getLat());
+		writeTags(out, node);
+	    }
+
+	    out.writeInt(ways.size());
+	    for (OsmWay way : ways.values()) {
+		out.writeLong(way.getId());
+		out.writeInt(way.getNodeCount());
+		for (long node : way.getNodes()) {
+		    out.writeLong(node);
+		}
+		writeTags(out, way);
+	    }
+
+	    out.writeInt(relations.size());
+	    for (OsmRelation relation : relations.values()) {
+		out.writeLong(relation.getId());
+		writeMembers(out, relation.getMembers());
+		writeTags(out, relation);
+	    }
+
+	    out.writeInt(MAGIC);
+	} finally {
+	    out.close();
+	}
+
+	if ((file.exists() && !file.delete()) || !temp.renameTo(file)) {
+	    throw new IOException("Couldn't replace snapshot " + file.getPath());
+	}
+    }
+
+    /**
+     * Checks the header and the end of the snapshot.
+     */
+    private boolean isCurrent(MappedInput in) throws IOException {
+	if (in.size() < 8 || in.readInt() != MAGIC) {
+	    logWarning(file.getPath() + " is no snapshot, the file is parsed.");
+	    return false;
+	}
+	if (in.readInt() != VERSION) {
+	    logInfo("Snapshot " + file.getPath()
+		    + " has an old format, the file is parsed again.");
+	    return false;
+	}
+	if (in.readLong() != source.length()
+		|| in.readLong() != checksum(source)) {
+	    logInfo("Snapshot " + file.getPath() + " doesn't belong to "
+		    + source.getPath() + ", the file is parsed again.");
+	    return false;
+	}
+	if (!settings.equals(in.readString())) {
+	    logInfo("Snapshot " + file.getPath()
+		    + " was made with other settings, the file is parsed again.");
+	    return false;
+	}
+	if (in.intAt(in.size() - 4) != MAGIC) {
+	    logWarning("Snapshot " + file.getPath()
+		    + " is incomplete, the file is parsed again.");
+	    return false;
+	}
+	return true;
+    }
+
+    private void readEntities(MappedInput in, LongMap<OsmNode> nodes,
+	    LongMap<OsmWay> ways, LongMap<OsmRelation> relations)
+	    throws IOException {
+	// symbols of the snapshot -> symbols of this run
+	int[] symbols = new int[readCount(in)];
+	for (int i = 0; i < symbols.length; i++) {
+	    symbols[i] = SymbolTable.intern(in.readString());
+	}
+
+	int count = in.readInt();
+	for (int i = 0; i < count; i++) {
+	    OsmNode node = new OsmNode(in.readLong(), in.readDouble(),
+		    in.readDouble());
+	    readTags(in, node, symbols);
+	    nodes.put(node.getId(), node);
+	}
+
+	count = in.readInt();
+	for (int i = 0; i < count; i++) {
+	    OsmWay way = new OsmWay(in.readLong());
+	    long[] wayNodes = new long[readCount(in)];
+	    for (int j = 0; j < wayNodes.length; j++) {
+		wayNodes[j] = in.readLong();
+	    }
+	    way.setNodes(wayNodes);
+	    readTags(in, way, symbols);
+	    ways.put(way.getId(), way);
+	}
+
+	count = in.readInt();
+	for (int i = 0; i < count; i++) {
+	    OsmRelation relation = new OsmRelation(in.readLong());
+	    readMembers(in, relation, symbols);
+	    readTags(in, relation, symbols);
+	    relations.put(relation.getId(), relation);
+	}
+    }
+
+    private static void writeTags(DataOutputStream out, OsmObject object)
+	    throws IOException {
+	out.writeInt(object.getTagCount());
+	for (int i = 0; i < object.getTagCount(); i++) {
+	    out.writeInt(object.getTagKey(i));
+	    out.writeInt(object.getTagValue(i));
+	}
+    }
+
+    private static void readTags(MappedInput in, OsmObject object,
+	    int[] symbols) throws IOException {
+	int count = in.readInt();
+	for (int i = 0; i < count; i++) {
+	    int key = symbol(symbols, in.readInt());
+	    object.addTag(key, symbol(symbols, in.readInt()));
+	}
+    }
+
+    /**
+     * @return The symbol of this run for the index of a symbol of the
+     *         snapshot, {@link SymbolTable#NONE} (e.g. of a tag without
+     *         value) is kept.
+     * @throws IOException
+     *             if there is no such symbol in the snapshot.
+     */
+    private static int symbol(int[] symbols, int index) throws IOException {
+	if (index == SymbolTable.NONE) {
+	    return SymbolTable.NONE;
+	}
+	if (index < 0 || index >= symbols.length) {
+	    throw new IOException("Invalid symbol " + index);
+	}
+	return symbols[index];
+    }
+
+    private static int readCount(MappedInput in) throws IOException {
+	int count = in.readInt();
+	if (count < 0) {
+	    throw new IOException("Invalid count " + count);
+	}
+	return count;
+    }
+
+    /**
+     * Relations without members are written with -1 members, as they have no
+     * member-list at all.
+     */
+    private static void writeMembers(DataOutputStream out,
+	    List<OsmObject> members) throws IOException {
+	if (members == null) {
+	    out.writeInt(-1);
+	    return;
+	}
+
+	out.writeInt(members.size());
+	for (OsmObject member : members) {
+	    if (member instanceof OsmNode) {
+		out.writeByte(NODE);
+	    } else if (member instanceof OsmWay) {
+		out.writeByte(WAY);
+	    } else {
+		out.writeByte(RELATION);
+	    }
+	    out.writeLong(member.getId());
+	    out.writeInt(SymbolTable.lookup(member.getRole()));
+	}
+    }
+
+    private static void readMembers(MappedInput in, OsmRelation relation,
+	    int[] symbols) throws IOException {
+	int count = in.readInt();
+	for (int i = 0; i < count; i++) {
+	    byte type = in.readByte();
+	    long id = in.readLong();
+	    int role = in.readInt();
+
+	    OsmObject member;
+	    if (type == NODE) {
+		member = new OsmNode(id);
+	    } else if (type == WAY) {
+		member = new OsmWay(id);
+	    } else {
+		member = new OsmRelation(id);
+	    }
+	    member.setRole(SymbolTable.get(symbol(symbols, role)));
+	    relation.addMember(member);
+	}
+    }
+
+    private static void writeString(DataOutputStream out, String string)
+	    throws IOException {
+	byte[] bytes = string.getBytes("UTF-8");
+	out.writeInt(bytes.length);
+	out.write(bytes);
+    }
+
+    /**
+     * CRC32 over the length and modification-time of the file and samples of
+     * its content: a block every {@link #SAMPLE_DISTANCE} bytes and the end.
+     * Reading the whole file would take about as long as parsing it.
+     */
+    static long checksum(File file) throws IOException {
+	CRC32 crc = new CRC32();
+	byte[] sample = new byte[SAMPLE_SIZE];
+	RandomAccessFile in = new RandomAccessFile(file, "r");
+
+	try {
+	    long length = in.length();
+	    for (int i = 0; i < 8; i++) {
+		crc.update((int) (length >>> (i * 8)));
+		crc.update((int) (file.lastModified() >>> (i * 8)));
+	    }
+
+	    for (long position = 0; position < length; position += SAMPLE_DISTANCE) {
+		crc.update(sample, 0, readSample(in, position, sample));
+	    }
+	    crc.update(sample, 0,
+		    readSample(in, Math.max(0, length - SAMPLE_SIZE), sample));
+	} finally {
+	    in.close();
+	}
+	return crc.getValue();
+    }
+
+    private static int readSample(RandomAccessFile in, long position,
+	    byte[] sample) throws IOException {
+	in.seek(position);
+	int length = 0;
+	int read;
+	while (length < sample.length
+		&& (read = in.read(sample, length, sample.length - length)) > 0) {
+	    length += read;
+	}
+	return length;
+    }
+
+    @Override
+    public void logInfo(String message) {
+	logger.log(Level.INFO, message);
+    }
+
+    @Override
+    public void logWarning(String message) {
+	logger.log(Level.WARNING, message);
+    }
+
+    @Override
+    public void logError(String message) {
+	logger.log(Level.SEVERE, message);
+    }
+
+    /**
+     * Reads the snapshot through a window mapped into memory, which is moved
+     * along the file (a single mapping is limited to 2 GB).
+     */
+    private static class MappedInput {
+
+	private final static int WINDOW_SIZE = 256 * 1024 * 1024;
+
+	private final FileChannel channel;
+	private final long size;
+
+	private MappedByteBuffer buffer;
+
+	/**
+	 * Position of the window in the file.
+	 */
+	private long offset;
+
+	MappedInput(FileChannel channel) throws IOException {
+	    this.channel = channel;
+	    this.size = channel.size();
+	    map(0);
+	}
+
+	long size() {
+	    return size;
+	}
+
+	int readInt() throws IOException {
+	    ensure(4);
+	    return buffer.getInt();
+	}
+
+	long readLong() throws IOException {
+	    ensure(8);
+	    return buffer.getLong();
+	}
+
+	double readDouble() throws IOException {
+	    ensure(8);
+	    return buffer.getDouble();
+	}
+
+	byte readByte() throws IOException {
+	    ensure(1);
+	    return buffer.get();
+	}
+
+	String readString() throws IOException {
+	    int length = readInt();
+	    if (length < 0 || length > size) {
+		throw new IOException("Invalid string-length " + length);
+	    }
+	    ensure(length);
+	    byte[] bytes = new byte[length];
+	    buffer.get(bytes);
+	    return new String(bytes, "UTF-8");
+	}
+
+	/**
+	 * @return The int at the position, the current position is kept.
+	 */
+	int intAt(long position) throws IOException {
+	    long current = offset + buffer.position();
+	    map(position);
+	    int result = buffer.getInt();
+	    map(current);
+	    return result;
+	}
+
+	/**
+	 * Moves the window if less than count bytes are left in it.
+	 */
+	private void ensure(int count) throws IOException {
+	    if (buffer.remaining() < count) {
+		long position = offset + buffer.position();
+		if (position + count > size) {
+		    throw new EOFException("Unexpected end of snapshot");
+		}
+		map(position);
+	    }
+	}
+
+	private void map(long position) throws IOException {
+	    offset = position;
+	    buffer = channel.map(FileChannel.MapMode.READ_ONLY, position,
+		    Math.min(WINDOW_SIZE, size - position));
+	}
+    }
+}
@@ -0,0 +1,273 @@
+package osmConverter.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+
+/**
+ * Decompresses a bzip2-file consisting of several concatenated streams (as
+ * written by pbzip2) with several threads. The streams are found by their
+ * header ("BZh", the block-size and the magic number of the first block),
+ * decompressed concurrently and returned in the order of the file.
+ *
+ * Every stream is kept in memory while it is decompressed, so this only
+ * makes sense for files made of many small streams, see
+ * {@link #isMultiStream(byte[], int)}. Once a stream is larger than
+ * {@link #MAX_STREAM_SIZE}, the rest of the file is decompressed
+ * sequentially.
+ */
+public class ParallelBzip2InputStream extends InputStream {
+
+    /**
+     * Number of streams per thread which may be decompressed but not yet read.
+     */
+    private final static int STREAMS_PER_THREAD = 2;
+
+    /**
+     * Largest compressed stream decompressed in memory (pbzip2 writes streams
+     * of up to 900 KB).
+     */
+    private final static int MAX_STREAM_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * Bytes read at once from the sequential decompression.
+     */
+    private final static int CHUNK_SIZE = 256 * 1024;
+
+    private final static byte[] BLOCK_MAGIC = { 0x31, 0x41, 0x59, 0x26, 0x53,
+	    0x59 };
+    private final static int HEADER_SIZE = 4 + BLOCK_MAGIC.length;
+
+    private final InputStream in;
+    private final int threads;
+    private final ExecutorService executor;
+    private final LinkedList<Future<byte[]>> pending = new LinkedList<Future<byte[]>>();
+
+    /**
+     * The compressed bytes read from the file but not yet submitted.
+     */
+    private byte[] buffer = new byte[1024 * 1024];
+    private int length = 0;
+    private boolean endOfFile = false;
+
+    private byte[] current = new byte[0];
+    private int position = 0;
+
+    /**
+     * Decompresses the rest of the file after a large stream, null as long
+     * as the streams are decompressed in parallel.
+     */
+    private InputStream sequential = null;
+
+    /**
+     * @param in
+     *            The compressed file, starting with the header of the first
+     *            stream.
+     */
+    public ParallelBzip2InputStream(InputStream in, int threads) {
+	this.in = in;
+	this.threads = Math.max(1, threads);
+	this.executor = Executors.newFixedThreadPool(this.threads);
+    }
+
+    /**
+     * @param start
+     *            The first bytes of a bzip2-file.
+     * @return true if a second stream starts within these bytes, then the
+     *         streams are probably small enough to be decompressed in
+     *         parallel.
+     */
+    public static boolean isMultiStream(byte[] start, int length) {
+	return nextHeader(start, 1, length) >= 0;
+    }
+
+    @Override
+    public int read() throws IOException {
+	if (!fill()) {
+	    return -1;
+	}
+	return current[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int offset, int count) throws IOException {
+	if (count == 0) {
+	    return 0;
+	}
+	if (!fill()) {
+	    return -1;
+	}
+
+	int result = Math.min(count, current.length - position);
+	System.arraycopy(current, position, b, offset, result);
+	position += result;
+	return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+	executor.shutdownNow();
+	if (sequential != null) {
+	    sequential.close();
+	}
+	in.close();
+    }
+
+    /**
+     * @return false at the end of the file.
+     */
+    private boolean fill() throws IOException {
+	while (position == current.length) {
+	    // keep the threads busy, but the number of streams in memory bounded
+	    while (sequential == null
+		    && pending.size() < threads * STREAMS_PER_THREAD) {
+		byte[] stream = nextStream();
+		if (stream == null) {
+		    break;
+		}
+		pending.add(submit(stream));
+	    }
+
+	    if (!pending.isEmpty()) {
+		current = waitFor(pending.removeFirst());
+	    } else if (sequential != null) {
+		byte[] chunk = new byte[CHUNK_SIZE];
+		int read = sequential.read(chunk);
+		if (read < 0) {
+		    return false;
+		}
+		current = read == CHUNK_SIZE ? chunk : Arrays.copyOf(chunk,
+			read);
+	    } else {
+		return false;
+	    }
+	    position = 0;
+	}
+	return true;
+    }
+
+    private Future<byte[]> submit(final byte[] stream) {
+	return executor.submit(new Callable<byte[]>() {
+	    @Override
+	    public byte[] call() throws IOException {
+		return decompress(stream);
+	    }
+	});
+    }
+
+    private static byte[] decompress(byte[] stream) throws IOException {
+	InputStream bzip2 = new BZip2CompressorInputStream(
+		new ByteArrayInputStream(stream), false);
+	ByteArrayOutputStream out = new ByteArrayOutputStream(Math.min(
+		stream.length, 1 << 20) * 6);
+	byte[] temp = new byte[64 * 1024];
+	int read;
+
+	while ((read = bzip2.read(temp)) >= 0) {
+	    out.write(temp, 0, read);
+	}
+	bzip2.close();
+	return out.toByteArray();
+    }
+
+    private byte[] waitFor(Future<byte[]> future) throws IOException {
+	try {
+	    return future.get();
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new InterruptedIOException(
+		    "Interrupted while decompressing bzip2-streams");
+	} catch (ExecutionException e) {
+	    if (e.getCause() instanceof IOException) {
+		throw (IOException) e.getCause();
+	    }
+	    throw new RuntimeException(e.getCause());
+	}
+    }
+
+    /**
+     * @return The compressed bytes of the next stream, null at the end of the
+     *         file or if the rest is decompressed sequentially.
+     */
+    private byte[] nextStream() throws IOException {
+	int end;
+	int searched = 1;
+
+	while ((end = nextHeader(buffer, searched, length)) < 0 && !endOfFile) {
+	    if (length >= MAX_STREAM_SIZE) {
+		// the streams read so far are returned first
+		sequential = new BZip2CompressorInputStream(
+			new SequenceInputStream(new ByteArrayInputStream(
+				buffer, 0, length), in), true);
+		length = 0;
+		return null;
+	    }
+	    searched = Math.max(1, length - HEADER_SIZE + 1);
+	    readMore();
+	}
+
+	if (end < 0) {
+	    end = length;
+	}
+	if (end == 0) {
+	    return null;
+	}
+
+	byte[] stream = new byte[end];
+	System.arraycopy(buffer, 0, stream, 0, end);
+	System.arraycopy(buffer, end, buffer, 0, length - end);
+	length -= end;
+	return stream;
+    }
+
+    private void readMore() throws IOException {
+	if (length == buffer.length) {
+	    byte[] temp = new byte[buffer.length * 2];
+	    System.arraycopy(buffer, 0, temp, 0, length);
+	    buffer = temp;
+	}
+
+	int read = in.read(buffer, length, buffer.length - length);
+	if (read < 0) {
+	    endOfFile = true;
+	} else {
+	    length += read;
+	}
+    }
+
+    /**
+     * @return The position of the next stream-header at or after from, -1 if
+     *         there is none.
+     */
+    private static int nextHeader(byte[] bytes, int from, int length) {
+	for (int i = from; i + HEADER_SIZE <= length; i++) {
+	    if (bytes[i] == 'B' && bytes[i + 1] == 'Z' && bytes[i + 2] == 'h'
+		    && bytes[i + 3] >= '1' && bytes[i + 3] <= '9'
+		    && isBlockMagic(bytes, i + 4)) {
+		return i;
+	    }
+	}
+	return -1;
+    }
+
+    private static boolean isBlockMagic(byte[] bytes, int offset) {
+	for (int i = 0; i < BLOCK_MAGIC.length; i++) {
+	    if (bytes[offset + i] != BLOCK_MAGIC[i]) {
+		return false;
+	    }
+	}
+	return true;
+    }
+}
@@ -0,0 +1,219 @@
+package osmConverter.io;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Minimal reader for protocol-buffer encoded messages as they are used inside
+ * of .osm.pbf-Files. Only the wire-types needed by the osm-format are
+ * supported.
+ */
+public class PbfInput {
+
+    public final static int VARINT = 0;
+    public final static int FIXED64 = 1;
+    public final static int LENGTH_DELIMITED = 2;
+    public final static int FIXED32 = 5;
+
+    private final byte[] buffer;
+    private int position;
+    private final int limit;
+
+    public PbfInput(byte[] buffer) {
+	this(buffer, 0, buffer.length);
+    }
+
+    public PbfInput(byte[] buffer, int offset, int length) {
+	this.buffer = buffer;
+	this.position = offset;
+	this.limit = offset + length;
+    }
+
+    /**
+     * @return true if there are fields left to read.
+     */
+    public boolean hasMore() {
+	return position < limit;
+    }
+
+    /**
+     * Reads the key of the next field. Use {@link #field(int)} and
+     * {@link #wireType(int)} to split it.
+     */
+    public int readTag() throws IOException {
+	return (int) readVarint();
+    }
+
+    public static int field(int tag) {
+	return tag >>> 3;
+    }
+
+    public static int wireType(int tag) {
+	return tag & 7;
+    }
+
+    public long readVarint() throws IOException {
+	long result = 0;
+	int shift = 0;
+
+	while (shift < 64) {
+	    if (position >= limit) {
+		throw new IOException("Truncated varint in pbf-message");
+	    }
+	    byte b = buffer[position++];
+	    result |= (long) (b & 0x7F) << shift;
+	    if ((b & 0x80) == 0) {
+		return result;
+	    }
+	    shift += 7;
+	}
+	throw new IOException("Malformed varint in pbf-message");
+    }
+
+    public int readInt32() throws IOException {
+	return (int) readVarint();
+    }
+
+    public long readSInt64() throws IOException {
+	long value = readVarint();
+	return (value >>> 1) ^ -(value & 1);
+    }
+
+    public byte[] readBytes() throws IOException {
+	int length = readLength();
+	byte[] bytes = new byte[length];
+	System.arraycopy(buffer, position, bytes, 0, length);
+	position += length;
+	return bytes;
+    }
+
+    public String readString() throws IOException {
+	int length = readLength();
+	String s = decode(buffer, position, length);
+	position += length;
+	return s;
+    }
+
+    /**
+     * Reads an embedded message without copying its bytes.
+     */
+    public PbfInput readMessage() throws IOException {
+	int length = readLength();
+	PbfInput message = new PbfInput(buffer, position, length);
+	position += length;
+	return message;
+    }
+
+    /**
+     * Decodes the remaining bytes of this message as UTF-8 string, used for
+     * strings read lazily with {@link #readMessage()}.
+     */
+    public String remainingString() {
+	return decode(buffer, position, limit - position);
+    }
+
+    /**
+     * Reads a repeated int32/uint32/enum field. Packed and unpacked encoding
+     * are both accepted, the values are appended to {@code previous}.
+     */
+    public int[] readInt32s(int tag, int[] previous) throws IOException {
+	if (wireType(tag) != LENGTH_DELIMITED) {
+	    return append(previous, new int[] { readInt32() });
+	}
+
+	PbfInput packed = readMessage();
+	int[] values = new int[packed.countVarints()];
+	for (int i = 0; i < values.length; i++) {
+	    values[i] = packed.readInt32();
+	}
+	return append(previous, values);
+    }
+
+    /**
+     * Reads a repeated sint64 field. Packed and unpacked encoding are both
+     * accepted, the values are appended to {@code previous}.
+     */
+    public long[] readSInt64s(int tag, long[] previous) throws IOException {
+	if (wireType(tag) != LENGTH_DELIMITED) {
+	    return append(previous, new long[] { readSInt64() });
+	}
+
+	PbfInput packed = readMessage();
+	long[] values = new long[packed.countVarints()];
+	for (int i = 0; i < values.length; i++) {
+	    values[i] = packed.readSInt64();
+	}
+	return append(previous, values);
+    }
+
+    /**
+     * Skips the value of a field which is not needed.
+     */
+    public void skip(int tag) throws IOException {
+	switch (wireType(tag)) {
+	case VARINT:
+	    readVarint();
+	    break;
+	case FIXED64:
+	    position += 8;
+	    break;
+	case LENGTH_DELIMITED:
+	    int length = readLength();
+	    position += length;
+	    break;
+	case FIXED32:
+	    position += 4;
+	    break;
+	default:
+	    throw new IOException("Unsupported wire-type " + wireType(tag)
+		    + " in pbf-message");
+	}
+    }
+
+    private int countVarints() {
+	int count = 0;
+	for (int i = position; i < limit; i++) {
+	    if ((buffer[i] & 0x80) == 0) {
+		count++;
+	    }
+	}
+	return count;
+    }
+
+    private int readLength() throws IOException {
+	int length = readInt32();
+	if (length < 0 || position + length > limit) {
+	    throw new IOException("Invalid length " + length
+		    + " in pbf-message");
+	}
+	return length;
+    }
+
+    private static int[] append(int[] previous, int[] values) {
+	if (previous == null || previous.length == 0) {
+	    return values;
+	}
+	int[] result = new int[previous.length + values.length];
+	System.arraycopy(previous, 0, result, 0, previous.length);
+	System.arraycopy(values, 0, result, previous.length, values.length);
+	return result;
+    }
+
+    private static long[] append(long[] previous, long[] values) {
+	if (previous == null || previous.length == 0) {
+	    return values;
+	}
+	long[] result = new long[previous.length + values.length];
+	System.arraycopy(previous, 0, result, 0, previous.length);
+	System.arraycopy(values, 0, result, previous.length, values.length);
+	return result;
+    }
+
+    private static String decode(byte[] bytes, int offset, int length) {
+	try {
+	    return new String(bytes, offset, length, "UTF-8");
+	} catch (UnsupportedEncodingException e) {
+	    throw new RuntimeException(e);
+	}
+    }
+}
@@ -0,0 +1,834 @@
+package osmConverter.io;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import osmConverter.beans.LongMap;
+import osmConverter.beans.SymbolTable;
+import osmConverter.data.OsmNode;
+import osmConverter.data.OsmObject;
+import osmConverter.data.OsmRelation;
+import osmConverter.data.OsmWay;
+
+/**
+ * This reads an .osm.pbf-File (the binary format of OpenStreetMap) and gets
+ * information into the program. The maps are filled exactly like
+ * {@link OsmReader} fills them for the corresponding .osm-File.
+ *
+ * The file is a sequence of blobs, each of them preceded by a blob-header.
+ * Every blob contains one zlib-compressed block of primitives (nodes, ways
+ * and relations) which share a string-table.
+ *
+ * With more than one thread the blobs are inflated and decoded concurrently,
+ * while the reading thread still merges the decoded blocks in the order of
+ * the file.
+ */
+public class PbfReader implements IOsmReader, IsLogging {
+
+    Logger logger;
+
+    private final static String HEADER = "OSMHeader";
+    private final static String DATA = "OSMData";
+
+    private final static int MAX_HEADER_SIZE = 64 * 1024;
+    private final static int MAX_BLOB_SIZE = 32 * 1024 * 1024;
+
+    private final static String[] SUPPORTED_FEATURES = { "OsmSchema-V0.6",
+	    "DenseNodes" };
+
+    private final LongMap<OsmNode> nodes;
+    private final LongMap<OsmWay> ways;
+    private final LongMap<OsmRelation> relations;
+
+    /**
+     * Number of blocks per thread which may be decoded but not yet merged.
+     */
+    private final static int BLOCKS_PER_THREAD = 4;
+
+    private final int threads;
+
+    private IngestionFilter filter = null;
+    private TagFilter tagFilter = null;
+
+    private long keptTags = 0;
+    private long droppedTags = 0;
+
+    private int blobSize;
+
+    private int counter = 0;
+    private int secCounter = 0;
+
+    public PbfReader(final LongMap<OsmNode> nodes,
+	    final LongMap<OsmWay> ways,
+	    LongMap<OsmRelation> osmRelations) {
+	this(nodes, ways, osmRelations, 1);
+    }
+
+    /**
+     * @param threads
+     *            Number of threads decoding blocks. 1 decodes every block in
+     *            the reading thread.
+     */
+    public PbfReader(final LongMap<OsmNode> nodes,
+	    final LongMap<OsmWay> ways,
+	    LongMap<OsmRelation> osmRelations, int threads) {
+	logger = Logger.getLogger("defaultLog");
+
+	this.nodes = nodes;
+	this.ways = ways;
+	this.relations = osmRelations;
+	this.threads = Math.max(1, threads);
+    }
+
+    public void parseFile(String filename) throws IOException {
+	DataInputStream in = new DataInputStream(new BufferedInputStream(
+		new FileInputStream(filename), 64 * 1024));
+
+	logInfo("Started parsing .pbf-File!");
+
+	try {
+	    if (threads > 1) {
+		parseParallel(in);
+	    } else {
+		String type;
+		while ((type = readBlobHeader(in)) != null) {
+		    merge(decodeBlob(type, readBlob(in)));
+		}
+	    }
+	} finally {
+	    in.close();
+	}
+
+	logInfo("Ended parsing .pbf-File!");
+	if (tagFilter != null) {
+	    tagFilter.addStatistics(keptTags, droppedTags);
+	    logInfo("Tag-filter kept " + keptTags + " tags and dropped "
+		    + droppedTags + " tags.");
+	}
+	keptTags = 0;
+	droppedTags = 0;
+	counter = 0;
+	secCounter = 0;
+    }
+
+    public void setFilter(IngestionFilter filter) {
+	this.filter = filter;
+    }
+
+    public void setTagFilter(TagFilter tagFilter) {
+	this.tagFilter = tagFilter;
+    }
+
+    /**
+     * Reads the blobs in this thread and lets the workers decode them. The
+     * decoded blocks are merged in the order of the file, so the maps are
+     * filled exactly like by the sequential reader.
+     */
+    private void parseParallel(DataInputStream in) throws IOException {
+	ExecutorService executor = Executors.newFixedThreadPool(threads);
+	LinkedList<Future<PbfBlock>> pending = new LinkedList<Future<PbfBlock>>();
+
+	logInfo("Decoding blocks with " + threads + " threads.");
+
+	try {
+	    String type;
+	    while ((type = readBlobHeader(in)) != null) {
+		final String blobType = type;
+		final byte[] blob = readBlob(in);
+
+		pending.add(executor.submit(new Callable<PbfBlock>() {
+		    @Override
+		    public PbfBlock call() throws IOException {
+			return decodeBlob(blobType, blob);
+		    }
+		}));
+
+		// keep the number of decoded but not merged blocks bounded
+		if (pending.size() >= threads * BLOCKS_PER_THREAD) {
+		    merge(waitFor(pending.removeFirst()));
+		}
+	    }
+
+	    while (!pending.isEmpty()) {
+		merge(waitFor(pending.removeFirst()));
+	    }
+	} finally {
+	    executor.shutdownNow();
+	}
+    }
+
+    private PbfBlock waitFor(Future<PbfBlock> future) throws IOException {
+	try {
+	    return future.get();
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new IOException("Interrupted while decoding pbf-blocks");
+	} catch (ExecutionException e) {
+	    if (e.getCause() instanceof IOException) {
+		throw (IOException) e.getCause();
+	    }
+	    throw new RuntimeException(e.getCause());
+	}
+    }
+
+    /**
+     * Puts the entities of a decoded block into the maps. The filter is only
+     * asked in here, so it is never called concurrently.
+     */
+    private void merge(PbfBlock block) {
+	if (block == null) {
+	    return;
+	}
+
+	for (OsmNode node : block.nodes) {
+	    if (filter == null || filter.acceptNode(node)) {
+		nodes.put(node.getId(), node);
+	    }
+	}
+	for (OsmWay way : block.ways) {
+	    if (filter == null || filter.acceptWay(way)) {
+		ways.put(way.getId(), way);
+	    }
+	}
+	for (OsmRelation relation : block.relations) {
+	    if (filter == null || filter.acceptRelation(relation)) {
+		relations.put(relation.getId(), relation);
+	    }
+	}
+
+	keptTags += block.keptTags;
+	droppedTags += block.droppedTags;
+
+	logOutput();
+    }
+
+    /**
+     * Inflates and decodes one blob. This is called concurrently, so it must
+     * not touch the maps.
+     * 
+     * @return The decoded entities, null for blobs without entities.
+     */
+    private PbfBlock decodeBlob(String type, byte[] blob) throws IOException {
+	if (HEADER.equals(type)) {
+	    checkHeaderBlock(unpackBlob(blob));
+	} else if (DATA.equals(type)) {
+	    return decodePrimitiveBlock(unpackBlob(blob));
+	}
+	// unknown blob-types are skipped as demanded by the format
+	return null;
+    }
+
+    /**
+     * Reads the next blob-header.
+     *
+     * @return The type of the following blob, null at the end of the file.
+     */
+    private String readBlobHeader(DataInputStream in) throws IOException {
+	int headerSize;
+	try {
+	    headerSize = in.readInt();
+	} catch (EOFException e) {
+	    return null;
+	}
+
+	if (headerSize < 0 || headerSize > MAX_HEADER_SIZE) {
+	    throw new IOException("Invalid blob-header size: " + headerSize);
+	}
+
+	byte[] header = new byte[headerSize];
+	in.readFully(header);
+
+	String type = null;
+	blobSize = -1;
+
+	PbfInput input = new PbfInput(header);
+	while (input.hasMore()) {
+	    int tag = input.readTag();
+	    switch (PbfInput.field(tag)) {
+	    case 1:
+		type = input.readString();
+		break;
+	    case 3:
+		blobSize = input.readInt32();
+		break;
+	    default:
+		input.skip(tag);
+	    }
+	}
+
+	if (type == null || blobSize < 0 || blobSize > MAX_BLOB_SIZE) {
+	    throw new IOException("Invalid blob-header (type: " + type
+		    + ", size: " + blobSize + ")");
+	}
+
+	return type;
+    }
+
+    /**
+     * Reads the blob announced by the last header.
+     */
+    private byte[] readBlob(DataInputStream in) throws IOException {
+	byte[] blob = new byte[blobSize];
+	in.readFully(blob);
+	return blob;
+    }
+
+    /**
+     * @return The uncompressed content of the blob.
+     */
+    private byte[] unpackBlob(byte[] blob) throws IOException {
+	byte[] raw = null;
+	byte[] zlib = null;
+	int rawSize = -1;
+
+	PbfInput input = new PbfInput(blob);
+	while (input.hasMore()) {
+	    int tag = input.readTag();
+	    switch (PbfInput.field(tag)) {
+	    case 1:
+		raw = input.readBytes();
+		break;
+	    case 2:
+		rawSize = input.readInt32();
+		break;
+	    case 3:
+		zlib = input.readBytes();
+		break;
+	    case 4:
+	    case 5:
+	    case 6:
+	    case 7:
+		throw new IOException(
+			"Unsupported compression of pbf-blob (only zlib is supported)");
+	    default:
+		input.skip(tag);
+	    }
+	}
+
+	if (raw != null) {
+	    return raw;
+	} else if (zlib != null && rawSize >= 0) {
+	    return inflate(zlib, rawSize);
+	}
+
+	throw new IOException("Empty pbf-blob");
+    }
+
+    private byte[] inflate(byte[] zlib, int rawSize) throws IOException {
+	Inflater inflater = new Inflater();
+	inflater.setInput(zlib);
+
+	byte[] result = new byte[rawSize];
+	try {
+	    int length = 0;
+	    while (length < rawSize && !inflater.finished()) {
+		int read = inflater.inflate(result, length, rawSize - length);
+		if (read == 0
+			&& (inflater.needsInput() || inflater.needsDictionary())) {
+		    break;
+		}
+		length += read;
+	    }
+	    if (length != rawSize) {
+		throw new IOException("Corrupt pbf-blob: expected " + rawSize
+			+ " bytes, got " + length);
+	    }
+	} catch (DataFormatException e) {
+	    throw new IOException("Corrupt pbf-blob: " + e.getMessage());
+	} finally {
+	    inflater.end();
+	}
+
+	return result;
+    }
+
+    /**
+     * Make sure the file does not need features this reader doesn't know
+     * (e.g. historical information).
+     */
+    private void checkHeaderBlock(byte[] block) throws IOException {
+	PbfInput input = new PbfInput(block);
+	while (input.hasMore()) {
+	    int tag = input.readTag();
+	    if (PbfInput.field(tag) == 4) {
+		String feature = input.readString();
+		boolean supported = false;
+		for (String known : SUPPORTED_FEATURES) {
+		    if (known.equals(feature)) {
+			supported = true;
+		    }
+		}
+		if (!supported) {
+		    throw new IOException("File requires unsupported feature: "
+			    + feature);
+		}
+	    } else {
+		input.skip(tag);
+	    }
+	}
+    }
+
+    /**
+     * Decodes one block of primitives.
+     */
+    private PbfBlock decodePrimitiveBlock(byte[] block) throws IOException {
+	StringTable strings = null;
+	PbfInput[] groups = new PbfInput[0];
+
+	long granularity = 100;
+	long latOffset = 0;
+	long lonOffset = 0;
+
+	PbfInput input = new PbfInput(block);
+	while (input.hasMore()) {
+	    int tag = input.readTag();
+	    switch (PbfInput.field(tag)) {
+	    case 1:
+		strings = new StringTable(input.readMessage(), tagFilter);
+		break;
+	    case 2:
+		PbfInput[] temp = new PbfInput[groups.length + 1];
+		System.arraycopy(groups, 0, temp, 0, groups.length);
+		temp[groups.length] = input.readMessage();
+		groups = temp;
+		break;
+	    case 17:
+		granularity = input.readInt32();
+		break;
+	    case 19:
+		latOffset = input.readVarint();
+		break;
+	    case 20:
+		lonOffset = input.readVarint();
+		break;
+	    default:
+		input.skip(tag);
+	    }
+	}
+
+	if (strings == null) {
+	    throw new IOException("Pbf-block without string-table");
+	}
+
+	// the groups can only be decoded once granularity and offsets are known
+	Coordinates coordinates = new Coordinates(granularity, latOffset,
+		lonOffset);
+	PbfBlock result = new PbfBlock();
+
+	// groups of entity-types the filter doesn't read are not decoded at all
+	boolean readNodes = filter == null || filter.readsNodes();
+	boolean readWays = filter == null || filter.readsWays();
+	boolean readRelations = filter == null || filter.readsRelations();
+
+	for (PbfInput group : groups) {
+	    while (group.hasMore()) {
+		int tag = group.readTag();
+		int field = PbfInput.field(tag);
+
+		if (field == 1 && readNodes) {
+		    result.nodes.add(decodeNode(group.readMessage(), strings,
+			    coordinates));
+		} else if (field == 2 && readNodes) {
+		    decodeDenseNodes(group.readMessage(), strings, coordinates,
+			    result.nodes);
+		} else if (field == 3 && readWays) {
+		    result.ways.add(decodeWay(group.readMessage(), strings));
+		} else if (field == 4 && readRelations) {
+		    result.relations.add(decodeRelation(group.readMessage(),
+			    strings));
+		} else {
+		    group.skip(tag);
+		}
+	    }
+	}
+
+	result.keptTags = strings.keptTags;
+	result.droppedTags = strings.droppedTags;
+	return result;
+    }
+
+    private OsmNode decodeNode(PbfInput input, StringTable strings,
+	    Coordinates coordinates) throws IOException {
+	long id = 0;
+	long lat = 0;
+	long lon = 0;
+	int[] keys = null;
+	int[] values = null;
+
+	while (input.hasMore()) {
+	    int tag = input.readTag();
+	    switch (PbfInput.field(tag)) {
+	    case 1:
+		id = input.readSInt64();
+		break;
+	    case 2:
+		keys = input.readInt32s(tag, keys);
+		break;
+	    case 3:
+		values = input.readInt32s(tag, values);
+		break;
+	    case 8:
+		lat = input.readSInt64();
+		break;
+	    case 9:
+		lon = input.readSInt64();
+		break;
+	    default:
+		input.skip(tag);
+	    }
+	}
+
+	OsmNode node = new OsmNode(id, coordinates.lon(lon),
+		coordinates.lat(lat));
+	addTags(node, keys, values, strings);
+	return node;
+    }
+
+    private void decodeDenseNodes(PbfInput input, StringTable strings,
+	    Coordinates coordinates, List<OsmNode> result) throws IOException {
+	long[] ids = null;
+	long[] lats = null;
+	long[] lons = null;
+	int[] keysVals = null;
+
+	while (input.hasMore()) {
+	    int tag = input.readTag();
+	    switch (PbfInput.field(tag)) {
+	    case 1:
+		ids = input.readSInt64s(tag, ids);
+		break;
+	    case 8:
+		lats = input.readSInt64s(tag, lats);
+		break;
+	    case 9:
+		lons = input.readSInt64s(tag, lons);
+		break;
+	    case 10:
+		keysVals = input.readInt32s(tag, keysVals);
+		break;
+	    default:
+		input.skip(tag);
+	    }
+	}
+
+	if (ids == null) {
+	    return;
+	}
+	if (lats == null || lons == null || lats.length != ids.length
+		|| lons.length != ids.length) {
+	    throw new IOException("Corrupt dense-nodes in pbf-block");
+	}
+
+	// ids and coordinates are delta coded, tags are a flat list of
+	// key-value pairs where a 0 finishes the tags of one node
+	long id = 0;
+	long lat = 0;
+	long lon = 0;
+	int k = 0;
+
+	for (int i = 0; i < ids.length; i++) {
+	    id += ids[i];
+	    lat += lats[i];
+	    lon += lons[i];
+
+	    OsmNode node = new OsmNode(id,
+		    coordinates.lon(lon), coordinates.lat(lat));
+
+	    if (keysVals != null) {
+		while (k < keysVals.length && keysVals[k] != 0) {
+		    if (strings.keepsKey(keysVals[k])) {
+			node.addTag(strings.symbol(keysVals[k]),
+				strings.symbol(keysVals[k + 1]));
+		    }
+		    k += 2;
+		}
+		k++;
+	    }
+
+	    result.add(node);
+	}
+    }
+
+    private OsmWay decodeWay(PbfInput input, StringTable strings)
+	    throws IOException {
+	long id = 0;
+	int[] keys = null;
+	int[] values = null;
+	long[] refs = null;
+
+	while (input.hasMore()) {
+	    int tag = input.readTag();
+	    switch (PbfInput.field(tag)) {
+	    case 1:
+		id = input.readVarint();
+		break;
+	    case 2:
+		keys = input.readInt32s(tag, keys);
+		break;
+	    case 3:
+		values = input.readInt32s(tag, values);
+		break;
+	    case 8:
+		refs = input.readSInt64s(tag, refs);
+		break;
+	    default:
+		input.skip(tag);
+	    }
+	}
+
+	OsmWay way = new OsmWay(id);
+
+	if (refs != null) {
+	    // the refs are delta-coded, decode them in place
+	    for (int i = 1; i < refs.length; i++) {
+		refs[i] += refs[i - 1];
+	    }
+	    way.setNodes(refs);
+	}
+
+	addTags(way, keys, values, strings);
+	return way;
+    }
+
+    private OsmRelation decodeRelation(PbfInput input, StringTable strings)
+	    throws IOException {
+	long id = 0;
+	int[] keys = null;
+	int[] values = null;
+	int[] roles = null;
+	long[] memberIds = null;
+	int[] types = null;
+
+	while (input.hasMore()) {
+	    int tag = input.readTag();
+	    switch (PbfInput.field(tag)) {
+	    case 1:
+		id = input.readVarint();
+		break;
+	    case 2:
+		keys = input.readInt32s(tag, keys);
+		break;
+	    case 3:
+		values = input.readInt32s(tag, values);
+		break;
+	    case 8:
+		roles = input.readInt32s(tag, roles);
+		break;
+	    case 9:
+		memberIds = input.readSInt64s(tag, memberIds);
+		break;
+	    case 10:
+		types = input.readInt32s(tag, types);
+		break;
+	    default:
+		input.skip(tag);
+	    }
+	}
+
+	OsmRelation relation = new OsmRelation(id);
+
+	if (memberIds != null) {
+	    if (roles == null || types == null
+		    || roles.length != memberIds.length
+		    || types.length != memberIds.length) {
+		throw new IOException("Corrupt members of relation " + id);
+	    }
+
+	    long ref = 0;
+	    for (int i = 0; i < memberIds.length; i++) {
+		ref += memberIds[i];
+
+		OsmObject member;
+		if (types[i] == 0) {
+		    member = new OsmNode(ref);
+		} else if (types[i] == 1) {
+		    member = new OsmWay(ref);
+		} else {
+		    member = new OsmRelation(ref);
+		}
+
+		member.setRole(strings.get(roles[i]));
+		relation.addMember(member);
+	    }
+	}
+
+	addTags(relation, keys, values, strings);
+	return relation;
+    }
+
+    private void addTags(OsmObject object, int[] keys, int[] values,
+	    StringTable strings) throws IOException {
+	if (keys == null) {
+	    return;
+	}
+	if (values == null || values.length != keys.length) {
+	    throw new IOException("Tags of entity " + object.getId()
+		    + " are corrupt");
+	}
+
+	for (int i = 0; i < keys.length; i++) {
+	    if (strings.keepsKey(keys[i])) {
+		object.addTag(strings.symbol(keys[i]),
+			strings.symbol(values[i]));
+	    }
+	}
+    }
+
+    private void logOutput() {
+	if (counter % (Math.pow(2., secCounter)) == 0) {
+	    secCounter++;
+	    logInfo("Read: " + counter + " blocks.");
+	}
+
+	counter++;
+    }
+
+    @Override
+    public void logInfo(String message) {
+	logger.log(Level.INFO, message);
+    }
+
+    @Override
+    public void logWarning(String message) {
+	logger.log(Level.WARNING, message);
+    }
+
+    @Override
+    public void logError(String message) {
+	logger.log(Level.SEVERE, message);
+    }
+
+    /**
+     * The entities of one decoded block, in the order of the file.
+     */
+    private static class PbfBlock {
+	final List<OsmNode> nodes = new ArrayList<OsmNode>();
+	final List<OsmWay> ways = new ArrayList<OsmWay>();
+	final List<OsmRelation> relations = new ArrayList<OsmRelation>();
+	long keptTags;
+	long droppedTags;
+    }
+
+    /**
+     * The string-table of a block. Strings are only decoded when they are
+     * used, so the values of dropped tags are never decoded. Tags are added
+     * with the symbols of the strings (see {@link SymbolTable}), which are
+     * looked up once per block. Every block has its own table, so it is only
+     * used by one thread.
+     */
+    private static class StringTable {
+	private final static byte UNKNOWN = 0;
+	private final static byte KEPT = 1;
+	private final static byte DROPPED = 2;
+
+	private PbfInput[] raw = new PbfInput[16];
+	private String[] strings;
+	private int[] symbols;
+	private byte[] keys;
+	private final TagFilter tagFilter;
+	private int size = 0;
+
+	long keptTags = 0;
+	long droppedTags = 0;
+
+	StringTable(PbfInput input, TagFilter tagFilter) throws IOException {
+	    this.tagFilter = tagFilter;
+
+	    while (input.hasMore()) {
+		int tag = input.readTag();
+		if (PbfInput.field(tag) == 1) {
+		    if (size == raw.length) {
+			PbfInput[] temp = new PbfInput[size * 2];
+			System.arraycopy(raw, 0, temp, 0, size);
+			raw = temp;
+		    }
+		    raw[size++] = input.readMessage();
+		} else {
+		    input.skip(tag);
+		}
+	    }
+
+	    strings = new String[size];
+	    symbols = new int[size];
+	    keys = new byte[size];
+	}
+
+	int symbol(int index) {
+	    // 0 marks a symbol not looked up yet, the symbols are stored + 1
+	    if (symbols[index] == 0) {
+		symbols[index] = SymbolTable.intern(get(index)) + 1;
+	    }
+	    return symbols[index] - 1;
+	}
+
+	String get(int index) {
+	    if (index >= size) {
+		throw new ArrayIndexOutOfBoundsException(index);
+	    }
+	    if (strings[index] == null) {
+		strings[index] = raw[index].remainingString();
+	    }
+	    return strings[index];
+	}
+
+	/**
+	 * Asks the tag-filter about the key once per block and counts the
+	 * result for every tag.
+	 */
+	boolean keepsKey(int index) {
+	    if (tagFilter == null) {
+		keptTags++;
+		return true;
+	    }
+	    if (keys[index] == UNKNOWN) {
+		keys[index] = tagFilter.keeps(get(index)) ? KEPT : DROPPED;
+	    }
+	    if (keys[index] == KEPT) {
+		keptTags++;
+		return true;
+	    }
+	    droppedTags++;
+	    return false;
+	}
+    }
+
+    /**
+     * Converts the integer coordinates of one block to degrees.
+     */
+    private static class Coordinates {
+	private final long granularity;
+	private final long latOffset;
+	private final long lonOffset;
+
+	Coordinates(long granularity, long latOffset, long lonOffset) {
+	    this.granularity = granularity;
+	    this.latOffset = latOffset;
+	    this.lonOffset = lonOffset;
+	}
+
+	// dividing (instead of multiplying with 1e-9) gives exactly the value
+	// Double.parseDouble() gets from the .osm-File
+	double lat(long lat) {
+	    return (latOffset + granularity * lat) / 1000000000.;
+	}
+
+	double lon(long lon) {
+	    return (lonOffset + granularity * lon) / 1000000000.;
+	}
+    }
+}
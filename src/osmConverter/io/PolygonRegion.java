@@ -0,0 +1,142 @@
+package osmConverter.io;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import osmConverter.data.EdgeTable;
+import osmConverter.data.Polygon;
+
+/**
+ * {@link ClipRegion} read from a polygon-file in the format of osmosis
+ * (http://wiki.openstreetmap.org/wiki/Osmosis/Polygon_Filter_File_Format).
+ * The file starts with a name, followed by rings of "lon lat"-lines which are
+ * closed by END each. Rings whose name starts with "!" are holes. The file is
+ * finished by another END.
+ */
+public class PolygonRegion implements ClipRegion {
+
+    private final List<EdgeTable> outer = new ArrayList<EdgeTable>();
+    private final List<EdgeTable> holes = new ArrayList<EdgeTable>();
+
+    private double minLon = Double.POSITIVE_INFINITY;
+    private double minLat = Double.POSITIVE_INFINITY;
+    private double maxLon = Double.NEGATIVE_INFINITY;
+    private double maxLat = Double.NEGATIVE_INFINITY;
+
+    private final String path;
+
+    /**
+     * Hash of all points, identifies the polygon in {@link #toString()}.
+     */
+    private long checksum = 0;
+
+    public PolygonRegion(File file) throws IOException {
+	path = file.getPath();
+	BufferedReader in = new BufferedReader(new FileReader(file));
+
+	try {
+	    // the name of the polygon
+	    String line = in.readLine();
+
+	    while ((line = nextLine(in)) != null && !line.equals("END")) {
+		boolean hole = line.startsWith("!");
+		Polygon ring = readRing(in, file);
+
+		if (hole) {
+		    holes.add(new EdgeTable(ring));
+		} else {
+		    outer.add(new EdgeTable(ring));
+		    minLon = Math.min(minLon, ring.getMinX());
+		    minLat = Math.min(minLat, ring.getMinY());
+		    maxLon = Math.max(maxLon, ring.getMaxX());
+		    maxLat = Math.max(maxLat, ring.getMaxY());
+		}
+	    }
+	} finally {
+	    in.close();
+	}
+
+	if (outer.isEmpty()) {
+	    throw new IOException("Polygon-file " + file.getPath()
+		    + " contains no ring.");
+	}
+    }
+
+    public boolean contains(double lon, double lat) {
+	// the bounds are a cheap test for the most nodes outside
+	if (lon < minLon || lon > maxLon || lat < minLat || lat > maxLat) {
+	    return false;
+	}
+
+	for (EdgeTable hole : holes) {
+	    if (hole.contains(lon, lat)) {
+		return false;
+	    }
+	}
+	for (EdgeTable ring : outer) {
+	    if (ring.contains(lon, lat)) {
+		return true;
+	    }
+	}
+	return false;
+    }
+
+    @Override
+    public String toString() {
+	return path + " (" + Long.toHexString(checksum) + ")";
+    }
+
+    private Polygon readRing(BufferedReader in, File file) throws IOException {
+	Polygon ring = new Polygon();
+	String line;
+
+	while ((line = nextLine(in)) != null && !line.equals("END")) {
+	    String[] values = line.split("\\s+");
+	    if (values.length != 2) {
+		throw new IOException("Invalid line in polygon-file "
+			+ file.getPath() + ": " + line);
+	    }
+
+	    double lon;
+	    double lat;
+	    try {
+		lon = Double.parseDouble(values[0]);
+		lat = Double.parseDouble(values[1]);
+	    } catch (NumberFormatException e) {
+		throw new IOException("Invalid line in polygon-file "
+			+ file.getPath() + ": " + line);
+	    }
+
+	    checksum = checksum * 31 + Double.doubleToLongBits(lon);
+	    checksum = checksum * 31 + Double.doubleToLongBits(lat);
+
+	    ring.add(lon, lat);
+	}
+
+	if (line == null) {
+	    throw new IOException("Unexpected end of polygon-file "
+		    + file.getPath());
+	}
+
+	// the ring is closed implicitly
+	return ring;
+    }
+
+    /**
+     * @return The next non-empty line without surrounding whitespace.
+     */
+    private static String nextLine(BufferedReader in) throws IOException {
+	String line;
+	while ((line = in.readLine()) != null) {
+	    line = line.trim();
+	    if (line.length() > 0) {
+		return line;
+	    }
+	}
+	return null;
+    }
+}
@@ -0,0 +1,277 @@
+package osmConverter.io;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import osmConverter.beans.LongBitSet;
+import osmConverter.beans.LongMap;
+import osmConverter.data.OsmNode;
+import osmConverter.data.OsmObject;
+import osmConverter.data.OsmRelation;
+import osmConverter.data.OsmWay;
+
+/**
+ * Reads only the entities the conversion actually needs. Most nodes of an
+ * osm-file belong to buildings, landuse etc. and are never used by the
+ * converter, so they are not kept.
+ *
+ * The file is read in two passes: the first one keeps the relevant ways and
+ * relations and marks the nodes they reference in a {@link LongBitSet}, the
+ * second one keeps only the marked nodes (plus places and POIs). If relations
+ * reference ways which weren't relevant on their own (e.g. boundary-lines) an
+ * additional pass reading only ways is done in between.
+ */
+public class SelectiveReader implements IOsmReader, IsLogging {
+
+    Logger logger;
+
+    private final IOsmReader reader;
+
+    private final LongMap<OsmNode> nodes;
+    private final LongMap<OsmWay> ways;
+    private final LongMap<OsmRelation> relations;
+
+    private final LongBitSet wantedNodes = new LongBitSet();
+    private final LongBitSet missingWays = new LongBitSet();
+
+    private IngestionFilter filter = null;
+
+    private long readNodes = 0;
+    private long readWays = 0;
+    private long readRelations = 0;
+
+    /**
+     * @param reader
+     *            The reader doing the actual work. It has to fill the same
+     *            maps this reader is created with.
+     */
+    public SelectiveReader(IOsmReader reader, LongMap<OsmNode> nodes,
+	    LongMap<OsmWay> ways, LongMap<OsmRelation> relations) {
+	logger = Logger.getLogger("defaultLog");
+
+	this.reader = reader;
+	this.nodes = nodes;
+	this.ways = ways;
+	this.relations = relations;
+    }
+
+    public void parseFile(String filename) throws Exception {
+
+	// pass 1: relevant ways and relations
+
+	reader.setFilter(new WayAndRelationPass());
+	reader.parseFile(filename);
+
+	// ways referenced by relations but not kept in pass 1
+
+	long missing = 0;
+	for (OsmRelation relation : relations.values()) {
+	    if (!needsMembers(relation) || relation.getMembers() == null) {
+		continue;
+	    }
+	    for (OsmObject member : relation.getMembers()) {
+		if (member instanceof OsmWay
+			&& !ways.containsKey(member.getId())
+			&& missingWays.add(member.getId())) {
+		    missing++;
+		}
+	    }
+	}
+
+	if (missing > 0) {
+	    logInfo("Selective reading: " + missing
+		    + " member-ways are missing, reading them.");
+	    reader.setFilter(new MissingWayPass());
+	    reader.parseFile(filename);
+	}
+
+	// pass 2: the referenced nodes
+
+	reader.setFilter(new NodePass());
+	reader.parseFile(filename);
+	reader.setFilter(filter);
+
+	logInfo("Selective reading kept " + nodes.size() + " of " + readNodes
+		+ " nodes, " + ways.size() + " of " + readWays + " ways and "
+		+ relations.size() + " of " + readRelations + " relations.");
+	logInfo("Selective reading: node-bitset uses "
+		+ (wantedNodes.memoryUsage() / 1024) + " kB for "
+		+ wantedNodes.size() + " nodes.");
+    }
+
+    /**
+     * The filter is applied on top of the selection.
+     */
+    public void setFilter(IngestionFilter filter) {
+	this.filter = filter;
+    }
+
+    public void setTagFilter(TagFilter tagFilter) {
+	reader.setTagFilter(tagFilter);
+    }
+
+    /**
+     * Ways are needed if they are converted to links (highway) or areas.
+     */
+    protected boolean isRelevant(OsmWay way) {
+	return way.getTags().containsKey("highway")
+		|| way.getTags().containsKey("area");
+    }
+
+    /**
+     * Relations are needed if they are converted to areas or restrictions.
+     */
+    protected boolean isRelevant(OsmRelation relation) {
+	return needsMembers(relation)
+		|| "restriction".equals(relation.getTags().get("type"));
+    }
+
+    /**
+     * Nodes are needed if they are referenced or carry information on their
+     * own (places for the speed-defaults, POIs).
+     */
+    protected boolean isRelevant(OsmNode node) {
+	return wantedNodes.contains(node.getId())
+		|| node.getTags().containsKey("place") || node.isRealPOI();
+    }
+
+    /**
+     * Areas are built from the geometry of their members, restrictions only
+     * need the ids.
+     */
+    private boolean needsMembers(OsmRelation relation) {
+	return relation.getTags().containsKey("area")
+		|| relation.getTags().containsKey("boundary");
+    }
+
+    private void markNodes(OsmWay way) {
+	for (long node : way.getNodes()) {
+	    wantedNodes.add(node);
+	}
+    }
+
+    @Override
+    public void logInfo(String message) {
+	logger.log(Level.INFO, message);
+    }
+
+    @Override
+    public void logWarning(String message) {
+	logger.log(Level.WARNING, message);
+    }
+
+    @Override
+    public void logError(String message) {
+	logger.log(Level.SEVERE, message);
+    }
+
+    private boolean accepts(OsmWay way) {
+	return filter == null || filter.acceptWay(way);
+    }
+
+    private class WayAndRelationPass implements IngestionFilter {
+
+	public boolean readsNodes() {
+	    return false;
+	}
+
+	public boolean readsWays() {
+	    return filter == null || filter.readsWays();
+	}
+
+	public boolean readsRelations() {
+	    return filter == null || filter.readsRelations();
+	}
+
+	public boolean acceptNode(OsmNode node) {
+	    return false;
+	}
+
+	public boolean acceptWay(OsmWay way) {
+	    readWays++;
+	    if (isRelevant(way) && accepts(way)) {
+		markNodes(way);
+		return true;
+	    }
+	    return false;
+	}
+
+	public boolean acceptRelation(OsmRelation relation) {
+	    readRelations++;
+	    if (!isRelevant(relation)
+		    || (filter != null && !filter.acceptRelation(relation))) {
+		return false;
+	    }
+
+	    if (needsMembers(relation) && relation.getMembers() != null) {
+		for (OsmObject member : relation.getMembers()) {
+		    if (member instanceof OsmNode) {
+			wantedNodes.add(member.getId());
+		    }
+		}
+	    }
+	    return true;
+	}
+    }
+
+    private class MissingWayPass implements IngestionFilter {
+
+	public boolean readsNodes() {
+	    return false;
+	}
+
+	public boolean readsWays() {
+	    return true;
+	}
+
+	public boolean readsRelations() {
+	    return false;
+	}
+
+	public boolean acceptNode(OsmNode node) {
+	    return false;
+	}
+
+	public boolean acceptWay(OsmWay way) {
+	    if (missingWays.contains(way.getId())
+		    && accepts(way)) {
+		markNodes(way);
+		return true;
+	    }
+	    return false;
+	}
+
+	public boolean acceptRelation(OsmRelation relation) {
+	    return false;
+	}
+    }
+
+    private class NodePass implements IngestionFilter {
+
+	public boolean readsNodes() {
+	    return filter == null || filter.readsNodes();
+	}
+
+	public boolean readsWays() {
+	    return false;
+	}
+
+	public boolean readsRelations() {
+	    return false;
+	}
+
+	public boolean acceptNode(OsmNode node) {
+	    readNodes++;
+	    return isRelevant(node)
+		    && (filter == null || filter.acceptNode(node));
+	}
+
+	public boolean acceptWay(OsmWay way) {
+	    return false;
+	}
+
+	public boolean acceptRelation(OsmRelation relation) {
+	    return false;
+	}
+    }
+}
@@ -20,6 +20,7 @@ import org.geotools.feature.FeatureTypeBuilder;
 import org.geotools.feature.IllegalAttributeException;
 import org.geotools.feature.SchemaException;
 
+import osmConverter.beans.LongMap;
 import osmConverter.data.Link;
 import osmConverter.data.Street;
 
@@ -39,7 +40,7 @@ public class ShapeWriter {
     private GeometryFactory geometryFactory = new GeometryFactory();
     private FeatureType featureType;
 
-    public void writeLinkShape(Map<String, Link> links, String filename)
+    public void writeLinkShape(LongMap<Link> links, String filename)
 	    throws IOException {
 
 	if (links != null && filename != null && !filename.equals("")) {
@@ -123,7 +124,7 @@ public class ShapeWriter {
 
 	Object[] attribs = new Object[7];
 	attribs[0] = ls;
-	attribs[1] = link.getId();
+	attribs[1] = String.valueOf(link.getId());
 	attribs[2] = link.getName();
 	attribs[3] = (link.getName().equals("")) ? 0 : 1;
 	attribs[4] = link.getStreetType();
@@ -140,7 +141,7 @@ public class ShapeWriter {
 
     }
 
-    private ArrayList<Feature> createLinkFeatures(Map<String, Link> links) {
+    private ArrayList<Feature> createLinkFeatures(LongMap<Link> links) {
 	this.initLinkFeatureType();
 
 	ArrayList<Feature> f = new ArrayList<Feature>();
@@ -0,0 +1,88 @@
+package osmConverter.io;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Whitelist of the tag-keys the readers keep. Tags with other keys are
+ * dropped while parsing, so their strings are never put into the tag-maps
+ * (and in .pbf-files their values are not even decoded).
+ */
+public class TagFilter {
+
+    /**
+     * The keys read by the conversion.
+     */
+    public final static String[] DEFAULT_KEYS = {
+	    // Converter: highways, lanes, restrictions, street names
+	    "highway", "lanes", "oneway", "access", "vehicle", "motor_vehicle",
+	    "name", "ref", "alt_name", "int_name", "nat_name", "reg_name",
+	    "loc_name", "unnamed", "unsigned", "name:absent",
+	    // Converter and SpeedDefaults: areas and speeds
+	    "area", "boundary", "admin_level", "place", "maxspeed",
+	    "zone:traffic", "is_in",
+	    // OsmPlace
+	    "radius", "place_radius", "diameter", "place_diameter",
+	    // PointOfInterest
+	    "amenity", "railway", "station", "shop", "public_transport",
+	    // Restriction
+	    "type", "restriction", "day_on", "day_off", "hour_on",
+	    "hour_off" };
+
+    private final Set<String> keys;
+
+    private long keptTags = 0;
+    private long droppedTags = 0;
+
+    /**
+     * Creates a filter keeping the {@link #DEFAULT_KEYS}.
+     */
+    public TagFilter() {
+	this(Arrays.asList(DEFAULT_KEYS));
+    }
+
+    public TagFilter(Collection<String> keys) {
+	this.keys = new HashSet<String>(keys);
+    }
+
+    public void addKey(String key) {
+	keys.add(key);
+    }
+
+    /**
+     * Doesn't change the filter, so it can be asked concurrently.
+     *
+     * @return true if tags with this key are kept.
+     */
+    public boolean keeps(String key) {
+	return keys.contains(key);
+    }
+
+    /**
+     * Adds the numbers of kept and dropped tags of a parsed file.
+     */
+    public synchronized void addStatistics(long kept, long dropped) {
+	keptTags += kept;
+	droppedTags += dropped;
+    }
+
+    public synchronized long getKeptTags() {
+	return keptTags;
+    }
+
+    public synchronized long getDroppedTags() {
+	return droppedTags;
+    }
+
+    /**
+     * @return The sorted keys.
+     */
+    @Override
+    public String toString() {
+	String[] sorted = keys.toArray(new String[keys.size()]);
+	Arrays.sort(sorted);
+	return Arrays.toString(sorted);
+    }
+}
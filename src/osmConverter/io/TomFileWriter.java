@@ -2,10 +2,11 @@ package osmConverter.io;
 
 import java.io.FileWriter;
 import java.io.IOException;
-import java.util.Comparator;
-import java.util.TreeMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
-import osmConverter.beans.CustomComparator;
+import osmConverter.beans.IntList;
 import osmConverter.data.Link;
 import osmConverter.data.Node;
 import osmConverter.data.StreetMap;
@@ -82,13 +83,13 @@ public class TomFileWriter {
 	try {
 	    FileWriter fw = new FileWriter("output/" + outFile, false);
 
-	    // if sorted add to a treemap which's comparator sorts after id
+	    // if sorted add to a list which is sorted after id
 	    if (sorted) {
-		Comparator<String> c = new CustomComparator();
-		TreeMap<String, Link> tm = new TreeMap<String, Link>(c);
-		tm.putAll(streetMap.getLinks());
+		List<Link> sortedLinks = new ArrayList<Link>(streetMap
+			.getLinks().values());
+		Collections.sort(sortedLinks);
 
-		for (Link link : tm.values()) {
+		for (Link link : sortedLinks) {
 		    String name = link.getName();
 		    if (name.equals(""))
 			name = "unnamed";
@@ -108,14 +109,8 @@ public class TomFileWriter {
 			    + link.getFollowingLinks().size() + separator
 			    + link.getLeadingLinks().size());
 
-		    for (String id : link.getFollowingLinks()) {
-			// fw.write(separator + (Integer.parseInt(id) - 1));
-			fw.write(separator + id);
-		    }
-		    for (String id : link.getLeadingLinks()) {
-			// fw.write(separator + (Integer.parseInt(id) - 1));
-			fw.write(separator + id);
-		    }
+		    writeIds(fw, separator, link.getFollowingLinks());
+		    writeIds(fw, separator, link.getLeadingLinks());
 
 		    fw.write("\r\n");
 		}
@@ -139,14 +134,8 @@ public class TomFileWriter {
 			    + link.getFollowingLinks().size() + separator
 			    + link.getLeadingLinks().size());
 
-		    for (String id : link.getFollowingLinks()) {
-			// fw.write(separator + (Integer.parseInt(id) - 1));
-			fw.write(separator + id);
-		    }
-		    for (String id : link.getLeadingLinks()) {
-			// fw.write(separator + (Integer.parseInt(id) - 1));
-			fw.write(separator + id);
-		    }
+		    writeIds(fw, separator, link.getFollowingLinks());
+		    writeIds(fw, separator, link.getLeadingLinks());
 
 		    fw.write("\r\n");
 		}
@@ -166,4 +155,11 @@ public class TomFileWriter {
 	    return;
 	}
     }
+
+    private void writeIds(FileWriter fw, String separator, IntList ids)
+	    throws IOException {
+	for (int i = 0; i < ids.size(); i++) {
+	    fw.write(separator + ids.get(i));
+	}
+    }
 }
@@ -0,0 +1,161 @@
+package osmConverter.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import osmConverter.data.UrbanRaster;
+
+/**
+ * Keeps the {@link UrbanRaster} of an osm-file, so later runs on the same
+ * file don't have to rasterize the town-areas and places again. The header
+ * is checked like the one of an {@link OsmSnapshot}: format-version,
+ * checksum of the source-file and the settings.
+ */
+public class UrbanRasterFile implements IsLogging {
+
+    Logger logger;
+
+    /**
+     * "OSMU", also written at the end of a complete file.
+     */
+    private final static int MAGIC = 0x4f534d55;
+
+    /**
+     * Has to be increased with every change of the format or the
+     * classification.
+     */
+    private final static int VERSION = 1;
+
+    private final File file;
+    private final File source;
+    private final String settings;
+
+    /**
+     * @param file
+     *            The raster.
+     * @param source
+     *            The osm-file the raster is made of.
+     * @param settings
+     *            Describes everything else which changes the raster (e.g.
+     *            the resolution), the raster is only used with the same
+     *            settings.
+     */
+    public UrbanRasterFile(File file, File source, String settings) {
+	logger = Logger.getLogger("defaultLog");
+
+	this.file = file;
+	this.source = source;
+	this.settings = settings;
+    }
+
+    /**
+     * @return The raster, null if it doesn't exist or doesn't belong to the
+     *         current source-file and settings.
+     */
+    public UrbanRaster read() throws IOException {
+	if (!file.isFile()) {
+	    return null;
+	}
+
+	DataInputStream in = new DataInputStream(new BufferedInputStream(
+		new FileInputStream(file), 256 * 1024));
+	try {
+	    if (!isCurrent(in)) {
+		return null;
+	    }
+
+	    UrbanRaster raster = UrbanRaster.read(in);
+	    if (in.readInt() != MAGIC) {
+		throw new IOException("missing end");
+	    }
+	    logInfo("Read urban raster " + file.getPath());
+	    return raster;
+	} catch (EOFException e) {
+	    logWarning("Urban raster " + file.getPath()
+		    + " is incomplete, it is made again.");
+	    return null;
+	} catch (IOException e) {
+	    logWarning("Urban raster " + file.getPath() + " is damaged ("
+		    + e.getMessage() + "), it is made again.");
+	    return null;
+	} finally {
+	    in.close();
+	}
+    }
+
+    /**
+     * Writes the raster. The old file is only replaced once the new one is
+     * complete.
+     */
+    public void write(UrbanRaster raster) throws IOException {
+	File temp = new File(file.getPath() + ".tmp");
+	DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+		new FileOutputStream(temp), 256 * 1024));
+
+	logInfo("Writing urban raster " + file.getPath());
+
+	try {
+	    out.writeInt(MAGIC);
+	    out.writeInt(VERSION);
+	    out.writeLong(source.length());
+	    out.writeLong(OsmSnapshot.checksum(source));
+	    out.writeUTF(settings);
+	    raster.write(out);
+	    out.writeInt(MAGIC);
+	} finally {
+	    out.close();
+	}
+	if ((file.exists() && !file.delete()) || !temp.renameTo(file)) {
+	    throw new IOException("Couldn't replace urban raster "
+		    + file.getPath());
+	}
+    }
+
+    private boolean isCurrent(DataInputStream in) throws IOException {
+	if (in.readInt() != MAGIC) {
+	    logWarning(file.getPath() + " is no urban raster, it is made again.");
+	    return false;
+	}
+	if (in.readInt() != VERSION) {
+	    logInfo("Urban raster " + file.getPath()
+		    + " has an old format, it is made again.");
+	    return false;
+	}
+	if (in.readLong() != source.length()
+		|| in.readLong() != OsmSnapshot.checksum(source)) {
+	    logInfo("Urban raster " + file.getPath() + " doesn't belong to "
+		    + source.getPath() + ", it is made again.");
+	    return false;
+	}
+	if (!settings.equals(in.readUTF())) {
+	    logInfo("Urban raster " + file.getPath()
+		    + " was made with other settings, it is made again.");
+	    return false;
+	}
+	return true;
+    }
+
+    @Override
+    public void logInfo(String message) {
+	logger.log(Level.INFO, message);
+    }
+
+    @Override
+    public void logWarning(String message) {
+	logger.log(Level.WARNING, message);
+    }
+
+    @Override
+    public void logError(String message) {
+	logger.log(Level.SEVERE, message);
+    }
+}
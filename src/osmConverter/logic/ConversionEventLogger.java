@@ -31,7 +31,7 @@ public class ConversionEventLogger implements IsLogging {
 	return scorer;
     }
 
-    public void reportUnknownHighway(String highway) {
+    public synchronized void reportUnknownHighway(String highway) {
 	if (!unreadHighways.contains(highway)) {
 	    logWarning("Converted unknown streettype: " + highway);
 	    unreadHighways.add(highway);
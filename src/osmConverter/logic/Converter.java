@@ -1,21 +1,39 @@
 package osmConverter.logic;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.xml.sax.SAXException;
 
+import osmConverter.beans.DenseNodeStore;
+import osmConverter.beans.HashMapOrder;
+import osmConverter.beans.IntList;
+import osmConverter.beans.LongMap;
+import osmConverter.beans.NodeStore;
+import osmConverter.beans.Partitions;
+import osmConverter.beans.SparseNodeStore;
+import osmConverter.beans.SymbolTable;
 import osmConverter.constants.HighwayDefaults;
 import osmConverter.constants.LaneDefaults;
 import osmConverter.constants.SpeedDefaults;
+import osmConverter.constants.TagSymbols;
 import osmConverter.data.Link;
+import osmConverter.data.LinkGraph;
 import osmConverter.data.MyArea;
 import osmConverter.data.Node;
 import osmConverter.data.OsmNode;
@@ -26,9 +44,22 @@ import osmConverter.data.PointOfInterest;
 import osmConverter.data.Restriction;
 import osmConverter.data.Street;
 import osmConverter.data.StreetMap;
+import osmConverter.data.UrbanRaster;
+import osmConverter.io.ClipRegion;
+import osmConverter.io.ClippingReader;
+import osmConverter.io.IOsmReader;
+import osmConverter.io.InputFiles;
 import osmConverter.io.IsLogging;
+import osmConverter.io.NodeStoreFilter;
+import osmConverter.io.OsmChangeReader;
 import osmConverter.io.OsmReader;
+import osmConverter.io.OsmScanner;
+import osmConverter.io.OsmSnapshot;
+import osmConverter.io.PbfReader;
+import osmConverter.io.SelectiveReader;
+import osmConverter.io.TagFilter;
 import osmConverter.io.TomFileWriter;
+import osmConverter.io.UrbanRasterFile;
 
 /**
  * This class provides all functionality to convert an osm-map to a normed map.
@@ -39,41 +70,75 @@ import osmConverter.io.TomFileWriter;
  */
 public class Converter implements IsLogging, IConverter {
 
+    /**
+     * Number of ways converted by one task of the parallel
+     * highway-conversion.
+     */
+    private final static int WAYS_PER_TASK = 4096;
+
     private ConversionEventLogger conversionLogger;
-    int trafficZoneSet = 0;
 
-    private boolean firstTimeUntyped = true;
+    /*
+     * The counters are atomic, as the highways may be converted by several
+     * threads.
+     */
+    final AtomicInteger trafficZoneSet = new AtomicInteger();
+
+    private final AtomicBoolean firstTimeUntyped = new AtomicBoolean(true);
 
     private HighwayDefaults highwayDefaults = new HighwayDefaults();
 
     private final LaneDefaults laneDefaults;
-    private Map<String, Link> links = new HashMap<String, Link>();
+    private LongMap<Link> links = new LongMap<Link>();
     private Logger logger;
 
-    private int maxspeedTotal = 0;
+    private final AtomicInteger maxspeedTotal = new AtomicInteger();
 
-    private final Map<String, MyArea> myAreas = new HashMap<String, MyArea>();
-    private Map<String, Node> nodes = new HashMap<String, Node>();
+    private final LongMap<MyArea> myAreas = new LongMap<MyArea>();
+    private LongMap<Node> nodes = new LongMap<Node>();
     private Logger osmLogger;
-    private final Map<String, OsmNode> osmNodes = new HashMap<String, OsmNode>();
-    private final Map<String, OsmRelation> osmRelations = new HashMap<String, OsmRelation>();
+    private final LongMap<OsmNode> osmNodes = new LongMap<OsmNode>();
+    private final LongMap<OsmRelation> osmRelations = new LongMap<OsmRelation>();
 
-    private final Map<String, OsmWay> osmWays = new HashMap<String, OsmWay>();
+    private final LongMap<OsmWay> osmWays = new LongMap<OsmWay>();
     private List<PointOfInterest> pointOfInterest = new ArrayList<PointOfInterest>();
 
-    private int restCount = 0;
+    private final AtomicInteger restCount = new AtomicInteger();
 
     private List<Restriction> restrictions = new ArrayList<Restriction>();
 
     private SpeedDefaults speedDefaults;
-    private int speedSet = 0;
+    private final AtomicInteger speedSet = new AtomicInteger();
 
     private StreetMap streetMap;
 
-    private Map<String, Node> tempNodes = new HashMap<String, Node>();
+    private LongMap<Node> tempNodes = new LongMap<Node>();
     
     private final String[] logs;
 
+    private int threads = 1;
+
+    private boolean selective = false;
+
+    private String nodeStoreType = null;
+    private NodeStore nodeStore;
+
+    private TagFilter tagFilter = new TagFilter();
+
+    private ClipRegion clipRegion = null;
+
+    private boolean xmlScanner = false;
+
+    private boolean urbanDetection = false;
+
+    private double urbanRasterResolution = 0;
+
+    private String urbanRasterFile = null;
+
+    private List<String> changeFiles = new ArrayList<String>();
+
+    private String snapshotFile = null;
+
     /**
      * Creates a new {@link Converter} which converts an osm-map to a specified
      * output format.
@@ -92,16 +157,6 @@ public class Converter implements IsLogging, IConverter {
 	this.logs = logs;
     }
 
-    private void assignCoordsAndTagsToLinkNodes() {
-	for (OsmWay osmWay : osmWays.values()) {
-	    for (OsmNode node : osmWay.getNodes()) {
-		node.setLon(osmNodes.get(node.getId()).getLon());
-		node.setLat(osmNodes.get(node.getId()).getLat());
-		node.setTags(osmNodes.get(node.getId()).getTags());
-	    }
-	}
-    }
-
     private void checkForTagConflicts(OsmWay osmWay, Link link) {
 
 	// check for conflicts concerning maxspeed tag
@@ -114,8 +169,7 @@ public class Converter implements IsLogging, IConverter {
 	for (Link link : links.values()) {
 	    if (!tempNodes.containsKey(link.getStartNodeId())
 		    || !tempNodes.containsKey(link.getEndNodeId())) {
-		logError("Link : " + link.getId().toString()
-			+ " is missing a node!");
+		logError("Link : " + link.getId() + " is missing a node!");
 		counter++;
 	    }
 	}
@@ -130,7 +184,7 @@ public class Converter implements IsLogging, IConverter {
      * 
      * @param ids
      */
-    private void cleanProhibitedManeuvers(Map<String, Collection<Link>> ids) {
+    private void cleanProhibitedManeuvers(LongMap<Collection<Link>> ids) {
 	for (Iterator<Restriction> it = restrictions.iterator(); it.hasNext();) {
 
 	    Restriction rest = it.next();
@@ -156,9 +210,9 @@ public class Converter implements IsLogging, IConverter {
      *            Index for the first Id (necessary for a unique Id)
      * @return {@link Map} of the newly generated {link Link}s.
      */
-    public Map<String, Link> convertHighway(OsmWay osmWay, int firstId) {
+    public LongMap<Link> convertHighway(OsmWay osmWay, int firstId) {
 
-	if (osmWay.getTags().containsKey("highway")) {
+	if (osmWay.getTagSymbol(TagSymbols.HIGHWAY) != SymbolTable.NONE) {
 
 	    Link link = new Link();
 
@@ -205,37 +259,149 @@ public class Converter implements IsLogging, IConverter {
      * 
      * @param idAssignment
      */
-    private void convertHighways(Map<String, Collection<Link>> idAssignment) {
+    private void convertHighways(LongMap<Collection<Link>> idAssignment)
+	    throws Exception {
 	List<String> onlyPrintItOnce = new ArrayList<String>();
-	for (OsmWay osmWay : osmWays.values()) {
-	    if (osmWay.getTags().containsKey("highway")) {
+	List<OsmWay> highways = new ArrayList<OsmWay>();
+
+	// in the order of the former HashMap of the ways, so the links get the
+	// same ids as before (see HashMapOrder)
+	for (long wayId : HashMapOrder.sort(osmWays.keys())) {
+	    OsmWay osmWay = osmWays.get(wayId);
+	    int highway = osmWay.getTagSymbol(TagSymbols.HIGHWAY);
+	    if (highway != SymbolTable.NONE) {
 
 		// skip the conversion of ways which are irrelevant for the map
 
-		if (osmWay.getTags().get("highway").equals("")
-			|| osmWay.getTags().get("highway").equals("proposed")
-			|| osmWay.getTags().get("highway").equals("dismantled")
-			|| osmWay.getTags().get("highway")
-				.equals("construction")
-			|| osmWay.getTags().get("highway").equals("raceway")
-			|| osmWay.getTags().get("highway").equals("planned")) {
+		if (highway == TagSymbols.EMPTY || highway == TagSymbols.PROPOSED
+			|| highway == TagSymbols.DISMANTLED
+			|| highway == TagSymbols.CONSTRUCTION
+			|| highway == TagSymbols.RACEWAY
+			|| highway == TagSymbols.PLANNED) {
 
-		    if (!onlyPrintItOnce.contains(osmWay.getTags().get(
-			    "highway"))) {
+		    if (!onlyPrintItOnce.contains(SymbolTable.get(highway))) {
 			logInfo("Ways of type highway = "
-				+ osmWay.getTags().get("highway") + " skipped!");
-			onlyPrintItOnce.add(osmWay.getTags().get("highway"));
+				+ SymbolTable.get(highway) + " skipped!");
+			onlyPrintItOnce.add(SymbolTable.get(highway));
 		    }
 		    continue;
 		}
+		highways.add(osmWay);
+	    }
+	}
 
-		Map<String, Link> currentLinks = this.convertHighway(osmWay,
+	if (threads > 1) {
+	    convertHighwaysParallel(highways, idAssignment);
+	} else {
+	    for (OsmWay osmWay : highways) {
+		LongMap<Link> currentLinks = this.convertHighway(osmWay,
 			links.size());
 		if (currentLinks != null) {
-		    links.putAll(currentLinks);
-		    idAssignment.put(osmWay.getId(), currentLinks.values());
+		    addLinks(osmWay, currentLinks, idAssignment);
+		}
+	    }
+	}
+
+	links = HashMapOrder.sort(links);
+    }
+
+    /**
+     * Adds the links of a way in the order of the former HashMap of its
+     * links, the order of the maneuvers of the restrictions depends on it.
+     */
+    private void addLinks(OsmWay osmWay, LongMap<Link> currentLinks,
+	    LongMap<Collection<Link>> idAssignment) {
+	LongMap<Link> ordered = HashMapOrder.sort(currentLinks);
+	links.putAll(ordered);
+	idAssignment.put(osmWay.getId(), ordered.values());
+    }
+
+    /**
+     * Converts the highways with several threads. The number of links of
+     * every way is known in advance, so the first id of each way is the sum
+     * of the links of all ways before it. The ways can be converted in any
+     * order then, and the links are merged in the order of the ways, so ids
+     * and maps are the same as with one thread.
+     * 
+     * @param highways
+     *            The ways to convert, the links get their ids in this order.
+     * @param idAssignment
+     * @throws Exception
+     */
+    private void convertHighwaysParallel(final List<OsmWay> highways,
+	    LongMap<Collection<Link>> idAssignment) throws Exception {
+	final int[] firstIds = new int[highways.size()];
+	int id = links.size();
+	for (int i = 0; i < highways.size(); i++) {
+	    firstIds[i] = id;
+	    id += countLinks(highways.get(i));
+	}
+
+	ExecutorService executor = Executors.newFixedThreadPool(threads);
+	List<Future<List<LongMap<Link>>>> tasks = new ArrayList<Future<List<LongMap<Link>>>>();
+
+	logInfo("Converting " + highways.size() + " highways with " + threads
+		+ " threads.");
+
+	try {
+	    for (int start = 0; start < highways.size(); start += WAYS_PER_TASK) {
+		final int from = start;
+		final int to = Math.min(start + WAYS_PER_TASK, highways.size());
+
+		tasks.add(executor.submit(new Callable<List<LongMap<Link>>>() {
+		    @Override
+		    public List<LongMap<Link>> call() {
+			List<LongMap<Link>> result = new ArrayList<LongMap<Link>>(
+				to - from);
+			for (int i = from; i < to; i++) {
+			    result.add(convertHighway(highways.get(i),
+				    firstIds[i]));
+			}
+			return result;
+		    }
+		}));
+	    }
+
+	    int index = 0;
+	    for (Future<List<LongMap<Link>>> task : tasks) {
+		for (LongMap<Link> currentLinks : waitFor(task)) {
+		    OsmWay osmWay = highways.get(index);
+		    int expected = (index + 1 < firstIds.length ? firstIds[index + 1]
+			    : id) - firstIds[index];
+		    if (currentLinks.size() != expected) {
+			throw new IllegalStateException("Way " + osmWay.getId()
+				+ " was converted to " + currentLinks.size()
+				+ " links instead of " + expected);
+		    }
+
+		    addLinks(osmWay, currentLinks, idAssignment);
+		    index++;
 		}
 	    }
+	} finally {
+	    executor.shutdownNow();
+	}
+    }
+
+    /**
+     * @return The number of links {@link #splitLinks(OsmWay, int, Link)}
+     *         creates for the way: one per segment, two if the way isn't a
+     *         oneway.
+     */
+    private int countLinks(OsmWay osmWay) {
+	int segments = Math.max(0, osmWay.getNodeCount() - 1);
+	return isOneWay(osmWay.getTags().get("oneway")) ? segments
+		: segments * 2;
+    }
+
+    private <T> T waitFor(Future<T> future) throws Exception {
+	try {
+	    return future.get();
+	} catch (ExecutionException e) {
+	    if (e.getCause() instanceof Exception) {
+		throw (Exception) e.getCause();
+	    }
+	    throw new RuntimeException(e.getCause());
 	}
     }
 
@@ -251,64 +417,98 @@ public class Converter implements IsLogging, IConverter {
      */
     public StreetMap convertMap(String filename, boolean b)
 	    throws SAXException, Exception {
+	if (!changeFiles.isEmpty() && (selective || clipRegion != null)) {
+	    // a changed way may reference nodes the reader left out, they are
+	    // not part of the change-file
+	    throw new IllegalStateException("Change-files can't be applied"
+		    + " to a file read selectively or clipped");
+	}
+
 	// init the reader
-	OsmReader osmReader = new OsmReader(osmNodes, osmWays, osmRelations);
-	osmReader.parseFile(filename);
+	nodeStore = createNodeStore();
+	try {
+	    if (!readSnapshot(filename)) {
+		IOsmReader osmReader = createReader(filename);
+		osmReader.parseFile(filename);
+		writeSnapshot(filename);
+	    }
 
-	// start to convert the map
-	logInfo("starting conversion");
+	    for (String changeFile : changeFiles) {
+		applyChanges(changeFile);
+	    }
+
+	    if (nodeStoreType != null) {
+		logInfo("Node-store (" + nodeStoreType + ") holds "
+			+ nodeStore.size() + " nodes, " + osmNodes.size()
+			+ " tagged nodes are kept as objects.");
+	    }
 
-	speedDefaults = new SpeedDefaults(osmNodes, logs,
-		conversionLogger);
+	    // start to convert the map
+	    logInfo("starting conversion");
 
-	// give OsmWay.nodes their coordinates
+	    speedDefaults = new SpeedDefaults(osmNodes, logs,
+		    conversionLogger);
 
-	assignCoordsAndTagsToLinkNodes();
-	convertNodes();
+	    convertNodes();
 
-	for (OsmWay osmWay : osmWays.values()) {
-	    if (osmWay.getTags().containsKey("area")) {
-		this.createUrbanAreas(osmWay);
+	    for (OsmWay osmWay : osmWays.values()) {
+		if (osmWay.getTags().containsKey("area")) {
+		    this.createUrbanAreas(osmWay);
+		}
 	    }
-	}
 
-	// convert relations
-
-	for (OsmRelation osmRelation : osmRelations.values()) {
-	    if (osmRelation.getTags().containsKey("area")
-		    || osmRelation.getTags().containsKey("boundary")) {
-		this.createUrbanAreas(osmRelation);
-	    } else if (osmRelation.getTags().containsKey("type")) {
-		if (osmRelation.getTags().get("type").equals("restriction")) {
-		    Restriction rest = new Restriction();
-		    if (rest.createRestriction(osmRelation)) {
-			restrictions.add(rest);
+	    // convert relations
+
+	    for (long relationId : HashMapOrder.sort(osmRelations.keys())) {
+		OsmRelation osmRelation = osmRelations.get(relationId);
+		if (osmRelation.getTags().containsKey("area")
+			|| osmRelation.getTags().containsKey("boundary")) {
+		    this.createUrbanAreas(osmRelation);
+		} else if (osmRelation.getTags().containsKey("type")) {
+		    if (osmRelation.getTags().get("type")
+			    .equals("restriction")) {
+			Restriction rest = new Restriction();
+			if (rest.createRestriction(osmRelation)) {
+			    restrictions.add(rest);
+			}
 		    }
 		}
 	    }
-	}
 
-	Map<String, Collection<Link>> idAssignment = new HashMap<String, Collection<Link>>();
-	convertHighways(idAssignment);
+	    if (urbanDetection) {
+		speedDefaults.setUrbanAreas(myAreas);
+		if (urbanRasterResolution > 0) {
+		    speedDefaults.setUrbanRaster(loadUrbanRaster(filename));
+		}
+	    }
 
-	conversionLogger.logInfo("new map contains links: " + links.size());
-	conversionLogger.logInfo("new map contains nodes: " + tempNodes.size());
-	conversionLogger.logInfo("number of restrictions on relevant links: "
-		+ restCount);
-	conversionLogger.logInfo("number of deleted maneuvers: "
-		+ restrictions.size());
+	    LongMap<Collection<Link>> idAssignment = new LongMap<Collection<Link>>();
+	    convertHighways(idAssignment);
+	    convertStoredLinkNodes();
 
-	conversionLogger.logInfo("number of traffic:zone-tags: "
-		+ trafficZoneSet);
+	    conversionLogger.logInfo("new map contains links: " + links.size());
+	    conversionLogger.logInfo("new map contains nodes: "
+		    + tempNodes.size());
+	    conversionLogger
+		    .logInfo("number of restrictions on relevant links: "
+			    + restCount);
+	    conversionLogger.logInfo("number of deleted maneuvers: "
+		    + restrictions.size());
 
-	checkIfAllReferencedNodesExist();
-	removeUnusedNodes();
+	    conversionLogger.logInfo("number of traffic:zone-tags: "
+		    + trafficZoneSet);
 
-	this.deriveEdgeData();
+	    checkIfAllReferencedNodesExist();
+	    removeUnusedNodes();
 
-	this.deleteProhibitedManeuvers(idAssignment);
+	    this.deriveEdgeData();
 
-	createStreetMap(b);
+	    this.deleteProhibitedManeuvers(idAssignment);
+
+	    createStreetMap(b);
+	} finally {
+	    nodeStore.close();
+	}
 
 	return streetMap;
     }
@@ -382,6 +582,248 @@ public class Converter implements IsLogging, IConverter {
 	}
     }
 
+    /**
+     * Chooses the reader fitting to the format of the file. .pbf-Files are
+     * read by the {@link PbfReader}, everything else is treated as .osm-File
+     * (possibly compressed, see {@link InputFiles}).
+     * With a clip-region only its part of the file is read (see
+     * {@link ClippingReader}). In selective mode only the needed entities are
+     * kept (see {@link SelectiveReader}).
+     * 
+     * @param filename
+     *            The file to be read.
+     * @return A reader filling the osm-maps of this converter.
+     * @throws Exception
+     */
+    private IOsmReader createReader(String filename) throws Exception {
+	IOsmReader reader;
+
+	if (filename.toLowerCase().endsWith(".pbf")) {
+	    reader = new PbfReader(osmNodes, osmWays, osmRelations, threads);
+	} else {
+	    OsmReader osmReader = new OsmReader(osmNodes, osmWays,
+		    osmRelations, threads);
+	    osmReader.setScanner(xmlScanner);
+	    reader = osmReader;
+	}
+
+	if (clipRegion != null) {
+	    reader = new ClippingReader(reader, clipRegion);
+	}
+
+	if (selective) {
+	    reader = new SelectiveReader(reader, osmNodes, osmWays,
+		    osmRelations);
+	}
+
+	if (nodeStoreType != null) {
+	    reader.setFilter(new NodeStoreFilter(nodeStore, null));
+	}
+	reader.setTagFilter(tagFilter);
+
+	return reader;
+    }
+
+    /**
+     * Fills the osm-maps from the snapshot of the file, if there is a current
+     * one (see {@link #setSnapshot(String)}).
+     * 
+     * @return false if the file has to be parsed.
+     * @throws IOException
+     */
+    private boolean readSnapshot(String filename) throws IOException {
+	if (snapshotFile == null) {
+	    return false;
+	}
+	if (nodeStoreType != null) {
+	    logWarning("Snapshots can't be used with a node-store, the file is parsed.");
+	    return false;
+	}
+	return createSnapshot(filename).read(osmNodes, osmWays, osmRelations);
+    }
+
+    /**
+     * Writes the parsed osm-maps to the snapshot, if one is used. A failure
+     * only costs the next run the parsing, so it doesn't stop the conversion.
+     */
+    private void writeSnapshot(String filename) {
+	if (snapshotFile == null || nodeStoreType != null) {
+	    return;
+	}
+	try {
+	    createSnapshot(filename).write(osmNodes, osmWays, osmRelations);
+	} catch (IOException e) {
+	    logWarning("Couldn't write snapshot " + snapshotFile + ": "
+		    + e.getMessage());
+	}
+    }
+
+    /**
+     * The snapshot of the file read with the current settings.
+     */
+    private OsmSnapshot createSnapshot(String filename) {
+	return new OsmSnapshot(new File(snapshotFile), new File(filename),
+		getReadSettings());
+    }
+
+    /**
+     * @return The settings which change the read osm-maps.
+     */
+    private String getReadSettings() {
+	return "tags=" + (tagFilter == null ? "all" : tagFilter.toString())
+		+ ";selective=" + selective + ";clip=" + clipRegion;
+    }
+
+    /**
+     * Reads the urban raster of the file if there is a current one (see
+     * {@link #setUrbanRasterFile(String)}), otherwise the town-areas and
+     * places are rasterized. A failure to write the raster only costs the
+     * next run the rasterization, so it doesn't stop the conversion.
+     * 
+     * @return null if the town-areas and places can't be rasterized.
+     */
+    private UrbanRaster loadUrbanRaster(String filename) {
+	UrbanRasterFile file = null;
+	if (urbanRasterFile != null) {
+	    StringBuilder settings = new StringBuilder(getReadSettings());
+	    for (String changeFile : changeFiles) {
+		File change = new File(changeFile);
+		settings.append(";change=").append(changeFile).append('@')
+			.append(change.length()).append('@')
+			.append(change.lastModified());
+	    }
+	    settings.append(";resolution=").append(urbanRasterResolution);
+	    file = new UrbanRasterFile(new File(urbanRasterFile), new File(
+		    filename), settings.toString());
+
+	    try {
+		UrbanRaster raster = file.read();
+		if (raster != null) {
+		    return raster;
+		}
+	    } catch (IOException e) {
+		logWarning("Couldn't read urban raster " + urbanRasterFile
+			+ ": " + e.getMessage());
+	    }
+	}
+
+	UrbanRaster raster = speedDefaults
+		.createUrbanRaster(urbanRasterResolution);
+	if (raster != null && file != null) {
+	    try {
+		file.write(raster);
+	    } catch (IOException e) {
+		logWarning("Couldn't write urban raster " + urbanRasterFile
+			+ ": " + e.getMessage());
+	    }
+	}
+	return raster;
+    }
+
+    /**
+     * Applies an OsmChange-file to the read osm-maps before the full
+     * conversion. The changed nodes are put into the node-store like the read
+     * ones. Nothing of an earlier conversion is reused, with a snapshot only
+     * parsing the file is saved.
+     * 
+     * @param filename
+     *            The .osc-file (possibly compressed).
+     * @throws Exception
+     */
+    private void applyChanges(String filename) throws Exception {
+	OsmChangeReader reader = new OsmChangeReader(osmNodes, osmWays,
+		osmRelations);
+
+	if (nodeStoreType != null) {
+	    reader.setFilter(new NodeStoreFilter(nodeStore, null));
+	}
+	reader.setTagFilter(tagFilter);
+
+	logInfo("Applying change-file " + filename
+		+ " before the full conversion");
+	reader.parseFile(filename);
+    }
+
+    /**
+     * Creates the store the coordinates of the nodes are read from. Without
+     * a node-store-type they are read from the {@link OsmNode}s, otherwise
+     * the coordinates are kept in a memory-mapped file in the
+     * output-directory (see {@link #setNodeStore(String)}).
+     * 
+     * @return The store.
+     * @throws IOException
+     */
+    private NodeStore createNodeStore() throws IOException {
+	if (nodeStoreType == null) {
+	    return new NodeStore() {
+
+		public void put(long id, double lon, double lat) {
+		    OsmNode node = osmNodes.get(id);
+		    if (node == null) {
+			osmNodes.put(id, new OsmNode(id, lon, lat));
+		    } else {
+			node.setLon(lon);
+			node.setLat(lat);
+		    }
+		}
+
+		public boolean contains(long id) {
+		    return osmNodes.containsKey(id);
+		}
+
+		public double getLon(long id) {
+		    OsmNode node = osmNodes.get(id);
+		    return node == null ? Double.NaN : node.getLon();
+		}
+
+		public double getLat(long id) {
+		    OsmNode node = osmNodes.get(id);
+		    return node == null ? Double.NaN : node.getLat();
+		}
+
+		public long size() {
+		    return osmNodes.size();
+		}
+
+		public void close() {
+		}
+	    };
+	}
+
+	File directory = new File("output");
+	File file = File.createTempFile("nodes", ".store",
+		directory.isDirectory() ? directory : null);
+
+	if (nodeStoreType.equals("sparse")) {
+	    return new SparseNodeStore(file);
+	} else {
+	    return new DenseNodeStore(file);
+	}
+    }
+
+    /**
+     * Nodes without tags are only kept in the node-store if there is one, so
+     * the nodes used by links are created from it.
+     */
+    private void convertStoredLinkNodes() {
+	for (Link link : links.values()) {
+	    convertStoredNode(link.getStartNodeId());
+	    convertStoredNode(link.getEndNodeId());
+	}
+    }
+
+    private void convertStoredNode(long id) {
+	if (tempNodes.containsKey(id) || !nodeStore.contains(id)) {
+	    return;
+	}
+
+	Node node = new Node();
+	node.setId(id);
+	node.setLon(nodeStore.getLon(id));
+	node.setLat(nodeStore.getLat(id));
+	tempNodes.put(id, node);
+    }
+
     /**
      * Create an advanced node, which also inherits the tags from its original
      * {@link OsmWay}.
@@ -402,14 +844,15 @@ public class Converter implements IsLogging, IConverter {
      * @param b
      *            Is true if the simple-map shall be generated.
      */
-    private void createStreetMap(boolean b) {
+    private void createStreetMap(boolean b) throws InterruptedException {
 	streetMap = new StreetMap();
 
 	streetMap.setLinks(links);
-	streetMap.setNodes(tempNodes);
+	streetMap.setNodes(HashMapOrder.sort(tempNodes));
+	streetMap.setGraph(LinkGraph.of(links));
 
 	if (b)
-	    streetMap.setStreets(this.generateSimpleMap());
+	    streetMap.setStreets(this.generateSimpleMap(streetMap.getGraph()));
     }
 
     /**
@@ -459,10 +902,10 @@ public class Converter implements IsLogging, IConverter {
 
 	// create area
 	if (osmObject instanceof OsmWay) {
-	    myArea.createAreaFromWay((OsmWay) osmObject);
+	    myArea.createAreaFromWay((OsmWay) osmObject, nodeStore);
 	} else if (osmObject instanceof OsmRelation) {
 	    myArea.createAreaFromRelation((OsmRelation) osmObject, osmWays,
-		    osmNodes);
+		    nodeStore);
 	} else {
 	    return;
 	}
@@ -470,7 +913,7 @@ public class Converter implements IsLogging, IConverter {
 	myArea.addTags(osmObject.getTags());
 	myArea.setId(osmObject.getId());
 
-	if (myArea.getLatCoordinates() == null) {
+	if (myArea.getPolygon().size() == 0) {
 	    return;
 	}
 
@@ -482,7 +925,7 @@ public class Converter implements IsLogging, IConverter {
      * 
      * @param ids
      */
-    private void deleteProhibitedManeuvers(Map<String, Collection<Link>> ids) {
+    private void deleteProhibitedManeuvers(LongMap<Collection<Link>> ids) {
 
 	List<Restriction> temp = new ArrayList<Restriction>();
 
@@ -505,9 +948,9 @@ public class Converter implements IsLogging, IConverter {
 			if (links.get(from.getId()).getFollowingLinks()
 				.contains(to.getId())) {
 			    links.get(from.getId()).getFollowingLinks()
-				    .remove(to.getId());
+				    .removeValue(to.getId());
 			    links.get(to.getId()).getLeadingLinks()
-				    .remove(from.getId());
+				    .removeValue(from.getId());
 
 			    removed = true;
 			}
@@ -522,11 +965,11 @@ public class Converter implements IsLogging, IConverter {
 			if (links.get(from.getId()).getFollowingLinks()
 				.contains(to.getId())) {
 
-			    List<String> follow = new ArrayList<String>();
+			    IntList follow = new IntList();
 			    follow.add(to.getId());
 			    links.get(from.getId()).setFollowingLinks(follow);
 
-			    List<String> lead = new ArrayList<String>();
+			    IntList lead = new IntList();
 			    lead.add(from.getId());
 			    links.get(to.getId()).setLeadingLinks(lead);
 
@@ -554,249 +997,49 @@ public class Converter implements IsLogging, IConverter {
      * 
      * @param streetMap
      */
-    private void deriveEdgeData() {
-	Map<String, ArrayList<String>> leader = new HashMap<String, ArrayList<String>>();
-	Map<String, ArrayList<String>> follower = new HashMap<String, ArrayList<String>>();
-
-	for (Link link : links.values()) {
-
-	    if (leader.containsKey(link.getEndNodeId())) {
-		ArrayList<String> temp = leader.get(link.getEndNodeId());
-		temp.add(link.getId());
-		leader.put(link.getEndNodeId(), temp);
-	    } else {
-		ArrayList<String> temp = new ArrayList<String>();
-		temp.add(link.getId());
-		leader.put(link.getEndNodeId(), temp);
-	    }
-
-	    if (follower.containsKey(link.getStartNodeId())) {
-		ArrayList<String> temp = follower.get(link.getStartNodeId());
-		temp.add(link.getId());
-		follower.put(link.getStartNodeId(), temp);
-	    } else {
-		ArrayList<String> temp = new ArrayList<String>();
-		temp.add(link.getId());
-		follower.put(link.getStartNodeId(), temp);
-	    }
-	}
-
-	for (Link link : links.values()) {
-
-	    ArrayList<String> tempFollow = follower.get(link.getEndNodeId());
-	    if (tempFollow == null) {
-		tempFollow = new ArrayList<String>();
-	    }
-
-	    ArrayList<String> follow = new ArrayList<String>();
-
-	    for (String id : tempFollow) {
-		if ((links.get(id).getStartNodeId()
-			.equals(link.getStartNodeId()) && links.get(id)
-			.getEndNodeId().equals(link.getEndNodeId()))
-			|| links.get(id).getStartNodeId()
-				.equals(link.getEndNodeId())
-			&& links.get(id).getEndNodeId()
-				.equals(link.getStartNodeId())) {
-		} else {
-		    follow.add(id);
-		}
-	    }
-
-	    ArrayList<String> tempLead = leader.get(link.getStartNodeId());
-	    ArrayList<String> lead = new ArrayList<String>();
-
-	    if (tempLead == null) {
-		tempLead = new ArrayList<String>();
-	    }
-
-	    for (String id : tempLead) {
-		if ((links.get(id).getStartNodeId()
-			.equals(link.getStartNodeId()) && links.get(id)
-			.getEndNodeId().equals(link.getEndNodeId()))
-			|| links.get(id).getStartNodeId()
-				.equals(link.getEndNodeId())
-			&& links.get(id).getEndNodeId()
-				.equals(link.getStartNodeId())) {
-		} else {
-		    lead.add(id);
-		}
-	    }
-
-	    link.setFollowingLinks(follow);
-	    link.setLeadingLinks(lead);
-	}
+    private void deriveEdgeData() throws InterruptedException {
+	final LinkGraph graph = LinkGraph.derive(links, threads);
+	// the ordinals of the graph are the positions in the map
+	final Link[] ordered = links.values().toArray(new Link[links.size()]);
+
+	Partitions.run(ordered.length, threads,
+		LinkGraph.LINKS_PER_PARTITION, new Partitions.Task() {
+		    @Override
+		    public void run(int from, int to) {
+			for (int i = from; i < to; i++) {
+			    ordered[i].setFollowingLinks(graph
+				    .getFollowingLinks(i));
+			    ordered[i].setLeadingLinks(graph
+				    .getLeadingLinks(i));
+			}
+		    }
+		});
     }
 
     /**
-     * Generate the minimum-map for better software-performance.
+     * Generate the minimum-map for better software-performance. Links
+     * between two crossings with the same name and speed are merged to one
+     * street, see {@link StreetContraction}.
      * 
+     * @param graph
+     *            The adjacency of the links.
      * @return the minimum-map
+     * @throws InterruptedException
      */
-    private Map<Integer, Street> generateSimpleMap() {
-
-	Map<Integer, Street> streets = new HashMap<Integer, Street>();
-	List<Integer> help = new ArrayList<Integer>();
-	int id = 0;
-
-	for (Link link : links.values()) {
-	    if (link.getStreetType() < 5
-		    && !help.contains(Integer.parseInt(link.getId()))) {
-		List<String> edgeIDs = new ArrayList<String>();
-		edgeIDs.add(link.getId());
-		double length = link.getLength();
-		Street coords = new Street();
-		coords.setId(id);
-		coords.setStartLon(link.getStartLon());
-		coords.setStartLat(link.getStartLat());
-		coords.setLeadingStreets(link.getLeadingLinks());
-		coords.setEndLon(link.getEndLon());
-		coords.setEndLat(link.getEndLat());
-		coords.setFollowingStreets(link.getFollowingLinks());
-		coords.setStreetType(link.getStreetType());
-		coords.setName(link.getName());
-		coords.setSpeed(link.getSpeed());
-		links.get(link.getId()).setStreetID(id);
-		help.add(Integer.parseInt(link.getId()));
-		Link acLink = links.get(link.getId());
-		boolean found = true;
-		while (found) {
-		    // test for crossings
-		    found = false;
-		    int count = 0;
-		    String fid = "";
-		    for (String follow : acLink.getFollowingLinks()) {
-			if (links.get(follow).getStreetType() < 5) {
-			    count++;
-			    fid = follow;
-			}
-		    }
-
-		    // if not a crossing, check if there's just one leading-link
-
-		    if (count == 1) {
-			found = true;
-			Link followEdge = links.get(fid);
-			count = 0;
-			for (String follow : followEdge.getLeadingLinks()) {
-			    if (links.get(follow).getStreetType() < 5) {
-				count++;
-			    }
-			}
-
-			// if also maxspeed and name are the same, the link
-			// wasn't already treated and its not the opposite
-			// direction: add it to the street.
-
-			if (count != 1
-				|| !followEdge.getName().equals(
-					acLink.getName())
-				|| followEdge.getSpeed() != acLink.getSpeed()
-				|| help.contains(Integer.parseInt(followEdge
-					.getId()))
-				|| acLink.getStartNodeId().equals(
-					followEdge.getEndNodeId())) {
-			    found = false;
-			}
-			if (found) {
-			    coords.setEndLon(followEdge.getEndLon());
-			    coords.setEndLat(followEdge.getEndLat());
-			    coords.setFollowingStreets(followEdge
-				    .getFollowingLinks());
-			    edgeIDs.add(followEdge.getId());
-			    help.add(Integer.parseInt(followEdge.getId()));
-			    length += followEdge.getLength();
-			    links.get(followEdge.getId()).setStreetID(id);
-			    acLink = followEdge;
-			}
-		    }
-		}
-		// opposite direction
-		found = true;
-		while (found) {
-		    // test for crossings
-		    found = false;
-		    int count = 0;
-		    String fid = "";
-		    for (String follow : link.getLeadingLinks()) {
-			if (links.get(follow).getStreetType() < 5) {
-			    count++;
-			    fid = follow;
-			}
-		    }
-
-		    // if not a crossing, check if there's just one leading-link
-
-		    if (count == 1) {
-			found = true;
-			Link followEdge = links.get(fid);
-			count = 0;
-			for (String follow : followEdge.getFollowingLinks()) {
-			    if (links.get(follow).getStreetType() < 5) {
-				count++;
-			    }
-			}
-
-			// if also maxspeed and name are the same, the link
-			// wasn't already treated and its not the opposite
-			// direction: add it to the street.
-
-			if (count != 1
-				|| !followEdge.getName().equals(link.getName())
-				|| followEdge.getSpeed() != link.getSpeed()
-				|| help.contains(Integer.parseInt(followEdge
-					.getId()))
-				|| link.getEndNodeId().equals(
-					followEdge.getStartNodeId())) {
-			    found = false;
-			}
-			if (found) {
-			    coords.setStartLon(followEdge.getStartLon());
-			    coords.setStartLat(followEdge.getStartLat());
-			    coords.setLeadingStreets(followEdge
-				    .getLeadingLinks());
-			    edgeIDs.add(0, followEdge.getId());
-			    help.add(Integer.parseInt(followEdge.getId()));
-			    length += followEdge.getLength();
-			    links.get(followEdge.getId()).setStreetID(id);
-			    link = followEdge;
-			}
-		    }
-		}
-		coords.setLength(length);
-		coords.setEdgeIDs(edgeIDs);
-		streets.put(id, coords);
-		id++;
-	    }
-	}
-	for (Street street : streets.values()) {
-	    ArrayList<String> sIDs = new ArrayList<String>();
-	    ArrayList<String> lIDs = new ArrayList<String>();
-	    for (String ids : street.getFollowingStreets()) {
-		if (!sIDs.contains(links.get(ids).getStreetID())) {
-		    sIDs.add(String.valueOf(links.get(ids).getStreetID()));
-		}
-	    }
-	    streets.get(street.getId()).setFollowingStreets(sIDs);
-	    for (String ids : street.getLeadingStreets()) {
-		if (!lIDs.contains(links.get(ids).getStreetID())) {
-		    lIDs.add(String.valueOf(links.get(ids).getStreetID()));
-		}
-	    }
-	    streets.get(street.getId()).setLeadingStreets(lIDs);
-	}
+    private Map<Integer, Street> generateSimpleMap(LinkGraph graph)
+	    throws InterruptedException {
+	long time = System.currentTimeMillis();
 
-	double relLinks = 0;
+	StreetContraction contraction = new StreetContraction(graph, links
+		.values().toArray(new Link[links.size()]));
+	Map<Integer, Street> streets = contraction.contract(threads);
 
-	for (Link link : links.values()) {
-	    if (link.getStreetType() < 5) {
-		relLinks++;
-	    }
-	}
-
-	conversionLogger.logInfo("relevant links before: " + relLinks
-		+ "\tLinks in simple-map: " + id + "\t"
-		+ (double) (relLinks - id) / relLinks + "% reduction!");
+	int relLinks = contraction.getRelevantLinks();
+	conversionLogger.logInfo("simple-map: " + relLinks
+		+ " relevant links merged to " + streets.size() + " streets ("
+		+ String.format("%.2f", 100. * (relLinks - streets.size())
+			/ Math.max(1, relLinks)) + "% reduction) in "
+		+ (System.currentTimeMillis() - time) + " ms");
 
 	return streets;
     }
@@ -825,18 +1068,18 @@ public class Converter implements IsLogging, IConverter {
 
 	if (osmWay.getTags().containsKey("zone:traffic")) {
 	    zoneSet = true;
-	    trafficZoneSet++;
+	    trafficZoneSet.incrementAndGet();
 	    if (osmWay.getTags().get("zone:traffic").equals("urban")) {
 		zoneUrban = true;
 	    }
 	}
 
-	this.maxspeedTotal++;
+	this.maxspeedTotal.incrementAndGet();
 
 	// if the {@link OsmWay} has a maxspeed-tag read it
 	if (osmWay.getTags().containsKey("maxspeed")) {
 
-	    this.speedSet++;
+	    this.speedSet.incrementAndGet();
 
 	    String maxspeed = osmWay.getTags().get("maxspeed");
 	    try {
@@ -851,12 +1094,12 @@ public class Converter implements IsLogging, IConverter {
 			link.setDefaultless(false);
 			return speedDefaults.getDefaultSpeed(
 				link.getStreetType(), osmWay, myAreas,
-				osmNodes, zoneUrban);
+				nodeStore, zoneUrban);
 		    } else {
 			link.setDefaultless(false);
 			return speedDefaults
 				.getDefaultSpeed(link.getStreetType(), osmWay,
-					myAreas, osmNodes);
+					myAreas, nodeStore);
 		    }
 		}
 	    } catch (NumberFormatException e) {
@@ -902,11 +1145,11 @@ public class Converter implements IsLogging, IConverter {
 		    if (zoneSet) {
 			return speedDefaults.getDefaultSpeed(
 				link.getStreetType(), osmWay, myAreas,
-				osmNodes, zoneUrban);
+				nodeStore, zoneUrban);
 		    } else {
 			return speedDefaults
 				.getDefaultSpeed(link.getStreetType(), osmWay,
-					myAreas, osmNodes);
+					myAreas, nodeStore);
 		    }
 		} else {
 
@@ -921,11 +1164,11 @@ public class Converter implements IsLogging, IConverter {
 		    if (zoneSet) {
 			return speedDefaults.getDefaultSpeed(
 				link.getStreetType(), osmWay, myAreas,
-				osmNodes, zoneUrban);
+				nodeStore, zoneUrban);
 		    } else {
 			return speedDefaults
 				.getDefaultSpeed(link.getStreetType(), osmWay,
-					myAreas, osmNodes);
+					myAreas, nodeStore);
 		    }
 		}
 	    } catch (Exception e) {
@@ -940,10 +1183,10 @@ public class Converter implements IsLogging, IConverter {
 		conversionLogger.getScorer().reportDefaultMaxSpeed(osmWay);
 		if (zoneSet) {
 		    return speedDefaults.getDefaultSpeed(link.getStreetType(),
-			    osmWay, myAreas, osmNodes, zoneUrban);
+			    osmWay, myAreas, nodeStore, zoneUrban);
 		} else {
 		    return speedDefaults.getDefaultSpeed(link.getStreetType(),
-			    osmWay, myAreas, osmNodes);
+			    osmWay, myAreas, nodeStore);
 		}
 	    }
 	} else {
@@ -955,10 +1198,10 @@ public class Converter implements IsLogging, IConverter {
 	    conversionLogger.getScorer().reportDefaultMaxSpeed(osmWay);
 	    if (zoneSet) {
 		return speedDefaults.getDefaultSpeed(link.getStreetType(),
-			osmWay, myAreas, osmNodes, zoneUrban);
+			osmWay, myAreas, nodeStore, zoneUrban);
 	    } else {
 		return speedDefaults.getDefaultSpeed(link.getStreetType(),
-			osmWay, myAreas, osmNodes);
+			osmWay, myAreas, nodeStore);
 	    }
 	}
     }
@@ -1012,20 +1255,24 @@ public class Converter implements IsLogging, IConverter {
      * @return true if is oneway.
      */
     private boolean getOneWay(OsmWay osmWay) {
-	boolean oneWay = osmWay.getTags().containsKey("oneway");
-	if (oneWay) {
-	    if (osmWay.getTags().get("oneway").equals("yes")
-		    || osmWay.getTags().get("oneway").equals("1")
-		    || osmWay.getTags().get("oneway").equals("true")) {
-		oneWay = true;
-	    } else if (osmWay.getTags().get("oneway").equals("-1")) {
-		this.reverseWay(osmWay);
-	    } else {
-		oneWay = false;
-	    }
+	String oneWay = osmWay.getTags().get("oneway");
+	if ("-1".equals(oneWay)) {
+	    this.reverseWay(osmWay);
 	}
 
-	return oneWay;
+	return isOneWay(oneWay);
+    }
+
+    /**
+     * @param oneWay
+     *            The value of the oneway-tag, may be null.
+     * @return true if the way is a oneway road ("-1" is one against the
+     *         direction of the way).
+     */
+    private static boolean isOneWay(String oneWay) {
+	return oneWay != null
+		&& (oneWay.equals("yes") || oneWay.equals("1")
+			|| oneWay.equals("true") || oneWay.equals("-1"));
     }
 
     /**
@@ -1042,7 +1289,7 @@ public class Converter implements IsLogging, IConverter {
 
 	if (tags.containsKey("access")) {
 
-	    restCount++;
+	    restCount.incrementAndGet();
 
 	    String access = tags.get("access");
 	    if (access.equals("yes")) {
@@ -1071,7 +1318,7 @@ public class Converter implements IsLogging, IConverter {
 	}
 
 	if (tags.containsKey("vehicle")) {
-	    restCount++;
+	    restCount.incrementAndGet();
 
 	    String access = tags.get("vehicle");
 	    if (access.equals("yes")) {
@@ -1100,7 +1347,7 @@ public class Converter implements IsLogging, IConverter {
 	}
 
 	if (tags.containsKey("motor_vehicle")) {
-	    restCount++;
+	    restCount.incrementAndGet();
 
 	    String access = tags.get("motor_vehicle");
 	    if (access.equals("yes")) {
@@ -1135,7 +1382,122 @@ public class Converter implements IsLogging, IConverter {
     }
 
     public int getSpeedSet() {
-	return speedSet;
+	return speedSet.get();
+    }
+
+    /**
+     * @param selective
+     *            If true the file is read in several passes, keeping only
+     *            the entities needed for the conversion. This needs much less
+     *            memory but more time for reading.
+     */
+    public void setSelective(boolean selective) {
+	this.selective = selective;
+    }
+
+    /**
+     * @param type
+     *            "dense" or "sparse" to keep the coordinates of the nodes in
+     *            a memory-mapped file instead of the heap (see
+     *            {@link DenseNodeStore} and {@link SparseNodeStore}), null
+     *            (the default) keeps all nodes as objects.
+     */
+    public void setNodeStore(String type) {
+	if (type != null && !type.equals("dense") && !type.equals("sparse")) {
+	    throw new IllegalArgumentException("Unknown node-store: " + type);
+	}
+	this.nodeStoreType = type;
+    }
+
+    /**
+     * @param xmlScanner
+     *            true to read .osm-files with the {@link OsmScanner} instead
+     *            of the SAX-parser.
+     */
+    public void setXmlScanner(boolean xmlScanner) {
+	this.xmlScanner = xmlScanner;
+    }
+
+    /**
+     * @param urbanDetection
+     *            true to decide by the town-areas and places whether
+     *            highways without maxspeed are inside of a town, see
+     *            {@link SpeedDefaults#setUrbanAreas(LongMap)}.
+     */
+    public void setUrbanDetection(boolean urbanDetection) {
+	this.urbanDetection = urbanDetection;
+    }
+
+    /**
+     * @param urbanRasterResolution
+     *            Size of the cells in meters the town-areas and places are
+     *            rasterized with for the urban detection (see
+     *            {@link UrbanRaster}), 0 (the default) tests every node
+     *            exactly.
+     */
+    public void setUrbanRaster(double urbanRasterResolution) {
+	this.urbanRasterResolution = urbanRasterResolution;
+    }
+
+    /**
+     * @param urbanRasterFile
+     *            File the urban raster is kept in, later runs on the same file
+     *            read it from there (see {@link UrbanRasterFile}). null (the
+     *            default) always rasterizes.
+     */
+    public void setUrbanRasterFile(String urbanRasterFile) {
+	this.urbanRasterFile = urbanRasterFile;
+    }
+
+    /**
+     * @param changeFiles
+     *            OsmChange-files (.osc) which are applied to the read file in
+     *            this order before a full conversion, there is no incremental
+     *            update of an earlier conversion. Not possible with selective
+     *            reading or a clip-region, which may leave out nodes a changed
+     *            way references.
+     */
+    public void setChangeFiles(List<String> changeFiles) {
+	this.changeFiles = changeFiles;
+    }
+
+    /**
+     * @param snapshotFile
+     *            File the read osm-maps are kept in, later runs read them from
+     *            there instead of parsing the file again (see
+     *            {@link OsmSnapshot}). null (the default) always parses the
+     *            file. Snapshots are not used with a node-store.
+     */
+    public void setSnapshot(String snapshotFile) {
+	this.snapshotFile = snapshotFile;
+    }
+
+    /**
+     * @param clipRegion
+     *            Only the part of the file inside of the region is read,
+     *            null (the default) reads everything.
+     */
+    public void setClipRegion(ClipRegion clipRegion) {
+	this.clipRegion = clipRegion;
+    }
+
+    /**
+     * @param tagFilter
+     *            The tags kept while reading, null keeps all tags. By default
+     *            only the tags used by the conversion are kept (see
+     *            {@link TagFilter#DEFAULT_KEYS}).
+     */
+    public void setTagFilter(TagFilter tagFilter) {
+	this.tagFilter = tagFilter;
+    }
+
+    /**
+     * @param threads
+     *            Number of threads the conversion may use. 1 (the default)
+     *            does everything in the calling thread.
+     */
+    public void setThreads(int threads) {
+	this.threads = Math.max(1, threads);
     }
 
     private String getStreetcategory(OsmWay osmWay) {
@@ -1203,10 +1565,9 @@ public class Converter implements IsLogging, IConverter {
 	    // if this is a link to a motorway check id a node contains
 	    // information about name and number of the exit.
 
-	    List<OsmNode> nodes = osmWay.getNodes();
-
-	    for (OsmNode node : nodes) {
-		if (node.getTags().containsKey("highway")) {
+	    for (long id : osmWay.getNodes()) {
+		OsmNode node = osmNodes.get(id);
+		if (node != null && node.getTags().containsKey("highway")) {
 
 		    if (node.getTags().get("highway")
 			    .equals("motorway_junction")) {
@@ -1278,9 +1639,8 @@ public class Converter implements IsLogging, IConverter {
 	    conversionLogger.reportUnknownHighway(highway);
 	    streettype = 10;
 
-	    if (firstTimeUntyped) {
+	    if (firstTimeUntyped.compareAndSet(true, false)) {
 		logInfo("Map contains currently untyped street.");
-		firstTimeUntyped = false;
 	    }
 	}
 
@@ -1312,17 +1672,12 @@ public class Converter implements IsLogging, IConverter {
      * 
      */
     private void removeUnusedNodes() {
-	// creating list of all used nodes
-	ArrayList<String> linkedNodes = new ArrayList<String>();
-	for (Link link : links.values()) {
-	    linkedNodes.add(link.getStartNodeId());
-	    linkedNodes.add(link.getEndNodeId());
-	}
-
-	// indirectly removing unused nodes
+	// indirectly removing unused nodes by copying all used nodes
 
-	for (String id : linkedNodes) {
-	    nodes.put(id, tempNodes.get(id));
+	for (Link link : links.values()) {
+	    nodes.put(link.getStartNodeId(),
+		    tempNodes.get(link.getStartNodeId()));
+	    nodes.put(link.getEndNodeId(), tempNodes.get(link.getEndNodeId()));
 	}
 
 	conversionLogger.logInfo((tempNodes.size() - nodes.size())
@@ -1338,10 +1693,11 @@ public class Converter implements IsLogging, IConverter {
      * @return
      */
     private OsmWay reverseWay(OsmWay way) {
-	List<OsmNode> rightNodes = new LinkedList<OsmNode>();
+	long[] nodes = way.getNodes();
+	long[] rightNodes = new long[nodes.length];
 
-	for (OsmNode node : way.getNodes()) {
-	    rightNodes.add(0, node);
+	for (int i = 0; i < nodes.length; i++) {
+	    rightNodes[nodes.length - 1 - i] = nodes[i];
 	}
 
 	way.setNodes(rightNodes);
@@ -1361,37 +1717,31 @@ public class Converter implements IsLogging, IConverter {
      *            The {@link Link} which already has max. speed, restrictions
      *            etc. set.
      */
-    private Map<String, Link> splitLinks(OsmWay osmWay, int firstId, Link link) {
+    private LongMap<Link> splitLinks(OsmWay osmWay, int firstId, Link link) {
 
-	Map<String, Link> links = new HashMap<String, Link>();
-	List<OsmNode> wayNodes = osmWay.getNodes();
+	LongMap<Link> links = new LongMap<Link>();
+	long[] wayNodes = osmWay.getNodes();
 
-	for (int i = 0; i < wayNodes.size() - 1; i++) {
+	for (int i = 0; i < wayNodes.length - 1; i++) {
 	    Link newLink = new Link();
 
 	    // set Id
-	    newLink.setId("" + (firstId));
+	    newLink.setId(firstId);
 	    firstId++;
 
 	    // get start- and end-node for the current part
-	    OsmNode startNode = wayNodes.get(i);
-	    OsmNode endNode = wayNodes.get(i + 1);
+	    long startNode = wayNodes[i];
+	    long endNode = wayNodes[i + 1];
 
 	    // set them to the current sub-link
-	    newLink.setStartNodeId(startNode.getId());
-	    newLink.setEndNodeId(endNode.getId());
+	    newLink.setStartNodeId(startNode);
+	    newLink.setEndNodeId(endNode);
 
 	    // get the coordinates of those nodes
-	    double startLat = osmNodes.get(startNode.getId()).getLat();
-	    double startLon = osmNodes.get(startNode.getId()).getLon();
-	    double endLat = osmNodes.get(endNode.getId()).getLat();
-	    double endLon = osmNodes.get(endNode.getId()).getLon();
-
-	    // set the coords to the nodes
-	    startNode.setLat(startLat);
-	    startNode.setLon(startLon);
-	    endNode.setLat(endLat);
-	    endNode.setLon(endLon);
+	    double startLat = nodeStore.getLat(startNode);
+	    double startLon = nodeStore.getLon(startNode);
+	    double endLat = nodeStore.getLat(endNode);
+	    double endLon = nodeStore.getLon(endNode);
 
 	    // set the coords to the links
 	    newLink.setStartLat(startLat);
@@ -1400,8 +1750,8 @@ public class Converter implements IsLogging, IConverter {
 	    newLink.setEndLon(endLon);
 
 	    // calc the links length
-	    newLink.setLength(CoordinateHelper.calcDistanceBetweenNodes(
-		    startNode, endNode));
+	    newLink.setLength(CoordinateHelper.calcDistanceBetweenCoords(
+		    startLat, startLon, endLat, endLon));
 
 	    // set name, maxSpeed, streetType, restrictions
 	    // those values are inherited from the original OsmWay!
@@ -1419,11 +1769,11 @@ public class Converter implements IsLogging, IConverter {
 	    if (!link.isOneWay()) {
 		Link newLinkReverse = new Link();
 
-		newLinkReverse.setId("" + (firstId));
+		newLinkReverse.setId(firstId);
 		firstId++;
 
-		newLinkReverse.setStartNodeId(endNode.getId());
-		newLinkReverse.setEndNodeId(startNode.getId());
+		newLinkReverse.setStartNodeId(endNode);
+		newLinkReverse.setEndNodeId(startNode);
 
 		newLinkReverse.setStartLat(endLat);
 		newLinkReverse.setStartLon(endLon);
@@ -1,9 +1,8 @@
 package osmConverter.logic;
 
-import java.util.Map;
-
 import org.xml.sax.SAXException;
 
+import osmConverter.beans.LongMap;
 import osmConverter.data.Link;
 import osmConverter.data.Node;
 import osmConverter.data.OsmNode;
@@ -12,7 +11,7 @@ import osmConverter.data.StreetMap;
 
 public interface IConverter {
 
-    public Map<String, Link> convertHighway(OsmWay osmWay, int firstId);
+    public LongMap<Link> convertHighway(OsmWay osmWay, int firstId);
 
     public StreetMap convertMap(String filename, boolean b) throws SAXException, Exception;
 
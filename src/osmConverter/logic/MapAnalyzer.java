@@ -117,16 +117,15 @@ public class MapAnalyzer implements IsLogging {
     /**
      * Analyzes the existence of name-tags by highway-types.
      * 
-     * @param namedHighways
-     *            Map containing all named highway.
-     * @param unnamedHighways
-     *            Map containing all unnamed highways.
+     * @param scores
+     *            Statistics containing all named and unnamed highways.
      * @param file
      *            Word to add to the output-files-name.
      */
-    public void analyzeNameTag(
-	    HashMap<String, HashMap<String, Integer>> namedHighways,
-	    Map<String, Integer> unnamedHighways, String file) {
+    public void analyzeNameTag(Scorer.Snapshot scores, String file) {
+	HashMap<String, HashMap<String, Integer>> namedHighways = scores
+		.getNamedHighways();
+	Map<String, Integer> unnamedHighways = scores.getUnnamedHighways();
 
 	try {
 
@@ -249,13 +248,14 @@ public class MapAnalyzer implements IsLogging {
     /**
      * Analyzes the existence of maxspeed-tags by highway-types.
      * 
-     * @param highwaySpeeds
-     *            Map containing all highways and there speed-set-rate.
+     * @param scores
+     *            Statistics containing all highways and there speed-set-rate.
      * @param file
      *            Word to add to the output-files-name.
      */
-    public void analyzeSpeedTag(
-	    HashMap<String, HashMap<String, Double>> highwaySpeeds, String file) {
+    public void analyzeSpeedTag(Scorer.Snapshot scores, String file) {
+	HashMap<String, HashMap<String, Double>> highwaySpeeds = scores
+		.getHighwaySpeeds();
 
 	try {
 	    FileWriter fw = new FileWriter("output/stats/speed (" + file
@@ -547,12 +547,12 @@ public class MapAnalyzer implements IsLogging {
 
     /**
      * Analyzes exisitence of lane-tags by highway-type.
-     * @param lanes map containing all highways with lane-tag.
-     * @param noLanes map containing all highways without lane-tag.
+     * @param scores statistics containing all highways with and without lane-tag.
      * @param file Word to add to the output-files-name.
      */
-    public void analyzeLaneTag(HashMap<String, Double> lanes,
-	    HashMap<String, Double> noLanes, String file) {
+    public void analyzeLaneTag(Scorer.Snapshot scores, String file) {
+	HashMap<String, Double> lanes = scores.getLanes();
+	HashMap<String, Double> noLanes = scores.getNoLanes();
 	try {
 
 	    FileWriter fw = new FileWriter("output/stats/lanes (" + file
@@ -2,52 +2,152 @@ package osmConverter.logic;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import osmConverter.beans.StripedCounters;
+import osmConverter.beans.SymbolTable;
 import osmConverter.data.OsmWay;
 import osmConverter.io.IsLogging;
 
+/**
+ * Collects statistics about the tags of the converted highways. The highways
+ * may be converted by several threads, so the reports are counted in
+ * {@link StripedCounters} keyed by the symbols of the highway-type and the
+ * category, which don't need a lock. {@link #snapshot()} reads the counters
+ * for the {@link MapAnalyzer}.
+ */
 public class Scorer implements IsLogging {
 
     public final static String DEF = "Default";
     public final static String EXPLICIT = "Explicit";
     public final static String NAN = "Not a number";
 
-    private final HashMap<String, HashMap<String, Double>> highwaySpeeds = new HashMap<String, HashMap<String, Double>>();
-    private final HashMap<String, Double> lanes = new HashMap<String, Double>();
+    private final static int HIGHWAY = SymbolTable.intern("highway");
 
-    Logger logger;
+    private final static int DEF_SYMBOL = SymbolTable.intern(DEF);
+    private final static int EXPLICIT_SYMBOL = SymbolTable.intern(EXPLICIT);
+    private final static int NAN_SYMBOL = SymbolTable.intern(NAN);
 
-    private final HashMap<String, HashMap<String, Integer>> namedHighways = new HashMap<String, HashMap<String, Integer>>();
+    private final static int LANES = 0;
+    private final static int NO_LANES = 1;
 
-    private final HashMap<String, Double> noLanes = new HashMap<String, Double>();
+    /**
+     * The counted statistics at the time of {@link Scorer#snapshot()}, in the
+     * maps the {@link MapAnalyzer} expects. The maps are built once and not
+     * changed by later reports.
+     */
+    public static final class Snapshot {
+
+	private final HashMap<String, HashMap<String, Double>> highwaySpeeds = new HashMap<String, HashMap<String, Double>>();
+	private final HashMap<String, Double> lanes = new HashMap<String, Double>();
+	private final HashMap<String, HashMap<String, Integer>> namedHighways = new HashMap<String, HashMap<String, Integer>>();
+	private final HashMap<String, Double> noLanes = new HashMap<String, Double>();
+	private final int speedConflicts;
+	private final Map<String, Integer> unnamedHighways = new HashMap<String, Integer>();
+
+	private Snapshot(Scorer scorer) {
+	    long[] counts = scorer.highwaySpeeds.snapshot();
+	    for (int i = 0; i < counts.length; i += 3) {
+		put(highwaySpeeds, SymbolTable.get((int) counts[i]),
+			SymbolTable.get((int) counts[i + 1]),
+			(double) counts[i + 2]);
+	    }
 
-    private int speedConflicts = 0;
-    private final Map<String, Integer> unnamedHighways = new HashMap<String, Integer>();
+	    counts = scorer.lanes.snapshot();
+	    for (int i = 0; i < counts.length; i += 3) {
+		HashMap<String, Double> target = counts[i + 1] == LANES ? lanes
+			: noLanes;
+		target.put(SymbolTable.get((int) counts[i]),
+			(double) counts[i + 2]);
+	    }
 
-    public Scorer(String logName) {
-	logger = Logger.getLogger(logName);
-    }
+	    counts = scorer.namedHighways.snapshot();
+	    for (int i = 0; i < counts.length; i += 3) {
+		put(namedHighways, SymbolTable.get((int) counts[i]),
+			SymbolTable.get((int) counts[i + 1]),
+			(int) counts[i + 2]);
+	    }
 
-    public HashMap<String, HashMap<String, Double>> getHighwaySpeeds() {
-	return highwaySpeeds;
-    }
+	    counts = scorer.unnamedHighways.snapshot();
+	    for (int i = 0; i < counts.length; i += 3) {
+		unnamedHighways.put(SymbolTable.get((int) counts[i]),
+			(int) counts[i + 2]);
+	    }
 
-    public HashMap<String, Double> getLanes() {
-	return lanes;
-    }
+	    speedConflicts = scorer.speedConflicts.get();
+	}
+
+	private static <T> void put(HashMap<String, HashMap<String, T>> map,
+		String highway, String category, T count) {
+	    HashMap<String, T> categories = map.get(highway);
+	    if (categories == null) {
+		categories = new HashMap<String, T>();
+		map.put(highway, categories);
+	    }
+	    categories.put(category, count);
+	}
 
-    public HashMap<String, HashMap<String, Integer>> getNamedHighways() {
-	return namedHighways;
+	public HashMap<String, HashMap<String, Double>> getHighwaySpeeds() {
+	    return highwaySpeeds;
+	}
+
+	public HashMap<String, Double> getLanes() {
+	    return lanes;
+	}
+
+	public HashMap<String, HashMap<String, Integer>> getNamedHighways() {
+	    return namedHighways;
+	}
+
+	public HashMap<String, Double> getNoLanes() {
+	    return noLanes;
+	}
+
+	public int getSpeedConflicts() {
+	    return speedConflicts;
+	}
+
+	public Map<String, Integer> getUnnamedHighways() {
+	    return unnamedHighways;
+	}
     }
 
-    public HashMap<String, Double> getNoLanes() {
-	return noLanes;
+    /**
+     * highway-type and DEF, EXPLICIT or NAN.
+     */
+    private final StripedCounters highwaySpeeds = new StripedCounters();
+
+    /**
+     * highway-type and LANES or NO_LANES.
+     */
+    private final StripedCounters lanes = new StripedCounters();
+
+    Logger logger;
+
+    /**
+     * highway-type and type of the name-tag.
+     */
+    private final StripedCounters namedHighways = new StripedCounters();
+
+    private final AtomicInteger speedConflicts = new AtomicInteger();
+
+    /**
+     * highway-type only, the category is {@link SymbolTable#NONE}.
+     */
+    private final StripedCounters unnamedHighways = new StripedCounters();
+
+    public Scorer(String logName) {
+	logger = Logger.getLogger(logName);
     }
 
-    public Map<String, Integer> getUnnamedHighways() {
-	return unnamedHighways;
+    /**
+     * Reads the statistics counted so far, should be called after the
+     * conversion.
+     */
+    public Snapshot snapshot() {
+	return new Snapshot(this);
     }
 
     @Override
@@ -72,26 +172,7 @@ public class Scorer implements IsLogging {
      *            The osmWay missing the maxspeed-Tag.
      */
     public void reportDefaultMaxSpeed(OsmWay osmWay) {
-	String highway = osmWay.getTags().get("highway");
-
-	if (highwaySpeeds.containsKey(highway)) {
-
-	    HashMap<String, Double> temp = highwaySpeeds.get(highway);
-	    if (temp.containsKey(DEF)) {
-		double tempCount = temp.get(DEF);
-		tempCount++;
-		temp.put(DEF, tempCount);
-		highwaySpeeds.put(highway, temp);
-	    } else {
-		temp.put(DEF, 1.);
-		highwaySpeeds.put(highway, temp);
-	    }
-
-	} else {
-	    HashMap<String, Double> newHighway = new HashMap<String, Double>();
-	    newHighway.put(DEF, 1.);
-	    highwaySpeeds.put(highway, newHighway);
-	}
+	highwaySpeeds.increment(osmWay.getTagSymbol(HIGHWAY), DEF_SYMBOL);
     }
 
     /**
@@ -101,13 +182,7 @@ public class Scorer implements IsLogging {
      *            The osmWay containing the lane-tag.
      */
     public void reportExistingLaneTag(OsmWay osmWay) {
-	if (lanes.containsKey(osmWay.getTags().get("highway"))) {
-	    double temp = lanes.get(osmWay.getTags().get("highway"));
-	    temp++;
-	    lanes.put(osmWay.getTags().get("highway"), temp);
-	} else {
-	    lanes.put(osmWay.getTags().get("highway"), 1.);
-	}
+	lanes.increment(osmWay.getTagSymbol(HIGHWAY), LANES);
     }
 
     /**
@@ -117,26 +192,7 @@ public class Scorer implements IsLogging {
      *            The osmWay containing the maxspeed-tag.
      */
     public void reportExplicitMaxSpeed(OsmWay osmWay) {
-
-	String highway = osmWay.getTags().get("highway");
-
-	if (highwaySpeeds.containsKey(highway)) {
-
-	    HashMap<String, Double> temp = highwaySpeeds.get(highway);
-	    if (temp.containsKey(EXPLICIT)) {
-		double tempCount = temp.get(EXPLICIT);
-		tempCount++;
-		temp.put(EXPLICIT, tempCount);
-		highwaySpeeds.put(highway, temp);
-	    } else {
-		temp.put(EXPLICIT, 1.);
-		highwaySpeeds.put(highway, temp);
-	    }
-	} else {
-	    HashMap<String, Double> newHighway = new HashMap<String, Double>();
-	    newHighway.put(EXPLICIT, 1.);
-	    highwaySpeeds.put(highway, newHighway);
-	}
+	highwaySpeeds.increment(osmWay.getTagSymbol(HIGHWAY), EXPLICIT_SYMBOL);
     }
 
     /**
@@ -149,22 +205,8 @@ public class Scorer implements IsLogging {
      *            The highway-type of the street.
      */
     public void reportNamedStreet(String nameTag, String highway) {
-	if (namedHighways.containsKey(highway)) {
-	    HashMap<String, Integer> temp = namedHighways.get(highway);
-	    if (temp.containsKey(nameTag)) {
-		int tempCount = temp.get(nameTag);
-		tempCount++;
-		temp.put(nameTag, tempCount);
-		namedHighways.put(highway, temp);
-	    } else {
-		temp.put(nameTag, 1);
-		namedHighways.put(highway, temp);
-	    }
-	} else {
-	    HashMap<String, Integer> newHighway = new HashMap<String, Integer>();
-	    newHighway.put(nameTag, 1);
-	    namedHighways.put(highway, newHighway);
-	}
+	namedHighways.increment(SymbolTable.intern(highway),
+		SymbolTable.intern(nameTag));
     }
 
     /**
@@ -174,25 +216,7 @@ public class Scorer implements IsLogging {
      * @param osmWay
      */
     public void reportNANMaxSpeed(OsmWay osmWay) {
-	String highway = osmWay.getTags().get("highway");
-
-	if (highwaySpeeds.containsKey(highway)) {
-
-	    HashMap<String, Double> temp = highwaySpeeds.get(highway);
-	    if (temp.containsKey(NAN)) {
-		double tempCount = temp.get(NAN);
-		tempCount++;
-		temp.put(NAN, tempCount);
-		highwaySpeeds.put(highway, temp);
-	    } else {
-		temp.put(NAN, 1.);
-		highwaySpeeds.put(highway, temp);
-	    }
-	} else {
-	    HashMap<String, Double> newHighway = new HashMap<String, Double>();
-	    newHighway.put(NAN, 1.);
-	    highwaySpeeds.put(highway, newHighway);
-	}
+	highwaySpeeds.increment(osmWay.getTagSymbol(HIGHWAY), NAN_SYMBOL);
     }
 
     /**
@@ -202,20 +226,14 @@ public class Scorer implements IsLogging {
      *            The osmWay not containing a lanes-tag.
      */
     public void reportNotExistingLaneTag(OsmWay osmWay) {
-	if (noLanes.containsKey(osmWay.getTags().get("highway"))) {
-	    double temp = noLanes.get(osmWay.getTags().get("highway"));
-	    temp++;
-	    noLanes.put(osmWay.getTags().get("highway"), temp);
-	} else {
-	    noLanes.put(osmWay.getTags().get("highway"), 1.);
-	}
+	lanes.increment(osmWay.getTagSymbol(HIGHWAY), NO_LANES);
     }
 
     /**
      * Report a conflict between the speed that is set and the highway-type.
      */
     public void reportSpeedTagConflict() {
-	this.speedConflicts++;
+	speedConflicts.incrementAndGet();
     }
 
     /**
@@ -225,15 +243,7 @@ public class Scorer implements IsLogging {
      *            The highway-type of the street.
      */
     public void reportUnnamedStreet(String highway) {
-
-	if (unnamedHighways.containsKey(highway)) {
-	    int temp = unnamedHighways.get(highway);
-	    temp++;
-	    unnamedHighways.put(highway, temp);
-	} else {
-	    unnamedHighways.put(highway, 1);
-	}
-
+	unnamedHighways.increment(SymbolTable.intern(highway), SymbolTable.NONE);
     }
 
     /**
@@ -243,12 +253,6 @@ public class Scorer implements IsLogging {
      *            The osmWay containing the wrong tag.
      */
     public void reportWrongLaneTag(OsmWay osmWay) {
-	if (noLanes.containsKey(osmWay.getTags().get("highway"))) {
-	    double temp = noLanes.get(osmWay.getTags().get("highway"));
-	    temp++;
-	    noLanes.put(osmWay.getTags().get("highway"), temp);
-	} else {
-	    noLanes.put(osmWay.getTags().get("highway"), 1.);
-	}
+	lanes.increment(osmWay.getTagSymbol(HIGHWAY), NO_LANES);
     }
 }
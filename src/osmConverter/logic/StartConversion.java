@@ -2,6 +2,8 @@ package osmConverter.logic;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.FileHandler;
 import java.util.logging.Level;
@@ -10,9 +12,13 @@ import java.util.logging.Logger;
 import org.xml.sax.SAXException;
 
 import osmConverter.data.StreetMap;
+import osmConverter.io.BoundingBox;
+import osmConverter.io.ClipRegion;
 import osmConverter.io.IsLogging;
 import osmConverter.io.MyFormatter;
+import osmConverter.io.PolygonRegion;
 import osmConverter.io.ShapeWriter;
+import osmConverter.io.TagFilter;
 import osmConverter.io.TomFileWriter;
 
 /**
@@ -31,6 +37,17 @@ public class StartConversion implements IsLogging {
     boolean shape = false;
     boolean tom = false;
     boolean simpleMap = false;
+    int threads = 1;
+    boolean selective = false;
+    boolean xmlScanner = false;
+    boolean urbanDetection = false;
+    double urbanRaster = 0;
+    String urbanRasterFile = null;
+    String nodeStore = null;
+    TagFilter tagFilter = new TagFilter();
+    ClipRegion clipRegion = null;
+    List<String> changeFiles = new ArrayList<String>();
+    String snapshot = null;
 
     /**
      * @param args
@@ -73,7 +90,98 @@ public class StartConversion implements IsLogging {
 		tom = true;
 	    } else if (args[i].equals("-writeStats")) {
 		stats = true;
-	    } else if (args[i].endsWith(".osm")) {
+	    } else if (args[i].equals("-selective")) {
+		selective = true;
+	    } else if (args[i].equals("-xmlScanner")) {
+		xmlScanner = true;
+	    } else if (args[i].equals("-urbanDetection")) {
+		urbanDetection = true;
+	    } else if (args[i].equals("-urbanRaster")) {
+		try {
+		    urbanRaster = Double.parseDouble(args[i + 1]);
+		    urbanDetection = true;
+		    i++;
+		} catch (Exception e) {
+		    System.out
+			    .println("Fehlerhafte Paramter. Auf -urbanRaster muss eine Zellgre in Metern folgen!");
+		}
+	    } else if (args[i].equals("-urbanRasterFile")) {
+		if (i + 1 < args.length && !args[i + 1].startsWith("-")) {
+		    urbanRasterFile = args[i + 1];
+		    i++;
+		} else {
+		    System.out
+			    .println("Fehlerhafte Paramter. Auf -urbanRasterFile muss eine Datei folgen!");
+		}
+	    } else if (args[i].equals("-threads")) {
+		try {
+		    threads = Integer.parseInt(args[i + 1]);
+		    i++;
+		} catch (Exception e) {
+		    System.out
+			    .println("Fehlerhafte Paramter. Auf -threads muss eine Anzahl folgen!");
+		}
+	    } else if (args[i].equals("-nodeStore")) {
+		if (i + 1 < args.length
+			&& (args[i + 1].equals("dense") || args[i + 1]
+				.equals("sparse"))) {
+		    nodeStore = args[i + 1];
+		    i++;
+		} else {
+		    System.out
+			    .println("Fehlerhafte Paramter. Auf -nodeStore muss dense oder sparse folgen!");
+		}
+	    } else if (args[i].equals("-bbox")) {
+		try {
+		    clipRegion = BoundingBox.parse(args[i + 1]);
+		    i++;
+		} catch (Exception e) {
+		    System.out
+			    .println("Fehlerhafte Paramter. Auf -bbox muss minLon,minLat,maxLon,maxLat folgen!");
+		}
+	    } else if (args[i].equals("-poly")) {
+		try {
+		    clipRegion = new PolygonRegion(new File(args[i + 1]));
+		    i++;
+		} catch (Exception e) {
+		    System.out
+			    .println("Fehlerhafte Paramter. Auf -poly muss eine Polygon-Datei folgen!");
+		}
+	    } else if (args[i].equals("-changes")) {
+		if (i + 1 < args.length && !args[i + 1].startsWith("-")) {
+		    for (String changeFile : args[i + 1].split(",")) {
+			changeFiles.add(changeFile);
+		    }
+		    i++;
+		} else {
+		    System.out
+			    .println("Fehlerhafte Paramter. Auf -changes muss eine Liste von .osc-Dateien folgen!");
+		}
+	    } else if (args[i].equals("-snapshot")) {
+		if (i + 1 < args.length && !args[i + 1].startsWith("-")) {
+		    snapshot = args[i + 1];
+		    i++;
+		} else {
+		    System.out
+			    .println("Fehlerhafte Paramter. Auf -snapshot muss eine Datei folgen!");
+		}
+	    } else if (args[i].equals("-tags")) {
+		if (i + 1 < args.length && args[i + 1].equals("all")) {
+		    tagFilter = null;
+		    i++;
+		} else if (i + 1 < args.length && !args[i + 1].startsWith("-")) {
+		    for (String key : args[i + 1].split(",")) {
+			if (tagFilter != null) {
+			    tagFilter.addKey(key);
+			}
+		    }
+		    i++;
+		} else {
+		    System.out
+			    .println("Fehlerhafte Paramter. Auf -tags muss all oder eine Liste von Keys folgen!");
+		}
+	    } else if (args[i].endsWith(".osm") || args[i].endsWith(".pbf")
+		    || args[i].endsWith(".osm.gz") || args[i].endsWith(".osm.bz2")) {
 	    } else {
 		System.out.println("Unbekannter Parameter: " + args[i] + " !");
 	    }
@@ -86,6 +194,12 @@ public class StartConversion implements IsLogging {
 	    return;
 	}
 
+	if (!changeFiles.isEmpty() && (selective || clipRegion != null)) {
+	    System.out
+		    .println("-changes kann nicht zusammen mit -selective, -bbox oder -poly verwendet werden! Programm bricht ab!");
+	    return;
+	}
+
 	// try to create output-folders if they don't exist.
 
 	try {
@@ -118,6 +232,17 @@ public class StartConversion implements IsLogging {
 	String logs[] = { "defaultLog", "conversionLog", "osmLog" };
 
 	Converter mapConverter = new Converter(logs);
+	mapConverter.setThreads(threads);
+	mapConverter.setSelective(selective);
+	mapConverter.setXmlScanner(xmlScanner);
+	mapConverter.setUrbanDetection(urbanDetection);
+	mapConverter.setUrbanRaster(urbanRaster);
+	mapConverter.setUrbanRasterFile(urbanRasterFile);
+	mapConverter.setNodeStore(nodeStore);
+	mapConverter.setTagFilter(tagFilter);
+	mapConverter.setClipRegion(clipRegion);
+	mapConverter.setChangeFiles(changeFiles);
+	mapConverter.setSnapshot(snapshot);
 	MapAnalyzer mapAnalyzer = new MapAnalyzer(logs);
 
 	// convert map
@@ -126,16 +251,12 @@ public class StartConversion implements IsLogging {
 	// analyze category-, lane-, name- and speed-tags.
 
 	if (stats) {
+	    Scorer.Snapshot scores = mapConverter.getConversionLogger()
+		    .getScorer().snapshot();
 	    mapAnalyzer.analyzeCategorySizes(streetMap, file);
-	    mapAnalyzer.analyzeLaneTag(mapConverter.getConversionLogger()
-		    .getScorer().getLanes(), mapConverter.getConversionLogger()
-		    .getScorer().getNoLanes(), file);
-	    mapAnalyzer.analyzeNameTag(mapConverter.getConversionLogger()
-		    .getScorer().getNamedHighways(), mapConverter
-		    .getConversionLogger().getScorer().getUnnamedHighways(),
-		    file);
-	    mapAnalyzer.analyzeSpeedTag(mapConverter.getConversionLogger()
-		    .getScorer().getHighwaySpeeds(), file);
+	    mapAnalyzer.analyzeLaneTag(scores, file);
+	    mapAnalyzer.analyzeNameTag(scores, file);
+	    mapAnalyzer.analyzeSpeedTag(scores, file);
 	}
 
 	// output map and simple map in different forms
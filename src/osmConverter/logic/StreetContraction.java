@@ -0,0 +1,408 @@
+package osmConverter.logic;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import osmConverter.beans.IntList;
+import osmConverter.beans.Partitions;
+import osmConverter.data.Link;
+import osmConverter.data.LinkGraph;
+import osmConverter.data.Street;
+
+/**
+ * Merges the relevant links (streettype &lt; 5) between two crossings with the
+ * same name and speed to streets for the simple-map.
+ *
+ * Sequentially every relevant link not visited yet starts a street, which is
+ * followed forward and backward as long as the next link is the only
+ * relevant one and is only reached from this link (see
+ * {@link #step(int, boolean)}). The streets are numbered in the order of
+ * their starting links.
+ *
+ * With several threads the steps are computed first for all links in
+ * parallel. Where the steps form simple chains (every link is reached by at
+ * most one step in each direction and the steps forward and backward agree)
+ * the chains are walked from their first links in parallel, such a chain
+ * becomes one street no matter which of its links is reached first.
+ * Remaining links (closed loops and links at ambiguous restrictions) are
+ * merged sequentially as before. The streets and their ids are the same as
+ * with one thread.
+ */
+class StreetContraction {
+
+    /**
+     * Smallest number of streets created by one thread.
+     */
+    private final static int STREETS_PER_PARTITION = 1024;
+
+    /**
+     * Links of a street in the order of driving, and the link it started
+     * with.
+     */
+    private static final class Chain {
+	final IntList ordinals;
+	final int seed;
+	int id;
+
+	Chain(IntList ordinals, int seed) {
+	    this.ordinals = ordinals;
+	    this.seed = seed;
+	}
+
+	int first() {
+	    return ordinals.get(0);
+	}
+
+	int last() {
+	    return ordinals.get(ordinals.size() - 1);
+	}
+    }
+
+    private final LinkGraph graph;
+
+    /**
+     * The links in the order of their ordinals in the graph.
+     */
+    private final Link[] ordered;
+
+    /**
+     * Ordinal of the link continuing the street forward / backward without
+     * regard to visited links, -1 if there is none.
+     */
+    private final int[] next;
+    private final int[] previous;
+
+    private int relevantLinks = 0;
+
+    StreetContraction(LinkGraph graph, Link[] ordered) {
+	this.graph = graph;
+	this.ordered = ordered;
+	next = new int[ordered.length];
+	previous = new int[ordered.length];
+    }
+
+    /**
+     * @return Number of relevant links, known after {@link #contract(int)}.
+     */
+    int getRelevantLinks() {
+	return relevantLinks;
+    }
+
+    /**
+     * Merges the links to streets and sets the street-ids of the links.
+     *
+     * @param threads
+     *            Number of threads, see {@link Partitions}.
+     * @return The streets by their id.
+     */
+    Map<Integer, Street> contract(int threads) throws InterruptedException {
+	final int size = ordered.length;
+
+	Partitions.run(size, threads, LinkGraph.LINKS_PER_PARTITION,
+		new Partitions.Task() {
+		    @Override
+		    public void run(int from, int to) {
+			for (int i = from; i < to; i++) {
+			    next[i] = step(i, true);
+			    previous[i] = step(i, false);
+			}
+		    }
+		});
+
+	// chain starting with a link, indexed by the ordinal of the link
+	final Chain[] chains = new Chain[size];
+	final BitSet visited = new BitSet(size);
+
+	if (threads > 1) {
+	    walkSimpleChains(threads, chains, visited);
+	}
+
+	for (int i = 0; i < size; i++) {
+	    if (ordered[i].getStreetType() >= 5) {
+		continue;
+	    }
+	    relevantLinks++;
+	    if (!visited.get(i)) {
+		Chain chain = walk(i, visited);
+		chains[chain.seed] = chain;
+	    }
+	}
+
+	// number the streets by their starting links
+	final IntList starts = new IntList();
+	for (int i = 0; i < size; i++) {
+	    if (chains[i] != null) {
+		chains[i].id = starts.size();
+		starts.add(i);
+	    }
+	}
+
+	Partitions.run(starts.size(), threads, STREETS_PER_PARTITION, new Partitions.Task() {
+	    @Override
+	    public void run(int from, int to) {
+		for (int i = from; i < to; i++) {
+		    Chain chain = chains[starts.get(i)];
+		    for (int j = 0; j < chain.ordinals.size(); j++) {
+			ordered[chain.ordinals.get(j)].setStreetID(chain.id);
+		    }
+		}
+	    }
+	});
+
+	final Street[] streets = new Street[starts.size()];
+	Partitions.run(starts.size(), threads, STREETS_PER_PARTITION, new Partitions.Task() {
+	    @Override
+	    public void run(int from, int to) {
+		for (int i = from; i < to; i++) {
+		    streets[i] = createStreet(chains[starts.get(i)]);
+		}
+	    }
+	});
+
+	Map<Integer, Street> result = new HashMap<Integer, Street>();
+	for (Street street : streets) {
+	    result.put(street.getId(), street);
+	}
+	return result;
+    }
+
+    /**
+     * Finds the simple chains and walks them from their first links in
+     * parallel. Their links are marked as visited.
+     */
+    private void walkSimpleChains(int threads, final Chain[] chains,
+	    final BitSet visited) throws InterruptedException {
+	final int size = ordered.length;
+
+	// how often every link is reached by a step in each direction
+	final AtomicIntegerArray reachedForward = new AtomicIntegerArray(size);
+	final AtomicIntegerArray reachedBackward = new AtomicIntegerArray(size);
+	Partitions.run(size, threads, LinkGraph.LINKS_PER_PARTITION,
+		new Partitions.Task() {
+		    @Override
+		    public void run(int from, int to) {
+			for (int i = from; i < to; i++) {
+			    if (next[i] >= 0) {
+				reachedForward.incrementAndGet(next[i]);
+			    }
+			    if (previous[i] >= 0) {
+				reachedBackward.incrementAndGet(previous[i]);
+			    }
+			}
+		    }
+		});
+
+	final boolean[] simple = new boolean[size];
+	Partitions.run(size, threads, LinkGraph.LINKS_PER_PARTITION,
+		new Partitions.Task() {
+		    @Override
+		    public void run(int from, int to) {
+			for (int i = from; i < to; i++) {
+			    simple[i] = isSimple(i, reachedForward,
+				    reachedBackward);
+			}
+		    }
+		});
+
+	// every chain is walked by the partition of its first link
+	final boolean[] walked = new boolean[size];
+	Partitions.run(size, threads, LinkGraph.LINKS_PER_PARTITION,
+		new Partitions.Task() {
+		    @Override
+		    public void run(int from, int to) {
+			for (int i = from; i < to; i++) {
+			    if (!simple[i] || previous[i] >= 0) {
+				continue;
+			    }
+
+			    IntList ordinals = new IntList();
+			    int seed = i;
+			    int link = i;
+			    while (link >= 0 && simple[link]) {
+				ordinals.add(link);
+				seed = Math.min(seed, link);
+				link = next[link];
+			    }
+			    if (link >= 0) {
+				// leads to an ambiguous link, merged sequentially
+				continue;
+			    }
+
+			    chains[seed] = new Chain(ordinals, seed);
+			    for (int j = 0; j < ordinals.size(); j++) {
+				walked[ordinals.get(j)] = true;
+			    }
+			}
+		    }
+		});
+
+	for (int i = 0; i < size; i++) {
+	    if (walked[i]) {
+		visited.set(i);
+	    }
+	}
+    }
+
+    /**
+     * @return true if the steps from and to the relevant link agree in both
+     *         directions and no other link steps to it.
+     */
+    private boolean isSimple(int ordinal, AtomicIntegerArray reachedForward,
+	    AtomicIntegerArray reachedBackward) {
+	if (ordered[ordinal].getStreetType() >= 5) {
+	    return false;
+	}
+	if (next[ordinal] >= 0 && previous[next[ordinal]] != ordinal) {
+	    return false;
+	}
+	if (previous[ordinal] >= 0 && next[previous[ordinal]] != ordinal) {
+	    return false;
+	}
+	return reachedForward.get(ordinal) == (previous[ordinal] < 0 ? 0 : 1)
+		&& reachedBackward.get(ordinal) == (next[ordinal] < 0 ? 0 : 1);
+    }
+
+    /**
+     * Follows the street of the link forward and backward, like the
+     * sequential merge: the street ends at visited links.
+     */
+    private Chain walk(int seed, BitSet visited) {
+	IntList forward = new IntList();
+	IntList backward = new IntList();
+
+	visited.set(seed);
+	forward.add(seed);
+	int link = seed;
+	while (next[link] >= 0 && !visited.get(next[link])) {
+	    link = next[link];
+	    visited.set(link);
+	    forward.add(link);
+	}
+
+	// opposite direction
+	link = seed;
+	while (previous[link] >= 0 && !visited.get(previous[link])) {
+	    link = previous[link];
+	    visited.set(link);
+	    backward.add(link);
+	}
+
+	IntList ordinals = new IntList(forward.size() + backward.size());
+	for (int i = backward.size() - 1; i >= 0; i--) {
+	    ordinals.add(backward.get(i));
+	}
+	for (int i = 0; i < forward.size(); i++) {
+	    ordinals.add(forward.get(i));
+	}
+	return new Chain(ordinals, seed);
+    }
+
+    private Street createStreet(Chain chain) {
+	Link link = ordered[chain.seed];
+	Link first = ordered[chain.first()];
+	Link last = ordered[chain.last()];
+
+	IntList edgeIDs = new IntList(chain.ordinals.size());
+	int seedIndex = -1;
+	for (int i = 0; i < chain.ordinals.size(); i++) {
+	    edgeIDs.add(ordered[chain.ordinals.get(i)].getId());
+	    if (chain.ordinals.get(i) == chain.seed) {
+		seedIndex = i;
+	    }
+	}
+
+	// summed in the order the links were added to the street
+	double length = 0;
+	for (int i = seedIndex; i < chain.ordinals.size(); i++) {
+	    length += ordered[chain.ordinals.get(i)].getLength();
+	}
+	for (int i = seedIndex - 1; i >= 0; i--) {
+	    length += ordered[chain.ordinals.get(i)].getLength();
+	}
+
+	Street street = new Street();
+	street.setId(chain.id);
+	street.setStartLon(first.getStartLon());
+	street.setStartLat(first.getStartLat());
+	street.setEndLon(last.getEndLon());
+	street.setEndLat(last.getEndLat());
+	street.setStreetType(link.getStreetType());
+	street.setName(link.getName());
+	street.setSpeed(link.getSpeed());
+	street.setLength(length);
+	street.setEdgeIDs(edgeIDs);
+
+	// the streets of the links following the last and leading to the
+	// first link, one entry per link
+	IntList sIDs = new IntList();
+	for (int i = 0; i < graph.getFollowEdgesCount(chain.last()); i++) {
+	    sIDs.add(ordered[graph.getFollowEdge(chain.last(), i)]
+		    .getStreetID());
+	}
+	street.setFollowingStreets(sIDs);
+
+	IntList lIDs = new IntList();
+	for (int i = 0; i < graph.getLeadingEdgesCount(chain.first()); i++) {
+	    lIDs.add(ordered[graph.getLeadingEdge(chain.first(), i)]
+		    .getStreetID());
+	}
+	street.setLeadingStreets(lIDs);
+	return street;
+    }
+
+    /**
+     * @param forward
+     *            true to follow the street behind the link, false to follow
+     *            it before the link.
+     * @return The ordinal of the link continuing the street at the link, -1
+     *         for irrelevant links, at a crossing, a change of name or speed
+     *         or a u-turn.
+     */
+    private int step(int ordinal, boolean forward) {
+	if (ordered[ordinal].getStreetType() >= 5) {
+	    return -1;
+	}
+
+	int count = 0;
+	int result = -1;
+	int edges = forward ? graph.getFollowEdgesCount(ordinal) : graph
+		.getLeadingEdgesCount(ordinal);
+	for (int i = 0; i < edges; i++) {
+	    int edge = forward ? graph.getFollowEdge(ordinal, i) : graph
+		    .getLeadingEdge(ordinal, i);
+	    if (ordered[edge].getStreetType() < 5) {
+		count++;
+		result = edge;
+	    }
+	}
+	if (count != 1) {
+	    return -1;
+	}
+
+	// the next link mustn't be reached from another relevant link
+	count = 0;
+	edges = forward ? graph.getLeadingEdgesCount(result) : graph
+		.getFollowEdgesCount(result);
+	for (int i = 0; i < edges; i++) {
+	    int edge = forward ? graph.getLeadingEdge(result, i) : graph
+		    .getFollowEdge(result, i);
+	    if (ordered[edge].getStreetType() < 5) {
+		count++;
+	    }
+	}
+
+	Link link = ordered[ordinal];
+	Link nextLink = ordered[result];
+	if (count != 1 || !nextLink.getName().equals(link.getName())
+		|| nextLink.getSpeed() != link.getSpeed()) {
+	    return -1;
+	}
+	if (forward ? link.getStartNodeId() == nextLink.getEndNodeId() : link
+		.getEndNodeId() == nextLink.getStartNodeId()) {
+	    return -1;
+	}
+	return result;
+    }
+}